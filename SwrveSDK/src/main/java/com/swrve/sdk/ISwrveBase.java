@@ -119,6 +119,10 @@ public interface ISwrveBase<T, C extends SwrveConfigBase> {
 
     Date getInitialisedTime();
 
+    SwrveEventsUploadStats getEventsUploadStats();
+
+    long getDroppedEventCount();
+
     ISwrveInstallButtonListener getInstallButtonListener();
 
     void setInstallButtonListener(ISwrveInstallButtonListener installButtonListener);
@@ -20,6 +20,10 @@ public interface ISwrveCampaignManager {
 
     Set<String> getAssetsOnDisk();
 
+    boolean areCampaignAssetsReady(int campaignId);
+
+    boolean isCampaignTracked(int campaignId);
+
     SwrveConfigBase getConfig();
 
     String getAppStoreURLForApp(int appId);
@@ -9,7 +9,6 @@ import android.content.SharedPreferences;
 import android.os.Build;
 import android.support.v4.app.NotificationManagerCompat;
 import android.util.DisplayMetrics;
-import android.util.SparseArray;
 import android.view.Display;
 import android.view.WindowManager;
 
@@ -19,8 +18,8 @@ import com.swrve.sdk.conversations.ISwrveConversationListener;
 import com.swrve.sdk.conversations.SwrveConversation;
 import com.swrve.sdk.conversations.ui.ConversationActivity;
 import com.swrve.sdk.exceptions.NoUserIdSwrveException;
+import com.swrve.sdk.localstorage.EventJournalLocalStorage;
 import com.swrve.sdk.localstorage.ILocalStorage;
-import com.swrve.sdk.localstorage.IMemoryLocalStorage;
 import com.swrve.sdk.localstorage.MemoryCachedLocalStorage;
 import com.swrve.sdk.localstorage.SQLiteLocalStorage;
 import com.swrve.sdk.messaging.ISwrveCustomButtonListener;
@@ -36,7 +35,7 @@ import com.swrve.sdk.messaging.SwrveMessage;
 import com.swrve.sdk.messaging.SwrveMessageFormat;
 import com.swrve.sdk.messaging.SwrveOrientation;
 import com.swrve.sdk.messaging.ui.SwrveInAppMessageActivity;
-import com.swrve.sdk.rest.IRESTResponseListener;
+import com.swrve.sdk.rest.IRESTStreamResponseListener;
 import com.swrve.sdk.rest.RESTResponse;
 
 import org.json.JSONArray;
@@ -44,6 +43,11 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.text.DateFormat;
@@ -60,6 +64,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.swrve.sdk.SwrveCampaignDisplayer.DisplayResult.CAMPAIGN_WRONG_ORIENTATION;
 import static com.swrve.sdk.SwrveCampaignDisplayer.DisplayResult.ELIGIBLE_BUT_OTHER_CHOSEN;
@@ -119,9 +124,8 @@ public abstract class SwrveBase<T, C extends SwrveConfigBase> extends SwrveImp<T
 
             cachedLocalStorage = createCachedLocalStorage();
 
-            appStoreURLs = new SparseArray<String>();
-
             initCacheFolder(activity);
+            cacheSnapshotDir = resolvedContext.getCacheDir();
 
             // Open access to local storage
             openLocalStorageConnection();
@@ -465,8 +469,12 @@ public abstract class SwrveBase<T, C extends SwrveConfigBase> extends SwrveImp<T
                 @Override
                 public void run() {
                     short deviceId = EventHelper.getDeviceId(cachedLocalStorage);
-                    SwrveEventsManager swrveEventsManager = new SwrveEventsManagerImp(config, restClient, userId, appVersion, sessionToken, deviceId);
-                    swrveEventsManager.sendStoredEvents(cachedLocalStorage);
+                    SwrveEventsManager swrveEventsManager = new SwrveEventsManagerImp(config, restClient, userId, appVersion, sessionToken, deviceId, batchRetryPolicy, eventBatchExecutor);
+                    if (config.isDrainQueuedEventsEnabled()) {
+                        swrveEventsManager.sendAllStoredEvents(cachedLocalStorage);
+                    } else {
+                        swrveEventsManager.sendStoredEvents(cachedLocalStorage);
+                    }
                     eventsWereSent = true;
                 }
             });
@@ -580,6 +588,27 @@ public abstract class SwrveBase<T, C extends SwrveConfigBase> extends SwrveImp<T
                     SwrveLogger.e("Exception occurred shutting down campaignsAndResourcesExecutor", e);
                 }
             }
+            if(triggerExecutor != null) {
+                try {
+                    triggerExecutor.shutdownNow();
+                } catch (Exception e) {
+                    SwrveLogger.e("Exception occurred shutting down triggerExecutor", e);
+                }
+            }
+            if(campaignLoadingExecutor != null) {
+                try {
+                    campaignLoadingExecutor.shutdownNow();
+                } catch (Exception e) {
+                    SwrveLogger.e("Exception occurred shutting down campaignLoadingExecutor", e);
+                }
+            }
+            if(eventBatchExecutor != null) {
+                try {
+                    eventBatchExecutor.shutdown();
+                } catch (Exception e) {
+                    SwrveLogger.e("Exception occurred shutting down eventBatchExecutor", e);
+                }
+            }
 
             if(cachedLocalStorage != null) {
                 try {
@@ -749,131 +778,157 @@ public abstract class SwrveBase<T, C extends SwrveConfigBase> extends SwrveImp<T
                     params.put("etag", campaignsAndResourcesLastETag);
                 }
 
+                // The rest client is synchronous, so the response has been read when get returns
+                final AtomicReference<SwrveCampaignsAndResourcesReader> responseReader = new AtomicReference<SwrveCampaignsAndResourcesReader>();
+                final AtomicReference<RESTResponse> readResponse = new AtomicReference<RESTResponse>();
                 try {
-                    restClient.get(config.getContentUrl() + CAMPAIGNS_AND_RESOURCES_ACTION, params, new IRESTResponseListener() {
+                    restClient.get(config.getContentUrl() + CAMPAIGNS_AND_RESOURCES_ACTION, params, new IRESTStreamResponseListener() {
                         @Override
                         public void onResponse(RESTResponse response) {
                             // Response received from server
                             if (response.responseCode == HttpURLConnection.HTTP_OK) {
-                                SharedPreferences settings = context.get().getSharedPreferences(SDK_PREFS_NAME, 0);
-                                SharedPreferences.Editor settingsEditor = settings.edit();
-
-                                String etagHeader = response.getHeaderValue("ETag");
-                                if (!SwrveHelper.isNullOrEmpty(etagHeader)) {
-                                    campaignsAndResourcesLastETag = etagHeader;
-                                    settingsEditor.putString("campaigns_and_resources_etag", campaignsAndResourcesLastETag);
-                                }
-
                                 try {
-                                    JSONObject responseJson;
-                                    try {
-                                        responseJson = new JSONObject(response.responseBody);
-                                    } catch(JSONException e) {
-                                        SwrveLogger.e("SwrveSDK unable to decode user_resources_and_campaigns JSON : \"" + response.responseBody + "\".");
-                                        throw e;
-                                    }
-
-                                    if (responseJson.has("flush_frequency")) {
-                                        Integer flushFrequency = responseJson.getInt("flush_frequency");
-                                        campaignsAndResourcesFlushFrequency = flushFrequency;
-                                        settingsEditor.putInt("swrve_cr_flush_frequency", campaignsAndResourcesFlushFrequency);
-                                    }
-
-                                    if (responseJson.has("flush_refresh_delay")) {
-                                        Integer flushDelay = responseJson.getInt("flush_refresh_delay");
-                                        campaignsAndResourcesFlushRefreshDelay = flushDelay;
-                                        settingsEditor.putInt("swrve_cr_flush_delay", campaignsAndResourcesFlushRefreshDelay);
-                                    }
-
-                                    if (responseJson.has("campaigns")) {
-                                        JSONObject campaignJson = responseJson.getJSONObject("campaigns");
-
-                                        if (config.isTalkEnabled() || config.isABTestDetailsEnabled()) {
-                                            saveCampaignsInCache(campaignJson);
-                                        }
-
-                                        if (config.isTalkEnabled()) {
-                                            updateCampaigns(campaignJson, campaignsState);
-                                            autoShowMessages();
-
-                                            // Notify campaigns have been downloaded
-                                            Map<String, String> payload = new HashMap<String, String>();
-                                            StringBuilder campaignIds = new StringBuilder();
-                                            for (int i = 0; i < campaigns.size(); i++) {
-                                                if (i != 0) {
-                                                    campaignIds.append(',');
-                                                }
-                                                campaignIds.append(campaigns.get(i).getId());
-                                            }
-                                            payload.put("ids", campaignIds.toString());
-                                            payload.put("count", String.valueOf(campaigns.size()));
-                                            Map<String, Object> parameters = new HashMap<String, Object>();
-                                            parameters.put("name", "Swrve.Messages.campaigns_downloaded");
-                                            queueEvent("event", parameters, payload, false);
-                                        }
-
-                                        if (resourceManager != null && campaignJson.has("ab_test_details")) {
-                                            JSONObject abTestDetailsJson = campaignJson.optJSONObject("ab_test_details");
-                                            if (abTestDetailsJson != null) {
-                                                resourceManager.setABTestDetailsFromJSON(abTestDetailsJson);
-                                            }
-                                        }
-                                    }
-
-                                    // If json contains location campaigns then save it to sqlite cache to be used by the location sdk
-                                    if (responseJson.has("location_campaigns")) {
-                                        JSONObject campaignJson = responseJson.getJSONObject("location_campaigns");
-                                        saveLocationCampaignsInCache(campaignJson);
-                                    }
-
-                                    if (responseJson.has("user_resources")) {
-                                        // Update resource manager
-                                        JSONArray resourceJson = responseJson.getJSONArray("user_resources");
-                                        resourceManager.setResourcesFromJSON(resourceJson);
-                                        saveResourcesInCache(resourceJson);
-
-                                        // Call resource listener
-                                        if (campaignsAndResourcesInitialized) {
-                                            invokeResourceListener();
-                                        }
-                                    }
-                                } catch (JSONException e) {
-                                    SwrveLogger.e("Could not parse JSON for campaigns and resources", e);
+                                    readCampaignsAndResources(new StringReader(response.responseBody), response);
+                                } catch (IOException e) {
+                                    SwrveLogger.e("Could not read campaigns and resources", e);
                                 }
+                            }
+                        }
 
-                                settingsEditor.apply();
+                        @Override
+                        public void onResponse(int responseCode, InputStream body, Map<String, List<String>> responseHeaders) throws IOException {
+                            // Response streamed from server, errors reading it are reported to onException
+                            if (responseCode == HttpURLConnection.HTTP_OK) {
+                                readCampaignsAndResources(new InputStreamReader(body, "UTF-8"), new RESTResponse(responseCode, null, responseHeaders));
                             }
+                        }
 
-                            this.firstRefreshFinished();
+                        // Only parses the response, it is applied once the connection has been closed
+                        private void readCampaignsAndResources(Reader body, RESTResponse response) throws IOException {
+                            SwrveCampaignsAndResourcesReader reader = new SwrveCampaignsAndResourcesReader(config.isTalkEnabled() || config.isABTestDetailsEnabled());
+                            try {
+                                reader.read(body);
+                            } catch (JSONException e) {
+                                SwrveLogger.e("SwrveSDK unable to decode user_resources_and_campaigns JSON", e);
+                                return;
+                            }
+                            responseReader.set(reader);
+                            readResponse.set(response);
                         }
 
                         @Override
                         public void onException(Exception e) {
-                            this.firstRefreshFinished();
                             SwrveLogger.e("Error downloading resources and campaigns", e);
                         }
-
-                        public void firstRefreshFinished() {
-                            if (!campaignsAndResourcesInitialized) {
-                                campaignsAndResourcesInitialized = true;
-
-                                // Only called first time API call returns - whether failed or successful, whether new campaigns were returned or not;
-                                // this ensures that if API call fails or there are no changes, we call autoShowMessages with cached campaigns
-                                autoShowMessages();
-
-                                // Invoke listeners once to denote that the first attempt at downloading has finished
-                                // independent of whether the resources or campaigns have changed from cached values
-                                invokeResourceListener();
-                            }
-                        }
                     });
                 } catch (UnsupportedEncodingException e) {
                     SwrveLogger.e("Could not update resources and campaigns, invalid parameters", e);
+                    return;
+                }
+
+                if (responseReader.get() != null) {
+                    try {
+                        applyCampaignsAndResources(responseReader.get(), readResponse.get());
+                    } catch (Exception e) {
+                        SwrveLogger.e("Could not apply campaigns and resources", e);
+                    }
                 }
+                firstCampaignsAndResourcesRefreshFinished();
             }
         });
     }
 
+    private void applyCampaignsAndResources(SwrveCampaignsAndResourcesReader responseReader, RESTResponse response) {
+        SharedPreferences settings = context.get().getSharedPreferences(SDK_PREFS_NAME, 0);
+        SharedPreferences.Editor settingsEditor = settings.edit();
+
+        try {
+            // Only remember the ETag once the whole response has been read
+            String etagHeader = response.getHeaderValue("ETag");
+            if (!SwrveHelper.isNullOrEmpty(etagHeader)) {
+                campaignsAndResourcesLastETag = etagHeader;
+                settingsEditor.putString("campaigns_and_resources_etag", campaignsAndResourcesLastETag);
+            }
+
+            if (responseReader.getFlushFrequency() != null) {
+                campaignsAndResourcesFlushFrequency = responseReader.getFlushFrequency();
+                settingsEditor.putInt("swrve_cr_flush_frequency", campaignsAndResourcesFlushFrequency);
+            }
+
+            if (responseReader.getFlushRefreshDelay() != null) {
+                campaignsAndResourcesFlushRefreshDelay = responseReader.getFlushRefreshDelay();
+                settingsEditor.putInt("swrve_cr_flush_delay", campaignsAndResourcesFlushRefreshDelay);
+            }
+
+            JSONObject campaignJson = responseReader.getCampaigns();
+            if (campaignJson != null) {
+                if (config.isTalkEnabled() || config.isABTestDetailsEnabled()) {
+                    saveCampaignsInCache(responseReader.getCampaignsCacheContent(), campaignJson);
+                }
+
+                if (config.isTalkEnabled()) {
+                    updateCampaigns(campaignJson, campaignsState);
+                    autoShowMessages();
+
+                    // Notify campaigns have been downloaded
+                    Map<String, String> payload = new HashMap<String, String>();
+                    StringBuilder campaignIds = new StringBuilder();
+                    List<SwrveBaseCampaign> campaigns = campaignsSnapshot.getCampaigns();
+                    for (int i = 0; i < campaigns.size(); i++) {
+                        if (i != 0) {
+                            campaignIds.append(',');
+                        }
+                        campaignIds.append(campaigns.get(i).getId());
+                    }
+                    payload.put("ids", campaignIds.toString());
+                    payload.put("count", String.valueOf(campaigns.size()));
+                    Map<String, Object> parameters = new HashMap<String, Object>();
+                    parameters.put("name", "Swrve.Messages.campaigns_downloaded");
+                    queueEvent("event", parameters, payload, false);
+                }
+
+                if (resourceManager != null && campaignJson.has("ab_test_details")) {
+                    JSONObject abTestDetailsJson = campaignJson.optJSONObject("ab_test_details");
+                    if (abTestDetailsJson != null) {
+                        resourceManager.setABTestDetailsFromJSON(abTestDetailsJson);
+                    }
+                }
+            }
+
+            // If json contains location campaigns then save it to sqlite cache to be used by the location sdk
+            if (responseReader.getLocationCampaignsCacheContent() != null) {
+                saveLocationCampaignsInCache(responseReader.getLocationCampaignsCacheContent());
+            }
+
+            if (responseReader.getResources() != null) {
+                // Update resource manager
+                resourceManager.setResources(responseReader.getResources());
+                saveResourcesInCache(responseReader.getResourcesCacheContent(), responseReader.getResources());
+
+                // Call resource listener
+                if (campaignsAndResourcesInitialized) {
+                    invokeResourceListener();
+                }
+            }
+        } finally {
+            settingsEditor.apply();
+        }
+    }
+
+    private void firstCampaignsAndResourcesRefreshFinished() {
+        if (!campaignsAndResourcesInitialized) {
+            campaignsAndResourcesInitialized = true;
+
+            // Only called first time API call returns - whether failed or successful, whether new campaigns were returned or not;
+            // this ensures that if API call fails or there are no changes, we call autoShowMessages with cached campaigns
+            autoShowMessages();
+
+            // Invoke listeners once to denote that the first attempt at downloading has finished
+            // independent of whether the resources or campaigns have changed from cached values
+            invokeResourceListener();
+        }
+    }
+
     @SuppressLint("UseSparseArrays")
     protected SwrveConversation _getConversationForEvent(String event, Map<String, String> payload) {
         SwrveConversation result = null;
@@ -883,57 +938,56 @@ public abstract class SwrveBase<T, C extends SwrveConfigBase> extends SwrveImp<T
         Map<Integer, Result> campaignDisplayResults = null;
         Map<Integer, Integer> campaignMessages = null;
 
-        if (campaigns != null) {
-            if (!campaignDisplayer.checkAppCampaignRules(campaigns.size(), "conversation", event, now)) {
+        SwrveCampaignsSnapshot snapshot = campaignsSnapshot;
+        if (snapshot != null) {
+            if (!campaignDisplayer.checkAppCampaignRules(snapshot.getCampaigns().size(), "conversation", event, now)) {
                 return null;
             }
             if (qaUser != null) {
                 campaignDisplayResults = new HashMap<Integer, Result>();
                 campaignMessages = new HashMap<Integer, Integer>();
             }
-            synchronized (campaigns) {
-                List<SwrveConversation> availableConversations = new ArrayList<SwrveConversation>();
-                // Select messages with higher priority
-                int minPriority = Integer.MAX_VALUE;
-                List<SwrveConversation> candidateConversations = new ArrayList<SwrveConversation>();
-                Iterator<SwrveBaseCampaign> itCampaign = campaigns.iterator();
-                while (itCampaign.hasNext()) {
-                    SwrveBaseCampaign nextCampaign = itCampaign.next();
-                    if (nextCampaign instanceof SwrveConversationCampaign) {
-                        SwrveConversation nextConversation = ((SwrveConversationCampaign)nextCampaign).getConversationForEvent(event, payload, now, campaignDisplayResults);
-                        if (nextConversation != null) {
-                            // Add to list of returned messages
-                            availableConversations.add(nextConversation);
-                            // Check if it is a candidate to be shown
-                            if (nextConversation.getPriority() <= minPriority) {
-                                if (nextConversation.getPriority() < minPriority) {
-                                    // If it is lower than any of the previous ones
-                                    // remove those from being candidates
-                                    candidateConversations.clear();
-                                }
-                                minPriority = nextConversation.getPriority();
-                                candidateConversations.add(nextConversation);
+            List<SwrveConversation> availableConversations = new ArrayList<SwrveConversation>();
+            // Select messages with higher priority
+            int minPriority = Integer.MAX_VALUE;
+            List<SwrveConversation> candidateConversations = new ArrayList<SwrveConversation>();
+            Iterator<SwrveBaseCampaign> itCampaign = getCampaignsForEvent(snapshot, event).iterator();
+            while (itCampaign.hasNext()) {
+                SwrveBaseCampaign nextCampaign = itCampaign.next();
+                if (nextCampaign instanceof SwrveConversationCampaign) {
+                    SwrveConversation nextConversation = ((SwrveConversationCampaign)nextCampaign).getConversationForEvent(event, payload, now, campaignDisplayResults);
+                    if (nextConversation != null) {
+                        // Add to list of returned messages
+                        availableConversations.add(nextConversation);
+                        // Check if it is a candidate to be shown
+                        if (nextConversation.getPriority() <= minPriority) {
+                            if (nextConversation.getPriority() < minPriority) {
+                                // If it is lower than any of the previous ones
+                                // remove those from being candidates
+                                candidateConversations.clear();
                             }
+                            minPriority = nextConversation.getPriority();
+                            candidateConversations.add(nextConversation);
                         }
                     }
                 }
-                if (candidateConversations.size() > 0) {
-                    // Select randomly
-                    Collections.shuffle(candidateConversations);
-                    result = candidateConversations.get(0);
-                }
-                if (qaUser != null && campaign != null && result != null) {
-                    // A message was chosen, set the reason for the others
-                    Iterator<SwrveConversation> itOtherConversation = availableConversations.iterator();
-                    while (itOtherConversation.hasNext()) {
-                        SwrveConversation otherMessage = itOtherConversation.next();
-                        if (otherMessage != result) {
-                            int otherCampaignId = otherMessage.getCampaign().getId();
-                            if (!campaignMessages.containsKey(otherCampaignId)) {
-                                campaignMessages.put(otherCampaignId, otherMessage.getId());
-                                String resultText = "Campaign " + campaign.getId() + " was selected for display ahead of this campaign";
-                                campaignDisplayResults.put(otherCampaignId, campaignDisplayer.buildResult(ELIGIBLE_BUT_OTHER_CHOSEN, resultText));
-                            }
+            }
+            if (candidateConversations.size() > 0) {
+                // Select randomly
+                Collections.shuffle(candidateConversations);
+                result = candidateConversations.get(0);
+            }
+            if (qaUser != null && campaign != null && result != null) {
+                // A message was chosen, set the reason for the others
+                Iterator<SwrveConversation> itOtherConversation = availableConversations.iterator();
+                while (itOtherConversation.hasNext()) {
+                    SwrveConversation otherMessage = itOtherConversation.next();
+                    if (otherMessage != result) {
+                        int otherCampaignId = otherMessage.getCampaign().getId();
+                        if (!campaignMessages.containsKey(otherCampaignId)) {
+                            campaignMessages.put(otherCampaignId, otherMessage.getId());
+                            String resultText = "Campaign " + campaign.getId() + " was selected for display ahead of this campaign";
+                            campaignDisplayResults.put(otherCampaignId, campaignDisplayer.buildResult(ELIGIBLE_BUT_OTHER_CHOSEN, resultText));
                         }
                     }
                 }
@@ -968,71 +1022,70 @@ public abstract class SwrveBase<T, C extends SwrveConfigBase> extends SwrveImp<T
         Map<Integer, Result> campaignDisplayResults = null;
         Map<Integer, Integer> campaignMessages = null;
 
-        if (campaigns != null) {
-            if (!campaignDisplayer.checkAppCampaignRules(campaigns.size(), "message", event, now)) {
+        SwrveCampaignsSnapshot snapshot = campaignsSnapshot;
+        if (snapshot != null) {
+            if (!campaignDisplayer.checkAppCampaignRules(snapshot.getCampaigns().size(), "message", event, now)) {
                 return null;
             }
             if (qaUser != null) {
                 campaignDisplayResults = new HashMap<Integer, Result>();
                 campaignMessages = new HashMap<Integer, Integer>();
             }
-            synchronized (campaigns) {
-                List<SwrveMessage> availableMessages = new ArrayList<SwrveMessage>();
-                // Select messages with higher priority
-                int minPriority = Integer.MAX_VALUE;
-                List<SwrveMessage> candidateMessages = new ArrayList<SwrveMessage>();
-                Iterator<SwrveBaseCampaign> itCampaign = campaigns.iterator();
-                while (itCampaign.hasNext()) {
-                    SwrveBaseCampaign nextCampaign = itCampaign.next();
-                    if (nextCampaign instanceof SwrveInAppCampaign) {
-                        SwrveMessage nextMessage = ((SwrveInAppCampaign)nextCampaign).getMessageForEvent(event, payload, now, campaignDisplayResults);
-                        if (nextMessage != null) {
-                            // Add to list of returned messages
-                            availableMessages.add(nextMessage);
-                            // Check if it is a candidate to be shown
-                            if (nextMessage.getPriority() <= minPriority) {
-                                if (nextMessage.getPriority() < minPriority) {
-                                    // If it is lower than any of the previous ones remove those from being candidates
-                                    candidateMessages.clear();
-                                }
-                                minPriority = nextMessage.getPriority();
-                                candidateMessages.add(nextMessage);
+            List<SwrveMessage> availableMessages = new ArrayList<SwrveMessage>();
+            // Select messages with higher priority
+            int minPriority = Integer.MAX_VALUE;
+            List<SwrveMessage> candidateMessages = new ArrayList<SwrveMessage>();
+            Iterator<SwrveBaseCampaign> itCampaign = getCampaignsForEvent(snapshot, event).iterator();
+            while (itCampaign.hasNext()) {
+                SwrveBaseCampaign nextCampaign = itCampaign.next();
+                if (nextCampaign instanceof SwrveInAppCampaign) {
+                    SwrveMessage nextMessage = ((SwrveInAppCampaign)nextCampaign).getMessageForEvent(event, payload, now, campaignDisplayResults);
+                    if (nextMessage != null) {
+                        // Add to list of returned messages
+                        availableMessages.add(nextMessage);
+                        // Check if it is a candidate to be shown
+                        if (nextMessage.getPriority() <= minPriority) {
+                            if (nextMessage.getPriority() < minPriority) {
+                                // If it is lower than any of the previous ones remove those from being candidates
+                                candidateMessages.clear();
                             }
+                            minPriority = nextMessage.getPriority();
+                            candidateMessages.add(nextMessage);
                         }
                     }
                 }
+            }
 
-                // Select randomly from the highest messages
-                Collections.shuffle(candidateMessages);
-                Iterator<SwrveMessage> itCandidateMessage = candidateMessages.iterator();
-                while (campaign == null && itCandidateMessage.hasNext()) {
-                    SwrveMessage candidateMessage = itCandidateMessage.next();
-                    // Check that the message supports the current orientation
-                    if (candidateMessage.supportsOrientation(orientation)) {
-                        result = candidateMessage;
-                        campaign = candidateMessage.getCampaign();
-                    } else {
-                        if (qaUser != null) {
-                            int campaignId = candidateMessage.getCampaign().getId();
-                            campaignMessages.put(campaignId, candidateMessage.getId());
-                            String resultText = "Message didn't support the given orientation: " + orientation;
-                            campaignDisplayResults.put(campaignId, campaignDisplayer.buildResult(CAMPAIGN_WRONG_ORIENTATION, resultText));
-                        }
+            // Select randomly from the highest messages
+            Collections.shuffle(candidateMessages);
+            Iterator<SwrveMessage> itCandidateMessage = candidateMessages.iterator();
+            while (campaign == null && itCandidateMessage.hasNext()) {
+                SwrveMessage candidateMessage = itCandidateMessage.next();
+                // Check that the message supports the current orientation
+                if (candidateMessage.supportsOrientation(orientation)) {
+                    result = candidateMessage;
+                    campaign = candidateMessage.getCampaign();
+                } else {
+                    if (qaUser != null) {
+                        int campaignId = candidateMessage.getCampaign().getId();
+                        campaignMessages.put(campaignId, candidateMessage.getId());
+                        String resultText = "Message didn't support the given orientation: " + orientation;
+                        campaignDisplayResults.put(campaignId, campaignDisplayer.buildResult(CAMPAIGN_WRONG_ORIENTATION, resultText));
                     }
                 }
+            }
 
-                if (qaUser != null && campaign != null && result != null) {
-                    // A message was chosen, set the reason for the others
-                    Iterator<SwrveMessage> itOtherMessage = availableMessages.iterator();
-                    while (itOtherMessage.hasNext()) {
-                        SwrveMessage otherMessage = itOtherMessage.next();
-                        if (otherMessage != result) {
-                            int otherCampaignId = otherMessage.getCampaign().getId();
-                            if (!campaignMessages.containsKey(otherCampaignId)) {
-                                campaignMessages.put(otherCampaignId, otherMessage.getId());
-                                String resultText = "Campaign " + campaign.getId() + " was selected for display ahead of this campaign";
-                                campaignDisplayResults.put(otherCampaignId, campaignDisplayer.buildResult(ELIGIBLE_BUT_OTHER_CHOSEN, resultText));
-                            }
+            if (qaUser != null && campaign != null && result != null) {
+                // A message was chosen, set the reason for the others
+                Iterator<SwrveMessage> itOtherMessage = availableMessages.iterator();
+                while (itOtherMessage.hasNext()) {
+                    SwrveMessage otherMessage = itOtherMessage.next();
+                    if (otherMessage != result) {
+                        int otherCampaignId = otherMessage.getCampaign().getId();
+                        if (!campaignMessages.containsKey(otherCampaignId)) {
+                            campaignMessages.put(otherCampaignId, otherMessage.getId());
+                            String resultText = "Campaign " + campaign.getId() + " was selected for display ahead of this campaign";
+                            campaignDisplayResults.put(otherCampaignId, campaignDisplayer.buildResult(ELIGIBLE_BUT_OTHER_CHOSEN, resultText));
                         }
                     }
                 }
@@ -1061,14 +1114,13 @@ public abstract class SwrveBase<T, C extends SwrveConfigBase> extends SwrveImp<T
     protected SwrveMessage _getMessageForId(int messageId) {
         SwrveMessage result = null;
 
-        if (campaigns != null && campaigns.size() > 0) {
-            synchronized (campaigns) {
-                Iterator<SwrveBaseCampaign> itCampaign = campaigns.iterator();
-                while (itCampaign.hasNext() && result == null) {
-                    SwrveBaseCampaign campaign = itCampaign.next();
-                    if (campaign instanceof SwrveInAppCampaign) {
-                        result = ((SwrveInAppCampaign)campaign).getMessageForId(messageId);
-                    }
+        List<SwrveBaseCampaign> campaigns = campaignsSnapshot.getCampaigns();
+        if (campaigns.size() > 0) {
+            Iterator<SwrveBaseCampaign> itCampaign = campaigns.iterator();
+            while (itCampaign.hasNext() && result == null) {
+                SwrveBaseCampaign campaign = itCampaign.next();
+                if (campaign instanceof SwrveInAppCampaign) {
+                    result = ((SwrveInAppCampaign)campaign).getMessageForId(messageId);
                 }
             }
         }
@@ -1118,7 +1170,7 @@ public abstract class SwrveBase<T, C extends SwrveConfigBase> extends SwrveImp<T
     }
 
     protected String _getAppStoreURLForApp(int appId) {
-        return appStoreURLs.get(appId);
+        return campaignsSnapshot.getAppStoreURL(appId);
     }
 
     protected File _getCacheDir() {
@@ -1553,6 +1605,26 @@ public abstract class SwrveBase<T, C extends SwrveConfigBase> extends SwrveImp<T
         }
     }
 
+    @Override
+    public SwrveEventsUploadStats getEventsUploadStats() {
+        try {
+            return batchRetryPolicy.getStats(cachedLocalStorage);
+        } catch (Exception e) {
+            SwrveLogger.e("Exception thrown in Swrve SDK", e);
+        }
+        return new SwrveEventsUploadStats(0, 0, 0, 0, 0, false, 0);
+    }
+
+    @Override
+    public long getDroppedEventCount() {
+        try {
+            return cachedLocalStorage.getDroppedEventCount();
+        } catch (Exception e) {
+            SwrveLogger.e("Exception thrown in Swrve SDK", e);
+        }
+        return 0;
+    }
+
     @Override
     public Date getInitialisedTime() {
         try {
@@ -1620,16 +1692,15 @@ public abstract class SwrveBase<T, C extends SwrveConfigBase> extends SwrveImp<T
     @Override
     public List<SwrveBaseCampaign> getMessageCenterCampaigns(SwrveOrientation orientation) {
         List<SwrveBaseCampaign> result = new ArrayList<SwrveBaseCampaign>();
-        synchronized (campaigns) {
-            for (int i = 0; i < campaigns.size(); i++) {
-                SwrveBaseCampaign campaign = campaigns.get(i);
-                if (campaign.isMessageCenter()
-                        && campaign.getStatus() != SwrveCampaignState.Status.Deleted
-                        && campaign.isActive(getNow())
-                        && campaign.supportsOrientation(orientation)
-                        && campaign.areAssetsReady(getAssetsOnDisk())) {
-                    result.add(campaign);
-                }
+        List<SwrveBaseCampaign> campaigns = campaignsSnapshot.getCampaigns();
+        for (int i = 0; i < campaigns.size(); i++) {
+            SwrveBaseCampaign campaign = campaigns.get(i);
+            if (campaign.isMessageCenter()
+                    && campaign.getStatus() != SwrveCampaignState.Status.Deleted
+                    && campaign.isActive(getNow())
+                    && campaign.supportsOrientation(orientation)
+                    && (isCampaignTracked(campaign.getId()) ? areCampaignAssetsReady(campaign.getId()) : campaign.areAssetsReady(getAssetsOnDisk()))) {
+                result.add(campaign);
             }
         }
         return result;
@@ -1680,6 +1751,14 @@ public abstract class SwrveBase<T, C extends SwrveConfigBase> extends SwrveImp<T
 
     @Override
     protected ILocalStorage createLocalStorage() {
+        if (config.isEventJournalEnabled()) {
+            try {
+                return new EventJournalLocalStorage(context.get(), config.getDbName(), config.getMaxSqliteDbSize(),
+                        EventJournalLocalStorage.DEFAULT_SEGMENT_SIZE, config.getEventJournalSyncInterval());
+            } catch (IOException e) {
+                SwrveLogger.e("Error opening the event journal, using SQLite instead", e);
+            }
+        }
         return new SQLiteLocalStorage(context.get(), config.getDbName(), config.getMaxSqliteDbSize());
     }
 
@@ -1745,31 +1824,26 @@ public abstract class SwrveBase<T, C extends SwrveConfigBase> extends SwrveImp<T
     }
 
     @Override
-    public synchronized int getNextSequenceNumber() {
+    public int getNextSequenceNumber() {
         MemoryCachedLocalStorage memoryCachedLocalStorage = cachedLocalStorage;
         if (memoryCachedLocalStorage == null) {
+            // Only open the storage if a new block of sequence numbers has to be leased
+            int seqnum = sequenceNumberAllocator.nextLeasedSequenceNumber();
+            if (seqnum > 0) {
+                return seqnum;
+            }
             try {
                 memoryCachedLocalStorage = createCachedLocalStorage();
                 ILocalStorage sqliteLocalStorage = createLocalStorage();
                 memoryCachedLocalStorage.setSecondaryStorage(sqliteLocalStorage);
-                return getNextSequenceNumber(memoryCachedLocalStorage);
+                return sequenceNumberAllocator.nextSequenceNumber(memoryCachedLocalStorage);
             } catch (Exception e) {
                 SwrveLogger.e("Error getting getNextSequenceNumber", e);
             } finally {
                 if (memoryCachedLocalStorage != null) memoryCachedLocalStorage.close();
             }
         }
-        return getNextSequenceNumber(memoryCachedLocalStorage);
-    }
-
-    private int getNextSequenceNumber(IMemoryLocalStorage storage) {
-        String id = storage.getSharedCacheEntry("seqnum");
-        int seqnum = 1;
-        if (!SwrveHelper.isNullOrEmpty(id)) {
-            seqnum = Integer.parseInt(id) + 1;
-        }
-        storage.setAndFlushSharedEntry("seqnum", Integer.toString(seqnum));
-        return seqnum;
+        return sequenceNumberAllocator.nextSequenceNumber(memoryCachedLocalStorage);
     }
 
     /***
@@ -299,6 +299,16 @@ public class SwrveBaseEmpty<T, C extends SwrveConfigBase> implements ISwrveBase<
         return new Date();
     }
 
+    @Override
+    public SwrveEventsUploadStats getEventsUploadStats() {
+        return new SwrveEventsUploadStats(0, 0, 0, 0, 0, false, 0);
+    }
+
+    @Override
+    public long getDroppedEventCount() {
+        return 0;
+    }
+
     @Override
     public C getConfig() {
         return config;
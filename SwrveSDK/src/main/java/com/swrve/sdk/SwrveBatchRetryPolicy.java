@@ -0,0 +1,229 @@
+package com.swrve.sdk;
+
+import com.swrve.sdk.localstorage.IMemoryLocalStorage;
+import com.swrve.sdk.rest.RESTResponse;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Used internally to decide when event batches can be sent after failures.
+ *
+ * After a server or connectivity error the next attempt is delayed by a random time between zero
+ * and an exponentially growing maximum (full jitter), or by the Retry-After header if it asks for
+ * longer, up to the larger of the maximum delay and the cool-off. After a number of consecutive
+ * failures the circuit breaker opens and nothing is sent for a cool-off window. Once a delay after
+ * a failure has passed a single batch is allowed through as a probe, and nothing else is sent until
+ * its response arrives. The state and the counters are persisted so the breaker stays open and the
+ * counters keep growing across process restarts. Saved state that asks to wait longer than the
+ * maximum delay, for example after the clock changed, is reset.
+ */
+class SwrveBatchRetryPolicy {
+
+    protected static final String RETRY_STATE_CATEGORY = "batch_retry_state";
+    protected static final long DEFAULT_BASE_DELAY = 1000;
+    protected static final long DEFAULT_MAX_DELAY = 5 * 60 * 1000;
+    protected static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    protected static final long DEFAULT_COOL_OFF = 10 * 60 * 1000;
+    protected static final long DEFAULT_PROBE_TIMEOUT = 2 * 60 * 1000;
+
+    private final long baseDelay;
+    private final long maxDelay;
+    private final int failureThreshold;
+    private final long coolOff;
+    private final long probeTimeout;
+    private final Random random;
+
+    private boolean loaded;
+    private int consecutiveFailures;
+    private long nextAttemptTime;
+    private long totalSuccesses;
+    private long totalFailures;
+    private long circuitBreakerTrips;
+    private long skippedAttempts;
+    // Not persisted, a probe cannot outlive the process that sent it
+    private boolean probeInFlight;
+    private long probeStartTime;
+
+    protected SwrveBatchRetryPolicy() {
+        this(DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY, DEFAULT_FAILURE_THRESHOLD, DEFAULT_COOL_OFF, new Random());
+    }
+
+    protected SwrveBatchRetryPolicy(long baseDelay, long maxDelay, int failureThreshold, long coolOff, Random random) {
+        this(baseDelay, maxDelay, failureThreshold, coolOff, DEFAULT_PROBE_TIMEOUT, random);
+    }
+
+    protected SwrveBatchRetryPolicy(long baseDelay, long maxDelay, int failureThreshold, long coolOff, long probeTimeout, Random random) {
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.failureThreshold = failureThreshold;
+        this.coolOff = coolOff;
+        this.probeTimeout = probeTimeout;
+        this.random = random;
+    }
+
+    /*
+     * Returns true if a batch can be sent now. After a failure only one caller gets true until the
+     * response of that batch is recorded, or until the probe times out if it never gets one.
+     * Counts the attempt as skipped otherwise.
+     */
+    protected synchronized boolean canSend(IMemoryLocalStorage storage) {
+        load(storage);
+        long now = currentTime();
+        resetIfOutOfRange(now);
+        if (now >= nextAttemptTime) {
+            if (consecutiveFailures == 0) {
+                return true;
+            }
+            if (!probeInFlight || now - probeStartTime >= probeTimeout) {
+                probeInFlight = true;
+                probeStartTime = now;
+                return true;
+            }
+        }
+        skippedAttempts++;
+        save(storage);
+        if (probeInFlight) {
+            SwrveLogger.i("Not sending events until the probe batch gets a response after %d failed attempts", consecutiveFailures);
+        } else {
+            SwrveLogger.i("Not sending events for another %d ms after %d failed attempts", nextAttemptTime - now, consecutiveFailures);
+        }
+        return false;
+    }
+
+    protected synchronized void onResponse(RESTResponse response, IMemoryLocalStorage storage) {
+        load(storage);
+        probeInFlight = false;
+        if (SwrveHelper.serverErrorResponseCode(response.responseCode)) {
+            onFailure(getRetryAfter(response));
+            save(storage);
+        } else {
+            totalSuccesses++;
+            consecutiveFailures = 0;
+            nextAttemptTime = 0;
+            save(storage);
+        }
+    }
+
+    protected synchronized SwrveEventsUploadStats getStats(IMemoryLocalStorage storage) {
+        load(storage);
+        long now = currentTime();
+        resetIfOutOfRange(now);
+        boolean circuitOpen = consecutiveFailures >= failureThreshold && now < nextAttemptTime;
+        return new SwrveEventsUploadStats(totalSuccesses, totalFailures, consecutiveFailures, circuitBreakerTrips, skippedAttempts, circuitOpen, Math.max(0, nextAttemptTime - now));
+    }
+
+    protected long currentTime() {
+        return System.currentTimeMillis();
+    }
+
+    private void onFailure(long retryAfter) {
+        consecutiveFailures++;
+        totalFailures++;
+        // Full jitter: random delay between zero and the exponential backoff cap
+        int exponent = Math.min(consecutiveFailures - 1, 30);
+        long cap = Math.min(maxDelay, baseDelay << exponent);
+        long delay = (long) (random.nextDouble() * cap);
+        delay = Math.max(delay, Math.min(retryAfter, getMaxRetryDelay()));
+        if (consecutiveFailures >= failureThreshold) {
+            if (consecutiveFailures == failureThreshold) {
+                circuitBreakerTrips++;
+                SwrveLogger.w("Too many failures sending events, pausing sends for %d ms", Math.max(delay, coolOff));
+            }
+            delay = Math.max(delay, coolOff);
+        }
+        nextAttemptTime = currentTime() + delay;
+    }
+
+    private long getMaxRetryDelay() {
+        return Math.max(maxDelay, coolOff);
+    }
+
+    // Waits longer than any delay this policy can set come from a clock change or bad saved state
+    private void resetIfOutOfRange(long now) {
+        if (nextAttemptTime - now > getMaxRetryDelay()) {
+            SwrveLogger.w("Next batch attempt is %d ms away, sending events again", nextAttemptTime - now);
+            nextAttemptTime = now;
+        }
+    }
+
+    // Retry-After can be either a number of seconds or an HTTP date
+    private long getRetryAfter(RESTResponse response) {
+        String value = getHeaderIgnoreCase(response.responseHeaders, "Retry-After");
+        if (SwrveHelper.isNullOrEmpty(value)) {
+            return 0;
+        }
+        value = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+                Date date = format.parse(value);
+                return Math.max(0, date.getTime() - currentTime());
+            } catch (ParseException pe) {
+                SwrveLogger.w("Invalid Retry-After header: %s", value);
+            }
+        }
+        return 0;
+    }
+
+    private static String getHeaderIgnoreCase(Map<String, List<String>> headers, String name) {
+        if (headers != null) {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (name.equalsIgnoreCase(header.getKey()) && header.getValue() != null && !header.getValue().isEmpty()) {
+                    return header.getValue().get(0);
+                }
+            }
+        }
+        return null;
+    }
+
+    private void load(IMemoryLocalStorage storage) {
+        if (loaded || storage == null) {
+            return;
+        }
+        loaded = true;
+        String savedState = storage.getSharedCacheEntry(RETRY_STATE_CATEGORY);
+        if (SwrveHelper.isNullOrEmpty(savedState)) {
+            return;
+        }
+        try {
+            JSONObject state = new JSONObject(savedState);
+            consecutiveFailures = state.optInt("consecutive_failures");
+            nextAttemptTime = state.optLong("next_attempt_time");
+            totalSuccesses = state.optLong("total_successes");
+            totalFailures = state.optLong("total_failures");
+            circuitBreakerTrips = state.optLong("circuit_breaker_trips");
+            skippedAttempts = state.optLong("skipped_attempts");
+        } catch (JSONException e) {
+            SwrveLogger.e("Invalid saved batch retry state", e);
+        }
+    }
+
+    private void save(IMemoryLocalStorage storage) {
+        if (storage == null) {
+            return;
+        }
+        try {
+            JSONObject state = new JSONObject();
+            state.put("consecutive_failures", consecutiveFailures);
+            state.put("next_attempt_time", nextAttemptTime);
+            state.put("total_successes", totalSuccesses);
+            state.put("total_failures", totalFailures);
+            state.put("circuit_breaker_trips", circuitBreakerTrips);
+            state.put("skipped_attempts", skippedAttempts);
+            storage.setAndFlushSharedEntry(RETRY_STATE_CATEGORY, state.toString());
+        } catch (JSONException e) {
+            SwrveLogger.e("Could not save batch retry state", e);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.swrve.sdk;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Used internally to keep a binary copy of a cached section of user_resources_and_campaigns, so
+ * it can be loaded at startup without parsing JSON text.
+ *
+ * The file has a header with a magic number, the snapshot version and a HMAC of the payload,
+ * signed once when the snapshot is written. It is memory mapped when read. Snapshots written
+ * with a different version, or that fail to verify, are ignored and the JSON cache is used.
+ */
+class SwrveCacheSnapshot {
+
+    // Change when the layout of the payload changes
+    protected static final int VERSION = 1;
+
+    private static final int MAGIC = 0x53575256;
+    private static final String SIGNATURE_ALGORITHM = "HmacMD5";
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_FALSE = 1;
+    private static final byte TYPE_TRUE = 2;
+    private static final byte TYPE_INT = 3;
+    private static final byte TYPE_LONG = 4;
+    private static final byte TYPE_DOUBLE = 5;
+    private static final byte TYPE_STRING = 6;
+    private static final byte TYPE_OBJECT = 7;
+    private static final byte TYPE_ARRAY = 8;
+
+    private final File file;
+    private final String uniqueKey;
+    private final int version;
+    private byte[] stringBuffer = new byte[256];
+
+    protected SwrveCacheSnapshot(File file, String uniqueKey) {
+        this(file, uniqueKey, VERSION);
+    }
+
+    protected SwrveCacheSnapshot(File file, String uniqueKey, int version) {
+        this.file = file;
+        this.uniqueKey = uniqueKey;
+        this.version = version;
+    }
+
+    /*
+     * The snapshot as a JSONObject or null if there is no usable snapshot.
+     */
+    protected JSONObject readJSONObject() {
+        ByteBuffer payload = map();
+        if (payload != null) {
+            try {
+                if (payload.get() == TYPE_OBJECT) {
+                    return readObject(payload);
+                }
+                SwrveLogger.w("Snapshot " + file.getName() + " does not hold an object");
+            } catch (BufferUnderflowException e) {
+                SwrveLogger.e("Snapshot " + file.getName() + " is truncated", e);
+            } catch (JSONException e) {
+                SwrveLogger.e("Snapshot " + file.getName() + " could not be read", e);
+            }
+            delete();
+        }
+        return null;
+    }
+
+    protected void writeJSONObject(JSONObject json) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeValue(out, json);
+            out.flush();
+            write(bytes.toByteArray());
+        } catch (Exception e) {
+            SwrveLogger.e("Could not write snapshot " + file.getName(), e);
+            delete();
+        }
+    }
+
+    /*
+     * The snapshot as resources by uid or null if there is no usable snapshot.
+     */
+    protected Map<String, SwrveResource> readResources() {
+        ByteBuffer payload = map();
+        if (payload != null) {
+            try {
+                int resourceCount = payload.getInt();
+                Map<String, SwrveResource> resources = new HashMap<String, SwrveResource>(resourceCount * 2);
+                for (int i = 0; i < resourceCount; i++) {
+                    String uid = readString(payload);
+                    int attributeCount = payload.getInt();
+                    Map<String, String> attributes = new HashMap<String, String>(attributeCount * 2);
+                    for (int a = 0; a < attributeCount; a++) {
+                        attributes.put(readString(payload), readString(payload));
+                    }
+                    resources.put(uid, new SwrveResource(attributes));
+                }
+                return resources;
+            } catch (BufferUnderflowException e) {
+                SwrveLogger.e("Snapshot " + file.getName() + " is truncated", e);
+            }
+            delete();
+        }
+        return null;
+    }
+
+    protected void writeResources(Map<String, SwrveResource> resources) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(resources.size());
+            for (Map.Entry<String, SwrveResource> resource : resources.entrySet()) {
+                writeString(out, resource.getKey());
+                Map<String, String> attributes = resource.getValue().attributes;
+                out.writeInt(attributes.size());
+                for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                    writeString(out, attribute.getKey());
+                    writeString(out, attribute.getValue());
+                }
+            }
+            out.flush();
+            write(bytes.toByteArray());
+        } catch (Exception e) {
+            SwrveLogger.e("Could not write snapshot " + file.getName(), e);
+            delete();
+        }
+    }
+
+    protected void delete() {
+        if (file.exists() && !file.delete()) {
+            SwrveLogger.w("Could not delete snapshot " + file.getName());
+        }
+    }
+
+    private void write(byte[] payload) throws IOException, GeneralSecurityException {
+        byte[] signature = sign(ByteBuffer.wrap(payload));
+        File tempFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(tempFile));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(version);
+            out.writeInt(signature.length);
+            out.write(signature);
+            out.writeInt(payload.length);
+            out.write(payload);
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Could not rename " + tempFile.getName());
+        }
+    }
+
+    /*
+     * Maps the file and returns its payload if it has the expected version and signature.
+     */
+    private ByteBuffer map() {
+        if (!file.exists()) {
+            return null;
+        }
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != version) {
+                SwrveLogger.i("Snapshot " + file.getName() + " has a different version, ignoring it");
+                delete();
+                return null;
+            }
+            byte[] signature = new byte[buffer.getInt()];
+            buffer.get(signature);
+            int payloadLength = buffer.getInt();
+            if (payloadLength != buffer.remaining()) {
+                throw new IOException("Snapshot payload has " + buffer.remaining() + " bytes, expected " + payloadLength);
+            }
+            ByteBuffer payload = buffer.slice();
+            if (!MessageDigest.isEqual(signature, sign(payload.duplicate()))) {
+                SwrveLogger.e("Signature validation failed for snapshot " + file.getName());
+                delete();
+                return null;
+            }
+            return payload;
+        } catch (Exception e) {
+            SwrveLogger.e("Could not read snapshot " + file.getName(), e);
+            delete();
+            return null;
+        } finally {
+            if (randomAccessFile != null) {
+                try {
+                    randomAccessFile.close(); // The mapping stays valid after the file is closed
+                } catch (IOException e) {
+                    SwrveLogger.e("Could not close snapshot " + file.getName(), e);
+                }
+            }
+        }
+    }
+
+    private byte[] sign(ByteBuffer payload) throws GeneralSecurityException {
+        Mac hmac = Mac.getInstance(SIGNATURE_ALGORITHM);
+        hmac.init(new SecretKeySpec(uniqueKey.getBytes(), SIGNATURE_ALGORITHM));
+        hmac.update(payload);
+        return hmac.doFinal();
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException, JSONException {
+        if (value == null || value == JSONObject.NULL) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Number) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            out.writeByte(TYPE_OBJECT);
+            out.writeInt(object.length());
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                writeString(out, key);
+                writeValue(out, object.get(key));
+            }
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            out.writeByte(TYPE_ARRAY);
+            out.writeInt(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                writeValue(out, array.get(i));
+            }
+        } else {
+            out.writeByte(TYPE_STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private Object readValue(ByteBuffer in) throws JSONException {
+        byte type = in.get();
+        switch (type) {
+            case TYPE_NULL:
+                return JSONObject.NULL;
+            case TYPE_FALSE:
+                return Boolean.FALSE;
+            case TYPE_TRUE:
+                return Boolean.TRUE;
+            case TYPE_INT:
+                return in.getInt();
+            case TYPE_LONG:
+                return in.getLong();
+            case TYPE_DOUBLE:
+                return in.getDouble();
+            case TYPE_STRING:
+                return readString(in);
+            case TYPE_OBJECT:
+                return readObject(in);
+            case TYPE_ARRAY:
+                int length = in.getInt();
+                JSONArray array = new JSONArray();
+                for (int i = 0; i < length; i++) {
+                    array.put(readValue(in));
+                }
+                return array;
+            default:
+                throw new JSONException("Unknown type " + type + " in snapshot");
+        }
+    }
+
+    private JSONObject readObject(ByteBuffer in) throws JSONException {
+        int length = in.getInt();
+        JSONObject object = new JSONObject();
+        for (int i = 0; i < length; i++) {
+            String key = readString(in);
+            object.put(key, readValue(in));
+        }
+        return object;
+    }
+
+    private String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length > stringBuffer.length) {
+            stringBuffer = new byte[Math.max(length, stringBuffer.length * 2)];
+        }
+        in.get(stringBuffer, 0, length);
+        try {
+            return new String(stringBuffer, 0, length, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
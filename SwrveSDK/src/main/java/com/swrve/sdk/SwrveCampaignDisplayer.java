@@ -1,10 +1,11 @@
 package com.swrve.sdk;
 
+import android.util.Log;
+
 import com.swrve.sdk.messaging.SwrveBaseCampaign;
 import com.swrve.sdk.messaging.SwrveCampaignState;
-import com.swrve.sdk.messaging.model.Arg;
-import com.swrve.sdk.messaging.model.Conditions;
 import com.swrve.sdk.messaging.model.Trigger;
+import com.swrve.sdk.messaging.model.TriggerPredicate;
 import com.swrve.sdk.qa.SwrveQAUser;
 
 import java.text.SimpleDateFormat;
@@ -64,22 +65,30 @@ public class SwrveCampaignDisplayer {
 
     protected boolean checkAppCampaignRules(int campaignsCount, String campaignType, String event, Date now) {
         if (campaignsCount == 0) {
-            noMessagesWereShown(event, "No " + campaignType + "s available");
+            if (isFailureReasonNeeded()) {
+                noMessagesWereShown(event, "No " + campaignType + "s available");
+            }
             return false;
         }
 
         if (!event.equalsIgnoreCase(SwrveBase.SWRVE_AUTOSHOW_AT_SESSION_START_TRIGGER) && isTooSoonToShowMessageAfterLaunch(now)) {
-            noMessagesWereShown(event, "{App throttle limit} Too soon after launch. Wait until " + timestampFormat.format(showMessagesAfterLaunch));
+            if (isFailureReasonNeeded()) {
+                noMessagesWereShown(event, "{App throttle limit} Too soon after launch. Wait until " + formatTimestamp(showMessagesAfterLaunch));
+            }
             return false;
         }
 
         if (isTooSoonToShowMessageAfterDelay(now)) {
-            noMessagesWereShown(event, "{App throttle limit} Too soon after last " + campaignType + ". Wait until " + timestampFormat.format(showMessagesAfterDelay));
+            if (isFailureReasonNeeded()) {
+                noMessagesWereShown(event, "{App throttle limit} Too soon after last " + campaignType + ". Wait until " + formatTimestamp(showMessagesAfterDelay));
+            }
             return false;
         }
 
         if (hasShowTooManyMessagesAlready()) {
-            noMessagesWereShown(event, "{App Throttle limit} Too many " + campaignType + "s shown");
+            if (isFailureReasonNeeded()) {
+                noMessagesWereShown(event, "{App Throttle limit} Too many " + campaignType + "s shown");
+            }
             return false;
         }
 
@@ -92,7 +101,9 @@ public class SwrveCampaignDisplayer {
         }
 
         if (elementCount == 0) {
-            logAndAddReason(swrveCampaign, campaignDisplayResults, DisplayResult.ERROR_NO_VARIANT, "No campaign variants for campaign id:" + swrveCampaign.getId());
+            if (isReasonNeeded(campaignDisplayResults)) {
+                logAndAddReason(swrveCampaign, campaignDisplayResults, DisplayResult.ERROR_NO_VARIANT, "No campaign variants for campaign id:" + swrveCampaign.getId());
+            }
             return false;
         }
 
@@ -101,23 +112,29 @@ public class SwrveCampaignDisplayer {
         }
 
         if (swrveCampaign.getSaveableState().getImpressions() >= swrveCampaign.getMaxImpressions()) {
-            String resultText = "{Campaign throttle limit} Campaign " + swrveCampaign.getId() + " has been shown " + swrveCampaign.getMaxImpressions() + " times already";
-            logAndAddReason(swrveCampaign, campaignDisplayResults, DisplayResult.CAMPAIGN_THROTTLE_MAX_IMPRESSIONS, resultText);
+            if (isReasonNeeded(campaignDisplayResults)) {
+                String resultText = "{Campaign throttle limit} Campaign " + swrveCampaign.getId() + " has been shown " + swrveCampaign.getMaxImpressions() + " times already";
+                logAndAddReason(swrveCampaign, campaignDisplayResults, DisplayResult.CAMPAIGN_THROTTLE_MAX_IMPRESSIONS, resultText);
+            }
             return false;
         }
 
         // Ignore delay after launch throttle limit for auto show messages
         if (!event.equalsIgnoreCase(SwrveBase.SWRVE_AUTOSHOW_AT_SESSION_START_TRIGGER) && isTooSoonToShowMessageAfterLaunch(swrveCampaign, now)) {
-            String formattedDate = timestampFormat.format(swrveCampaign.getShowMessagesAfterLaunch());
-            String resultText = "{Campaign throttle limit} Too soon after launch. Wait until " + formattedDate;
-            logAndAddReason(swrveCampaign, campaignDisplayResults, DisplayResult.CAMPAIGN_THROTTLE_LAUNCH_TIME, resultText);
+            if (isReasonNeeded(campaignDisplayResults)) {
+                String formattedDate = formatTimestamp(swrveCampaign.getShowMessagesAfterLaunch());
+                String resultText = "{Campaign throttle limit} Too soon after launch. Wait until " + formattedDate;
+                logAndAddReason(swrveCampaign, campaignDisplayResults, DisplayResult.CAMPAIGN_THROTTLE_LAUNCH_TIME, resultText);
+            }
             return false;
         }
 
         if (isTooSoonToShowMessageAfterDelay(swrveCampaign, now)) {
-            String formattedDate = timestampFormat.format(swrveCampaign.getSaveableState().showMessagesAfterDelay);
-            String resultText = "{Campaign throttle limit} Too soon after last campaign. Wait until " + formattedDate;
-            logAndAddReason(swrveCampaign, campaignDisplayResults, DisplayResult.CAMPAIGN_THROTTLE_RECENT, resultText);
+            if (isReasonNeeded(campaignDisplayResults)) {
+                String formattedDate = formatTimestamp(swrveCampaign.getSaveableState().showMessagesAfterDelay);
+                String resultText = "{Campaign throttle limit} Too soon after last campaign. Wait until " + formattedDate;
+                logAndAddReason(swrveCampaign, campaignDisplayResults, DisplayResult.CAMPAIGN_THROTTLE_RECENT, resultText);
+            }
             return false;
         }
 
@@ -126,57 +143,43 @@ public class SwrveCampaignDisplayer {
 
     protected boolean canTrigger(SwrveBaseCampaign swrveCampaign, String eventName, Map<String, String> payload, Map<Integer, Result> campaignDisplayResults) {
         if (swrveCampaign.getTriggers() == null || swrveCampaign.getTriggers().size() == 0) {
-            String resultText = "Campaign [" + swrveCampaign.getId() + "], no triggers (could be message centre). Skipping this campaign.";
-            logAndAddReason(swrveCampaign, campaignDisplayResults, DisplayResult.ERROR_INVALID_TRIGGERS, resultText);
+            if (isReasonNeeded(campaignDisplayResults)) {
+                String resultText = "Campaign [" + swrveCampaign.getId() + "], no triggers (could be message centre). Skipping this campaign.";
+                logAndAddReason(swrveCampaign, campaignDisplayResults, DisplayResult.ERROR_INVALID_TRIGGERS, resultText);
+            }
             return false;
         }
 
         List<Trigger> triggers = swrveCampaign.getTriggers();
-        for (Trigger trigger : triggers) {
+        for (int i = 0, size = triggers.size(); i < size; i++) {
+            Trigger trigger = triggers.get(i);
             if (eventName != null && eventName.equalsIgnoreCase(trigger.getEventName())) {
-                Conditions conditions = trigger.getConditions();
-                if (conditions.getOp() == null && conditions.getArgs() == null) {
-                    String resultText = "Campaign [" + swrveCampaign.getId() + "], Trigger [" + trigger + "], matches eventName[" + eventName + "] & payload[" + payload + "].";
-                    logAndAddReason(swrveCampaign, campaignDisplayResults, DisplayResult.MATCH, resultText);
-                    return true; // no conditions equates to a match
-                } else if (Conditions.Op.AND.equals(conditions.getOp())) {
-                    boolean conditionsMatchPayload = false;
-                    for (Arg arg : conditions.getArgs()) {
-                        if (payload != null && payload.containsKey(arg.getKey()) && payload.get(arg.getKey()).equalsIgnoreCase(arg.getValue())) {
-                            conditionsMatchPayload = true;
-                        } else {
-                            String resultText = "Campaign [" + swrveCampaign.getId() + "], Trigger [" + trigger + "], does not match eventName[" + eventName + "] & payload[" + payload + "]. Skipping this trigger.";
-                            logAndAddReason(swrveCampaign, campaignDisplayResults, DisplayResult.NO_MATCH, resultText);
-                            conditionsMatchPayload = false;
-                            break;
-                        }
-                    }
-                    if (conditionsMatchPayload) {
-                        String resultText = "Campaign [" + swrveCampaign.getId() + "], Trigger [" + trigger + "], matches eventName[" + eventName + "] & payload[" + payload + "].";
-                        logAndAddReason(swrveCampaign, campaignDisplayResults, DisplayResult.MATCH, resultText);
-                        return true;
-                    }
-                } else if (Conditions.Op.EQ.equals(conditions.getOp())) {
-                    if (payload != null && payload.containsKey(conditions.getKey()) && payload.get(conditions.getKey()).equalsIgnoreCase(conditions.getValue())) {
-                        String resultText = "Campaign [" + swrveCampaign.getId() + "], Trigger [" + trigger + "], matches eventName[" + eventName + "] & payload[" + payload + "].";
-                        logAndAddReason(swrveCampaign, campaignDisplayResults, DisplayResult.MATCH, resultText);
-                        return true;
-                    } else {
-                        String resultText = "Campaign [" + swrveCampaign.getId() + "], Trigger [" + trigger + "], does not match eventName[" + eventName + "] & payload[" + payload + "]. Skipping this trigger.";
-                        logAndAddReason(swrveCampaign, campaignDisplayResults, DisplayResult.NO_MATCH, resultText);
-                        continue;
-                    }
+                TriggerPredicate predicate = trigger.getPredicate();
+                if (predicate != null && predicate.matches(payload)) {
+                    addTriggerReason(swrveCampaign, campaignDisplayResults, DisplayResult.MATCH, trigger, eventName, payload);
+                    return true;
                 }
-            } else {
-                String resultText = "Campaign [" + swrveCampaign.getId() + "], Trigger [" + trigger + "], does not match eventName[" + eventName + "] & payload[" + payload + "]. Skipping this trigger.";
-                logAndAddReason(swrveCampaign, campaignDisplayResults, DisplayResult.NO_MATCH, resultText);
-                continue;
             }
+            addTriggerReason(swrveCampaign, campaignDisplayResults, DisplayResult.NO_MATCH, trigger, eventName, payload);
         }
 
         return false;
     }
 
+    // The reason text is only built when it is reported to a QA user or logged
+    private void addTriggerReason(SwrveBaseCampaign swrveCampaign, Map<Integer, Result> campaignDisplayResults, DisplayResult resultCode, Trigger trigger, String eventName, Map<String, String> payload) {
+        if (!isReasonNeeded(campaignDisplayResults)) {
+            return;
+        }
+        String resultText;
+        if (resultCode == DisplayResult.MATCH) {
+            resultText = "Campaign [" + swrveCampaign.getId() + "], Trigger [" + trigger + "], matches eventName[" + eventName + "] & payload[" + payload + "].";
+        } else {
+            resultText = "Campaign [" + swrveCampaign.getId() + "], Trigger [" + trigger + "], does not match eventName[" + eventName + "] & payload[" + payload + "]. Skipping this trigger.";
+        }
+        logAndAddReason(swrveCampaign, campaignDisplayResults, resultCode, resultText);
+    }
+
     private boolean isTooSoonToShowMessageAfterLaunch(SwrveBaseCampaign swrveCampaign, Date now) {
         return now.before(swrveCampaign.getShowMessagesAfterLaunch());
     }
@@ -188,13 +191,17 @@ public class SwrveCampaignDisplayer {
 
     public boolean isCampaignActive(SwrveBaseCampaign swrveCampaign, Date now, Map<Integer, Result> campaignDisplayResult) {
         if (swrveCampaign.getStartDate().after(now)) {
-            String resultText = "Campaign " + swrveCampaign.getId() + " has not started yet";
-            logAndAddReason(swrveCampaign, campaignDisplayResult, DisplayResult.CAMPAIGN_NOT_ACTIVE, resultText);
+            if (isReasonNeeded(campaignDisplayResult)) {
+                String resultText = "Campaign " + swrveCampaign.getId() + " has not started yet";
+                logAndAddReason(swrveCampaign, campaignDisplayResult, DisplayResult.CAMPAIGN_NOT_ACTIVE, resultText);
+            }
             return false;
         }
         if (swrveCampaign.getEndDate().before(now)) {
-            String resultText = "Campaign " + swrveCampaign.getId() + " has finished";
-            logAndAddReason(swrveCampaign, campaignDisplayResult, DisplayResult.CAMPAIGN_NOT_ACTIVE, resultText);
+            if (isReasonNeeded(campaignDisplayResult)) {
+                String resultText = "Campaign " + swrveCampaign.getId() + " has finished";
+                logAndAddReason(swrveCampaign, campaignDisplayResult, DisplayResult.CAMPAIGN_NOT_ACTIVE, resultText);
+            }
             return false;
         }
         return true;
@@ -215,6 +222,24 @@ public class SwrveCampaignDisplayer {
         return now.before(showMessagesAfterDelay);
     }
 
+    /*
+     * Reason texts are only needed when there is a QA user to report them to or when info logging is enabled.
+     */
+    private boolean isReasonNeeded(Map<Integer, Result> campaignDisplayResults) {
+        return campaignDisplayResults != null || SwrveLogger.isLoggable(Log.INFO);
+    }
+
+    private boolean isFailureReasonNeeded() {
+        return qaUser != null || SwrveLogger.isLoggable(Log.INFO);
+    }
+
+    // SimpleDateFormat is not thread safe and triggers can be evaluated on different threads
+    private String formatTimestamp(Date date) {
+        synchronized (timestampFormat) {
+            return timestampFormat.format(date);
+        }
+    }
+
     private void logAndAddReason(SwrveBaseCampaign swrveCampaign, Map<Integer, Result> campaignDisplayResults, DisplayResult resultCode, String resultText) {
         if (campaignDisplayResults != null) {
             campaignDisplayResults.put(swrveCampaign.getId(), buildResult(resultCode, resultText));
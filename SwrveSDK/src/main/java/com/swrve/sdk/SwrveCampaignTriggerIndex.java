@@ -0,0 +1,66 @@
+package com.swrve.sdk;
+
+import com.swrve.sdk.messaging.SwrveBaseCampaign;
+import com.swrve.sdk.messaging.model.Trigger;
+import com.swrve.sdk.messaging.model.TriggerPredicate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Used internally to find the campaigns that have a trigger for an event name without
+ * checking the triggers of every campaign.
+ *
+ * The index is immutable and built for one list of campaigns. Campaigns are returned in the
+ * same order as in that list.
+ */
+class SwrveCampaignTriggerIndex {
+
+    private final Map<String, List<SwrveBaseCampaign>> campaignsByEventName;
+
+    protected SwrveCampaignTriggerIndex(List<SwrveBaseCampaign> campaigns) {
+        this.campaignsByEventName = new HashMap<String, List<SwrveBaseCampaign>>();
+        for (SwrveBaseCampaign campaign : campaigns) {
+            List<Trigger> triggers = campaign.getTriggers();
+            if (triggers == null) {
+                continue;
+            }
+            for (Trigger trigger : triggers) {
+                if (trigger.getEventName() == null) {
+                    continue;
+                }
+                String key = TriggerPredicate.foldCase(trigger.getEventName());
+                List<SwrveBaseCampaign> eventCampaigns = campaignsByEventName.get(key);
+                if (eventCampaigns == null) {
+                    eventCampaigns = new ArrayList<SwrveBaseCampaign>();
+                    campaignsByEventName.put(key, eventCampaigns);
+                }
+                // A campaign with several triggers for the same event is only added once
+                if (eventCampaigns.isEmpty() || eventCampaigns.get(eventCampaigns.size() - 1) != campaign) {
+                    eventCampaigns.add(campaign);
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns the campaigns with at least one trigger for the event name, ignoring case.
+     */
+    protected List<SwrveBaseCampaign> getCampaigns(String eventName) {
+        if (eventName == null) {
+            return Collections.emptyList();
+        }
+        List<SwrveBaseCampaign> eventCampaigns = campaignsByEventName.get(TriggerPredicate.foldCase(eventName));
+        if (eventCampaigns == null) {
+            return Collections.emptyList();
+        }
+        return eventCampaigns;
+    }
+
+    protected int getEventNameCount() {
+        return campaignsByEventName.size();
+    }
+}
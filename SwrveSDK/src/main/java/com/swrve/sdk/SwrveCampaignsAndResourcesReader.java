@@ -0,0 +1,232 @@
+package com.swrve.sdk;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Used internally to parse the user_resources_and_campaigns response as it is downloaded.
+ *
+ * The response is never held as a whole, neither as a string nor as a JSON tree. Only the
+ * campaigns section is built as a JSONObject because the campaign models are loaded from it.
+ * Resources are converted one at a time and location campaigns are only kept as text. The text
+ * of the sections that are cached is written while they are read, so they do not need to be
+ * serialized again to be stored.
+ */
+class SwrveCampaignsAndResourcesReader {
+
+    private final boolean cacheCampaigns;
+
+    private Integer flushFrequency;
+    private Integer flushRefreshDelay;
+    private JSONObject campaigns;
+    private String campaignsCacheContent;
+    private String locationCampaignsCacheContent;
+    private Map<String, SwrveResource> resources;
+    private String resourcesCacheContent;
+
+    /*
+     * cacheCampaigns is false when the text of the campaigns section is not needed.
+     */
+    protected SwrveCampaignsAndResourcesReader(boolean cacheCampaigns) {
+        this.cacheCampaigns = cacheCampaigns;
+    }
+
+    protected void read(Reader body) throws IOException, JSONException {
+        JsonReader in = new JsonReader(body);
+        try {
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.skipValue();
+                } else if ("flush_frequency".equals(name)) {
+                    flushFrequency = in.nextInt();
+                } else if ("flush_refresh_delay".equals(name)) {
+                    flushRefreshDelay = in.nextInt();
+                } else if ("campaigns".equals(name)) {
+                    StringWriter text = cacheCampaigns ? new StringWriter() : null;
+                    campaigns = (JSONObject) readSection(in, text, true);
+                    campaignsCacheContent = (text == null) ? null : text.toString();
+                } else if ("location_campaigns".equals(name)) {
+                    StringWriter text = new StringWriter();
+                    readSection(in, text, false);
+                    locationCampaignsCacheContent = text.toString();
+                } else if ("user_resources".equals(name)) {
+                    readResources(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+        } catch (MalformedJsonException ex) {
+            throw new JSONException(ex.getMessage());
+        } catch (IllegalStateException ex) {
+            // Thrown by the reader when the response has an unexpected structure
+            throw new JSONException(ex.getMessage());
+        } catch (ClassCastException ex) {
+            throw new JSONException(ex.getMessage());
+        }
+    }
+
+    private void readResources(JsonReader in) throws IOException, JSONException {
+        StringWriter text = new StringWriter();
+        JsonWriter out = new JsonWriter(text);
+        Map<String, SwrveResource> resources = new HashMap<String, SwrveResource>();
+        in.beginArray();
+        out.beginArray();
+        while (in.hasNext()) {
+            JSONObject resourceJSON = (JSONObject) readValue(in, out, true);
+            resources.put(resourceJSON.getString("uid"), new SwrveResource(SwrveHelper.JSONToMap(resourceJSON)));
+        }
+        in.endArray();
+        out.endArray();
+        out.flush();
+        this.resources = resources;
+        this.resourcesCacheContent = text.toString();
+    }
+
+    private Object readSection(JsonReader in, StringWriter text, boolean build) throws IOException, JSONException {
+        JsonWriter out = (text == null) ? null : new JsonWriter(text);
+        Object value = readValue(in, out, build);
+        if (out != null) {
+            out.flush();
+        }
+        return value;
+    }
+
+    /*
+     * Reads the next value, copying it to out if not null. When build is true the value is returned
+     * with the same types JSONObject would have parsed it into, otherwise objects and arrays are
+     * skipped over and returned as null.
+     */
+    private static Object readValue(JsonReader in, JsonWriter out, boolean build) throws IOException, JSONException {
+        switch (in.peek()) {
+            case BEGIN_OBJECT:
+                JSONObject object = build ? new JSONObject() : null;
+                in.beginObject();
+                if (out != null) {
+                    out.beginObject();
+                }
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    if (out != null) {
+                        out.name(name);
+                    }
+                    Object member = readValue(in, out, build);
+                    if (build) {
+                        object.put(name, member);
+                    }
+                }
+                in.endObject();
+                if (out != null) {
+                    out.endObject();
+                }
+                return object;
+            case BEGIN_ARRAY:
+                JSONArray array = build ? new JSONArray() : null;
+                in.beginArray();
+                if (out != null) {
+                    out.beginArray();
+                }
+                while (in.hasNext()) {
+                    Object element = readValue(in, out, build);
+                    if (build) {
+                        array.put(element);
+                    }
+                }
+                in.endArray();
+                if (out != null) {
+                    out.endArray();
+                }
+                return array;
+            case STRING:
+                String string = in.nextString();
+                if (out != null) {
+                    out.value(string);
+                }
+                return string;
+            case NUMBER:
+                Number number = toNumber(in.nextString());
+                if (out != null) {
+                    out.value(number);
+                }
+                return number;
+            case BOOLEAN:
+                boolean bool = in.nextBoolean();
+                if (out != null) {
+                    out.value(bool);
+                }
+                return bool;
+            case NULL:
+                in.nextNull();
+                if (out != null) {
+                    out.nullValue();
+                }
+                return JSONObject.NULL;
+            default:
+                throw new JSONException("Unexpected " + in.peek() + " in campaigns and resources");
+        }
+    }
+
+    // Same number types as org.json uses for literals
+    private static Number toNumber(String literal) {
+        if (literal.indexOf('.') == -1 && literal.indexOf('e') == -1 && literal.indexOf('E') == -1) {
+            try {
+                long longValue = Long.parseLong(literal);
+                if (longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE) {
+                    return (int) longValue;
+                }
+                return longValue;
+            } catch (NumberFormatException e) {
+                // Too large for a long, fall back to double
+            }
+        }
+        return Double.valueOf(literal);
+    }
+
+    protected Integer getFlushFrequency() {
+        return flushFrequency;
+    }
+
+    protected Integer getFlushRefreshDelay() {
+        return flushRefreshDelay;
+    }
+
+    /*
+     * The campaigns section or null if the response did not have one.
+     */
+    protected JSONObject getCampaigns() {
+        return campaigns;
+    }
+
+    protected String getCampaignsCacheContent() {
+        return campaignsCacheContent;
+    }
+
+    protected String getLocationCampaignsCacheContent() {
+        return locationCampaignsCacheContent;
+    }
+
+    /*
+     * The user resources by uid or null if the response did not have them.
+     */
+    protected Map<String, SwrveResource> getResources() {
+        return resources;
+    }
+
+    protected String getResourcesCacheContent() {
+        return resourcesCacheContent;
+    }
+}
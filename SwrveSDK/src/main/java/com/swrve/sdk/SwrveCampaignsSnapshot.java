@@ -0,0 +1,109 @@
+package com.swrve.sdk;
+
+import android.util.SparseArray;
+
+import com.swrve.sdk.messaging.SwrveBaseCampaign;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Used internally to publish the loaded campaigns to readers without locking.
+ *
+ * A snapshot is never modified after it is created. Campaign refreshes build a new snapshot and
+ * swap it in, so readers always see a consistent set of campaigns, trigger index and app store
+ * URLs.
+ *
+ * The snapshot also remembers the content hash and assets of each campaign JSON it was loaded
+ * from, so the next refresh can reuse the campaigns that have not changed.
+ */
+final class SwrveCampaignsSnapshot {
+
+    static final SwrveCampaignsSnapshot EMPTY = new SwrveCampaignsSnapshot(new ArrayList<SwrveBaseCampaign>(), new SparseArray<String>());
+
+    private final List<SwrveBaseCampaign> campaigns;
+    private final SwrveCampaignTriggerIndex triggerIndex;
+    private final SparseArray<String> appStoreURLs;
+    private final Map<Integer, SwrveBaseCampaign> campaignsById;
+    private final Map<Integer, String> contentHashes;
+    private final Map<Integer, Set<SwrveAssetsQueueItem>> campaignAssets;
+
+    SwrveCampaignsSnapshot(List<SwrveBaseCampaign> campaigns, SparseArray<String> appStoreURLs) {
+        this(campaigns, appStoreURLs, new HashMap<Integer, String>(), new HashMap<Integer, Set<SwrveAssetsQueueItem>>());
+    }
+
+    /*
+     * Takes ownership of the list, the app store URLs and the maps, none can be modified afterwards.
+     * The content hashes and assets are keyed by campaign id.
+     */
+    SwrveCampaignsSnapshot(List<SwrveBaseCampaign> campaigns, SparseArray<String> appStoreURLs, Map<Integer, String> contentHashes, Map<Integer, Set<SwrveAssetsQueueItem>> campaignAssets) {
+        this.campaigns = Collections.unmodifiableList(campaigns);
+        this.triggerIndex = new SwrveCampaignTriggerIndex(this.campaigns);
+        this.appStoreURLs = appStoreURLs;
+        this.campaignsById = new HashMap<Integer, SwrveBaseCampaign>();
+        for (SwrveBaseCampaign campaign : campaigns) {
+            campaignsById.put(campaign.getId(), campaign);
+        }
+        this.contentHashes = contentHashes;
+        this.campaignAssets = campaignAssets;
+    }
+
+    List<SwrveBaseCampaign> getCampaigns() {
+        return campaigns;
+    }
+
+    /*
+     * Campaigns with a trigger for the event, in the same order as getCampaigns().
+     */
+    List<SwrveBaseCampaign> getCampaignsForEvent(String event) {
+        return triggerIndex.getCampaigns(event);
+    }
+
+    String getAppStoreURL(int appId) {
+        return appStoreURLs.get(appId);
+    }
+
+    /*
+     * Returns the campaign with this id if it was loaded from JSON with the same content hash,
+     * otherwise null.
+     */
+    SwrveBaseCampaign getUnchangedCampaign(int campaignId, String contentHash) {
+        if (contentHash == null || !contentHash.equals(contentHashes.get(campaignId))) {
+            return null;
+        }
+        return campaignsById.get(campaignId);
+    }
+
+    /*
+     * Assets the campaign with this id needs to be displayed.
+     */
+    Set<SwrveAssetsQueueItem> getCampaignAssets(int campaignId) {
+        Set<SwrveAssetsQueueItem> assets = campaignAssets.get(campaignId);
+        if (assets == null) {
+            return Collections.emptySet();
+        }
+        return assets;
+    }
+
+    /*
+     * Returns a copy of the app store URLs that can be modified to build the next snapshot.
+     */
+    SparseArray<String> copyAppStoreURLs() {
+        SparseArray<String> copy = new SparseArray<String>(appStoreURLs.size());
+        for (int i = 0; i < appStoreURLs.size(); i++) {
+            copy.put(appStoreURLs.keyAt(i), appStoreURLs.valueAt(i));
+        }
+        return copy;
+    }
+
+    /*
+     * Returns a snapshot with the same app store URLs and no campaigns.
+     */
+    SwrveCampaignsSnapshot withoutCampaigns() {
+        return new SwrveCampaignsSnapshot(new ArrayList<SwrveBaseCampaign>(), appStoreURLs);
+    }
+}
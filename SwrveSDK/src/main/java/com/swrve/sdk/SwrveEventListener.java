@@ -1,6 +1,8 @@
 package com.swrve.sdk;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 
 import com.swrve.sdk.conversations.ISwrveConversationListener;
 import com.swrve.sdk.conversations.SwrveConversation;
@@ -9,16 +11,21 @@ import com.swrve.sdk.messaging.SwrveMessage;
 import com.swrve.sdk.messaging.SwrveOrientation;
 
 import java.lang.ref.WeakReference;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Default event listener. Will display an in-app message if available.
+ *
+ * If async trigger evaluation is enabled in the config, the campaigns are evaluated on a
+ * background executor and only the resulting message or conversation is posted to the UI thread.
  */
 public class SwrveEventListener implements ISwrveEventListener {
 
     private WeakReference<SwrveBase<?, ?>> talk;
     private ISwrveMessageListener messageListener;
     private ISwrveConversationListener conversationListener;
+    private Handler mainHandler;
 
     public SwrveEventListener(SwrveBase<?, ?> talk, ISwrveMessageListener messageListener, ISwrveConversationListener conversationListener) {
         this.talk = new WeakReference<SwrveBase<?, ?>>(talk);
@@ -27,19 +34,52 @@ public class SwrveEventListener implements ISwrveEventListener {
     }
 
     @Override
-    public void onEvent(String eventName, Map<String, String> payload) {
-        if (conversationListener != null && !SwrveHelper.isNullOrEmpty(eventName)) {
+    public void onEvent(final String eventName, Map<String, String> payload) {
+        if ((conversationListener == null && messageListener == null) || SwrveHelper.isNullOrEmpty(eventName)) {
+            return;
+        }
+        SwrveBase<?, ?> talkRef = talk.get();
+        if (talkRef == null || !talkRef.getConfig().isTalkEnabled()) {
+            return;
+        }
+
+        if (!talkRef.getConfig().isAsyncTriggerEvaluationEnabled()) {
+            evaluateTriggers(eventName, payload, false);
+            return;
+        }
+
+        // The caller may change the payload after sending the event
+        final Map<String, String> payloadCopy = (payload == null) ? null : new HashMap<String, String>(payload);
+        talkRef.triggerExecutorExecute(new Runnable() {
+            @Override
+            public void run() {
+                evaluateTriggers(eventName, payloadCopy, true);
+            }
+        });
+    }
+
+    private void evaluateTriggers(String eventName, Map<String, String> payload, boolean postToMainThread) {
+        if (conversationListener != null) {
             SwrveBase<?, ?> talkRef = talk.get();
             if (talkRef != null && talkRef.getConfig().isTalkEnabled()) {
-                SwrveConversation conversation = talkRef.getConversationForEvent(eventName, payload);
+                final SwrveConversation conversation = talkRef.getConversationForEvent(eventName, payload);
                 if (conversation != null) {
-                    conversationListener.onMessage(conversation);
+                    if (postToMainThread) {
+                        postToMainThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                conversationListener.onMessage(conversation);
+                            }
+                        });
+                    } else {
+                        conversationListener.onMessage(conversation);
+                    }
                     return;
                 }
             }
         }
 
-        if (messageListener != null && !SwrveHelper.isNullOrEmpty(eventName)) {
+        if (messageListener != null) {
             SwrveBase<?, ?> talkRef = talk.get();
             if (talkRef != null && talkRef.getConfig().isTalkEnabled()) {
                 SwrveOrientation deviceOrientation = SwrveOrientation.Both;
@@ -47,11 +87,27 @@ public class SwrveEventListener implements ISwrveEventListener {
                 if (ctx != null) {
                     deviceOrientation = SwrveOrientation.parse(ctx.getResources().getConfiguration().orientation);
                 }
-                SwrveMessage message = talkRef.getMessageForEvent(eventName, payload, deviceOrientation);
+                final SwrveMessage message = talkRef.getMessageForEvent(eventName, payload, deviceOrientation);
                 if (message != null) {
-                    messageListener.onMessage(message);
+                    if (postToMainThread) {
+                        postToMainThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                messageListener.onMessage(message);
+                            }
+                        });
+                    } else {
+                        messageListener.onMessage(message);
+                    }
                 }
             }
         }
     }
+
+    private void postToMainThread(Runnable runnable) {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        mainHandler.post(SwrveRunnables.withoutExceptions(runnable));
+    }
 }
@@ -13,4 +13,6 @@ interface SwrveEventsManager {
     int storeAndSendEvents(ArrayList<String> eventsJson, MemoryCachedLocalStorage memoryCachedLocalStorage, SQLiteLocalStorage sqLiteLocalStorage) throws Exception;
 
     int sendStoredEvents(MemoryCachedLocalStorage cachedLocalStorage);
+
+    int sendAllStoredEvents(MemoryCachedLocalStorage cachedLocalStorage);
 }
\ No newline at end of file
@@ -13,6 +13,12 @@ import org.json.JSONException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SwrveEventsManagerImp implements SwrveEventsManager {
 
@@ -24,14 +30,30 @@ public class SwrveEventsManagerImp implements SwrveEventsManager {
     private final String appVersion;
     private final String sessionToken;
     private final short deviceId;
+    private final SwrveBatchRetryPolicy retryPolicy;
+    private final ExecutorService batchExecutor;
 
     protected SwrveEventsManagerImp(SwrveConfigBase config, IRESTClient restClient, String userId, String appVersion, String sessionToken, short deviceId) {
+        this(config, restClient, userId, appVersion, sessionToken, deviceId, null);
+    }
+
+    protected SwrveEventsManagerImp(SwrveConfigBase config, IRESTClient restClient, String userId, String appVersion, String sessionToken, short deviceId, SwrveBatchRetryPolicy retryPolicy) {
+        this(config, restClient, userId, appVersion, sessionToken, deviceId, retryPolicy, null);
+    }
+
+    /*
+     * Pipelined batches are sent on batchExecutor, shared by every events manager. Without one all
+     * the queued events are sent one batch at a time.
+     */
+    protected SwrveEventsManagerImp(SwrveConfigBase config, IRESTClient restClient, String userId, String appVersion, String sessionToken, short deviceId, SwrveBatchRetryPolicy retryPolicy, ExecutorService batchExecutor) {
         this.config = config;
         this.restClient = restClient;
         this.userId = userId;
         this.appVersion = appVersion;
         this.sessionToken = sessionToken;
         this.deviceId = deviceId;
+        this.retryPolicy = retryPolicy;
+        this.batchExecutor = batchExecutor;
     }
 
     /*
@@ -42,18 +64,28 @@ public class SwrveEventsManagerImp implements SwrveEventsManager {
         if (eventsJson == null || (eventsJson != null && eventsJson.size() == 0)) {
             return 0;
         }
+        LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> combinedEvents = new LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>>();
         synchronized(MemoryCachedLocalStorage.EVENT_LOCK) {
             LinkedHashMap<Long, String> storedEvents = storeEvents(eventsJson, sqLiteLocalStorage);
-            LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> combinedEvents = new LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>>();
-            combinedEvents.put(memoryCachedLocalStorage, storedEvents);
-            return sendEvents(combinedEvents);
+            combinedEvents.put(sqLiteLocalStorage, storedEvents);
+            if (!canSend(memoryCachedLocalStorage)) {
+                // Keep the events stored until the retry delay is over
+                return 0;
+            }
+            memoryCachedLocalStorage.leaseEvents(combinedEvents);
         }
+        return sendEvents(combinedEvents, memoryCachedLocalStorage);
     }
 
     private LinkedHashMap<Long, String> storeEvents(ArrayList<String> eventsJson, SQLiteLocalStorage sqLiteLocalStorage) throws Exception {
         LinkedHashMap<Long, String> storedEvents = new LinkedHashMap<Long, String>();
         // Store named events coming from the list
         for (String eventAsJSON : eventsJson) {
+            // Stored events are added to batches without parsing them again
+            if (!EventHelper.isValidEvent(eventAsJSON)) {
+                SwrveLogger.e(LOG_TAG, "Ignoring invalid event: %s", eventAsJSON);
+                continue;
+            }
             long id = sqLiteLocalStorage.addEventAndGetId(eventAsJSON);
             storedEvents.put(id, eventAsJSON);
         }
@@ -63,20 +95,97 @@ public class SwrveEventsManagerImp implements SwrveEventsManager {
 
     /*
      * Attempts to sends events from local storage and deletes them if successful. Number of events sent configured from config.
+     * The event lock is only held while selecting and acknowledging the batch, not during the request.
      */
     @Override
     public int sendStoredEvents(MemoryCachedLocalStorage cachedLocalStorage) {
-        synchronized(MemoryCachedLocalStorage.EVENT_LOCK) {
-            final LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> combinedEvents = cachedLocalStorage.getCombinedFirstNEvents(config.getMaxEventsPerFlush());
-            return sendEvents(combinedEvents);
+        if (!canSend(cachedLocalStorage)) {
+            return 0;
         }
+        final LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> combinedEvents = cachedLocalStorage.leaseCombinedFirstNEvents(config.getMaxEventsPerFlush(), config.getMaxBytesPerFlush());
+        return sendEvents(combinedEvents, cachedLocalStorage);
     }
 
-    private int sendEvents(final LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> combinedEvents) {
+    /*
+     * Sends batches of stored events until the queue is empty, keeping up to maxBatchesInFlight requests
+     * running at once. Batches are leased in queue order and every event carries its seqnum, so the
+     * server can order them even if the requests complete out of order. No new batches are started
+     * after a batch fails with a server or connectivity error, its events are kept for the next attempt,
+     * or once the retry policy stops allowing sends (i.e. another sender opened the circuit breaker).
+     */
+    @Override
+    public int sendAllStoredEvents(final MemoryCachedLocalStorage cachedLocalStorage) {
+        int maxBatchesInFlight = Math.max(1, config.getMaxBatchesInFlight());
+        final AtomicBoolean batchFailed = new AtomicBoolean(false);
+        int eventsSent = 0;
+        if (maxBatchesInFlight == 1 || batchExecutor == null) {
+            while (!batchFailed.get() && canSend(cachedLocalStorage)) {
+                LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> combinedEvents = cachedLocalStorage.leaseCombinedFirstNEvents(config.getMaxEventsPerFlush(), config.getMaxBytesPerFlush());
+                if (combinedEvents.isEmpty()) {
+                    break;
+                }
+                eventsSent += sendEvents(combinedEvents, cachedLocalStorage, batchFailed);
+            }
+            return eventsSent;
+        }
+
+        CompletionService<Integer> completionService = new ExecutorCompletionService<Integer>(batchExecutor);
+        int batchesInFlight = 0;
+        boolean stopped = false;
+        try {
+            while (true) {
+                while (batchesInFlight < maxBatchesInFlight && !stopped) {
+                    if (batchFailed.get() || !canSend(cachedLocalStorage)) {
+                        stopped = true;
+                        break;
+                    }
+                    final LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> combinedEvents = cachedLocalStorage.leaseCombinedFirstNEvents(config.getMaxEventsPerFlush(), config.getMaxBytesPerFlush());
+                    if (combinedEvents.isEmpty()) {
+                        stopped = true;
+                    } else {
+                        completionService.submit(new Callable<Integer>() {
+                            @Override
+                            public Integer call() {
+                                return sendEvents(combinedEvents, cachedLocalStorage, batchFailed);
+                            }
+                        });
+                        batchesInFlight++;
+                    }
+                }
+                if (batchesInFlight == 0) {
+                    break;
+                }
+                eventsSent += completionService.take().get();
+                batchesInFlight--;
+            }
+        } catch (InterruptedException e) {
+            SwrveLogger.e(LOG_TAG, "Interrupted while sending events", e);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Batches still in flight finish on their own and acknowledge or release their events
+            SwrveLogger.e(LOG_TAG, "Error sending batch of events", e);
+        }
+        return eventsSent;
+    }
+
+    private boolean canSend(MemoryCachedLocalStorage storage) {
+        return retryPolicy == null || retryPolicy.canSend(storage);
+    }
+
+    private int sendEvents(final LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> combinedEvents, MemoryCachedLocalStorage leaseStorage) {
+        return sendEvents(combinedEvents, leaseStorage, new AtomicBoolean(false));
+    }
+
+    /*
+     * Sends the leased events. They are acknowledged (removed) if the batch was accepted, otherwise
+     * released so they can be sent again and batchFailed is set.
+     */
+    private int sendEvents(final LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> combinedEvents, MemoryCachedLocalStorage leaseStorage, AtomicBoolean batchFailed) {
         int eventsSent = 0;
         final LinkedHashMap<Long, String> events = new LinkedHashMap<Long, String>();
         if (!combinedEvents.isEmpty()) {
             SwrveLogger.i(LOG_TAG, "Sending queued events");
+            final AtomicBoolean shouldDeleteEvents = new AtomicBoolean(false);
             try {
                 // Combine all events
                 Iterator<ILocalStorage> storageIt = combinedEvents.keySet().iterator();
@@ -86,32 +195,38 @@ public class SwrveEventsManagerImp implements SwrveEventsManager {
                 eventsSent = events.size();
                 String data = EventHelper.eventsAsBatch(events, userId, appVersion, sessionToken, deviceId);
                 SwrveLogger.i(LOG_TAG, "Sending " + events.size() + " events to Swrve");
-                postBatchRequest(data, new IPostBatchRequestListener() {
+                // The rest client is synchronous, so the response has been processed when this returns
+                postBatchRequest(data, leaseStorage, new IPostBatchRequestListener() {
                     public void onResponse(boolean shouldDelete) {
-                        if (shouldDelete) {
-                            // Remove events from where they came from
-                            Iterator<ILocalStorage> storageIt = combinedEvents.keySet().iterator();
-                            while (storageIt.hasNext()) {
-                                ILocalStorage storage = storageIt.next();
-                                storage.removeEventsById(combinedEvents.get(storage).keySet());
-                            }
-                        } else {
+                        shouldDeleteEvents.set(shouldDelete);
+                        if (!shouldDelete) {
                             SwrveLogger.e(LOG_TAG, "Batch of events could not be sent, retrying");
                         }
                     }
                 });
             } catch (JSONException je) {
                 SwrveLogger.e(LOG_TAG, "Unable to generate event batch, and send events", je);
+            } finally {
+                if (shouldDeleteEvents.get()) {
+                    // Remove events from where they came from
+                    leaseStorage.acknowledgeEvents(combinedEvents);
+                } else {
+                    leaseStorage.releaseEvents(combinedEvents);
+                    batchFailed.set(true);
+                }
             }
         }
         return eventsSent;
     }
 
-    private void postBatchRequest(final String postData, final IPostBatchRequestListener listener) {
+    private void postBatchRequest(final String postData, final MemoryCachedLocalStorage storage, final IPostBatchRequestListener listener) {
 
         restClient.post(config.getEventsUrl() + SwrveBase.BATCH_EVENTS_ACTION, postData, new IRESTResponseListener() {
             @Override
             public void onResponse(RESTResponse response) {
+                if (retryPolicy != null) {
+                    retryPolicy.onResponse(response, storage);
+                }
                 boolean deleteEvents = true;
                 if (SwrveHelper.userErrorResponseCode(response.responseCode)) {
                     SwrveLogger.e(LOG_TAG, "Error sending events to Swrve. responseCode: " + response.responseCode + "\tresponseBody:" + response.responseBody);
@@ -0,0 +1,74 @@
+package com.swrve.sdk;
+
+/**
+ * Counters of the event batch uploads and the state of their circuit breaker.
+ */
+public class SwrveEventsUploadStats {
+
+    private final long successfulBatches;
+    private final long failedBatches;
+    private final int consecutiveFailures;
+    private final long circuitBreakerTrips;
+    private final long skippedAttempts;
+    private final boolean circuitOpen;
+    private final long retryDelay;
+
+    protected SwrveEventsUploadStats(long successfulBatches, long failedBatches, int consecutiveFailures, long circuitBreakerTrips, long skippedAttempts, boolean circuitOpen, long retryDelay) {
+        this.successfulBatches = successfulBatches;
+        this.failedBatches = failedBatches;
+        this.consecutiveFailures = consecutiveFailures;
+        this.circuitBreakerTrips = circuitBreakerTrips;
+        this.skippedAttempts = skippedAttempts;
+        this.circuitOpen = circuitOpen;
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * @return number of batches that were accepted or rejected as invalid by the server.
+     */
+    public long getSuccessfulBatches() {
+        return successfulBatches;
+    }
+
+    /**
+     * @return number of batches that failed with a server or connectivity error.
+     */
+    public long getFailedBatches() {
+        return failedBatches;
+    }
+
+    /**
+     * @return number of failed batches since the last successful one.
+     */
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * @return number of times sending was paused after too many consecutive failures.
+     */
+    public long getCircuitBreakerTrips() {
+        return circuitBreakerTrips;
+    }
+
+    /**
+     * @return number of send attempts skipped while waiting to retry.
+     */
+    public long getSkippedAttempts() {
+        return skippedAttempts;
+    }
+
+    /**
+     * @return if sending is paused after too many consecutive failures.
+     */
+    public boolean isCircuitOpen() {
+        return circuitOpen;
+    }
+
+    /**
+     * @return milliseconds until the next batch can be sent.
+     */
+    public long getRetryDelay() {
+        return retryDelay;
+    }
+}
@@ -39,6 +39,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
@@ -56,11 +57,16 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -124,13 +130,17 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
     protected IRESTClient qaRestClient;
     protected ExecutorService storageExecutor;
     protected ExecutorService restClientExecutor;
+    protected ExecutorService triggerExecutor;
+    protected ExecutorService campaignLoadingExecutor;
+    protected ExecutorService eventBatchExecutor;
+    protected File cacheSnapshotDir;
     protected ScheduledThreadPoolExecutor campaignsAndResourcesExecutor;
     protected SwrveResourceManager resourceManager;
-    protected List<SwrveBaseCampaign> campaigns;
+    protected volatile SwrveCampaignsSnapshot campaignsSnapshot = SwrveCampaignsSnapshot.EMPTY;
+    protected JSONObject cachedCampaignsJson; // decoded by initCampaigns and consumed by initABTestDetails
     protected SwrveCampaignDisplayer campaignDisplayer;
     protected Map<Integer, SwrveCampaignState> campaignsState;
     protected SwrveAssetsManager swrveAssetsManager;
-    protected SparseArray<String> appStoreURLs;
     protected boolean autoShowMessagesEnabled;
     protected Integer campaignsAndResourcesFlushFrequency;
     protected Integer campaignsAndResourcesFlushRefreshDelay;
@@ -152,6 +162,8 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
     protected String androidId;
     protected int locationSegmentVersion;
     protected SwrveQAUser qaUser;
+    protected SwrveSequenceNumberAllocator sequenceNumberAllocator;
+    protected SwrveBatchRetryPolicy batchRetryPolicy;
 
     protected SwrveImp(Context context, int appId, String apiKey, C config) {
         if (appId <= 0 || SwrveHelper.isNullOrEmpty(apiKey)) {
@@ -168,10 +180,15 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
         this.autoShowExecutor = Executors.newSingleThreadExecutor();
         this.storageExecutor = Executors.newSingleThreadExecutor();
         this.restClientExecutor = Executors.newSingleThreadExecutor();
+        this.triggerExecutor = Executors.newSingleThreadExecutor();
+        this.campaignLoadingExecutor = createBoundedExecutor(config.getCampaignLoadingParallelism());
+        this.eventBatchExecutor = createBoundedExecutor(config.getMaxBatchesInFlight());
         this.restClient = createRESTClient();
         this.bindCounter = new AtomicInteger();
+        this.sequenceNumberAllocator = new SwrveSequenceNumberAllocator();
+        this.batchRetryPolicy = new SwrveBatchRetryPolicy();
         this.autoShowMessagesEnabled = true;
-        this.swrveAssetsManager = new SwrveAssetsManagerImp(context);
+        this.swrveAssetsManager = new SwrveAssetsManagerImp(context, config.getAssetDownloadParallelism(), config.getAssetCacheSize());
         this.newSessionInterval = config.getNewSessionInterval();
 
         initContext(context);
@@ -341,11 +358,13 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
     }
 
     protected IRESTClient createRESTClient() {
-        return new RESTClient(config.getHttpTimeout());
+        return new RESTClient(config.getHttpTimeout(), config.getRequestContentEncodings());
     }
 
     protected MemoryCachedLocalStorage createCachedLocalStorage() {
-        return new MemoryCachedLocalStorage(new MemoryLocalStorage(), null);
+        MemoryCachedLocalStorage storage = new MemoryCachedLocalStorage(new MemoryLocalStorage(config.getMaxEventsInMemory()), null);
+        storage.setSpillToSecondaryStorage(config.getEventsSpillThreshold(), config.getMaxEventsInMemory(), storageExecutor);
+        return storage;
     }
 
     protected String getDeviceName() {
@@ -472,6 +491,33 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
         return false;
     }
 
+    /*
+     * Bounded pool for work split in parallel tasks (i.e. parsing campaigns or sending batches of
+     * events), its threads stop when they are idle.
+     */
+    private ExecutorService createBoundedExecutor(int parallelism) {
+        if (parallelism <= 1) {
+            return null;
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    protected boolean triggerExecutorExecute(Runnable runnable) {
+        try {
+            if (triggerExecutor.isShutdown()) {
+                SwrveLogger.i("Trying to schedule a trigger evaluation while shutdown");
+            } else {
+                triggerExecutor.execute(SwrveRunnables.withoutExceptions(runnable));
+                return true;
+            }
+        } catch (Exception e) {
+            SwrveLogger.e("Error while scheduling a trigger evaluation", e);
+        }
+        return false;
+    }
+
     protected long getSessionTime() {
         return getNow().getTime();
     }
@@ -538,29 +584,72 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
         return new Date();
     }
 
-    protected void saveCampaignsInCache(final JSONObject campaignContent) {
+    protected void saveCampaignsInCache(final String campaignContent, final JSONObject campaigns) {
         storageExecutorExecute(new Runnable() {
             @Override
             public void run() {
-                cachedLocalStorage.setAndFlushSecureSharedEntryForUser(userId, CAMPAIGN_CATEGORY, campaignContent.toString(), getUniqueKey());
+                SwrveCacheSnapshot snapshot = getCacheSnapshot(CAMPAIGN_CATEGORY);
+                if (snapshot != null) {
+                    snapshot.delete(); // never leave a snapshot older than the cache
+                }
+                cachedLocalStorage.setAndFlushSecureSharedEntryForUser(userId, CAMPAIGN_CATEGORY, campaignContent, getUniqueKey());
+                if (snapshot != null) {
+                    snapshot.writeJSONObject(campaigns);
+                }
             }
         });
     }
 
-    protected void saveLocationCampaignsInCache(final JSONObject locationCampaignContent) {
+    protected void saveLocationCampaignsInCache(final String locationCampaignContent) {
         storageExecutorExecute(new Runnable() {
             @Override
             public void run() {
-                cachedLocalStorage.setAndFlushSecureSharedEntryForUser(userId, LOCATION_CAMPAIGN_CATEGORY, locationCampaignContent.toString(), getUniqueKey());
+                cachedLocalStorage.setAndFlushSecureSharedEntryForUser(userId, LOCATION_CAMPAIGN_CATEGORY, locationCampaignContent, getUniqueKey());
             }
         });
     }
 
-    protected void saveResourcesInCache(final JSONArray resourcesContent) {
+    protected void saveResourcesInCache(final String resourcesContent, final Map<String, SwrveResource> resources) {
         storageExecutorExecute(new Runnable() {
             @Override
             public void run() {
-                cachedLocalStorage.setAndFlushSecureSharedEntryForUser(userId, RESOURCES_CACHE_CATEGORY, resourcesContent.toString(), getUniqueKey());
+                SwrveCacheSnapshot snapshot = getCacheSnapshot(RESOURCES_CACHE_CATEGORY);
+                if (snapshot != null) {
+                    snapshot.delete(); // never leave a snapshot older than the cache
+                }
+                cachedLocalStorage.setAndFlushSecureSharedEntryForUser(userId, RESOURCES_CACHE_CATEGORY, resourcesContent, getUniqueKey());
+                if (snapshot != null) {
+                    snapshot.writeResources(resources);
+                }
+            }
+        });
+    }
+
+    /**
+     * Binary snapshot of a cache category for the current user, or null before the SDK is initialised.
+     */
+    protected SwrveCacheSnapshot getCacheSnapshot(String category) {
+        if (cacheSnapshotDir == null) {
+            return null;
+        }
+        String fileName = "swrve_" + category + "_" + SwrveHelper.md5(userId) + ".bin";
+        return new SwrveCacheSnapshot(new File(cacheSnapshotDir, fileName), getUniqueKey());
+    }
+
+    // Write the snapshot of a section that was only available in the JSON cache
+    private void saveCacheSnapshot(final String category, final JSONObject campaigns, final Map<String, SwrveResource> resources) {
+        storageExecutorExecute(new Runnable() {
+            @Override
+            public void run() {
+                SwrveCacheSnapshot snapshot = getCacheSnapshot(category);
+                if (snapshot == null) {
+                    return;
+                }
+                if (campaigns != null) {
+                    snapshot.writeJSONObject(campaigns);
+                } else {
+                    snapshot.writeResources(resources);
+                }
             }
         });
     }
@@ -573,11 +662,11 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
 
         // Only execute if at least 1 call to the /user_resources_and_campaigns api endpoint has been completed
         // And ensure all assets have been downloaded
-        if (!campaignsAndResourcesInitialized || campaigns == null) {
+        if (!campaignsAndResourcesInitialized) {
             return;
         }
 
-        for (final SwrveBaseCampaign campaign : campaigns) {
+        for (final SwrveBaseCampaign campaign : campaignsSnapshot.getCampaigns()) {
             final SwrveBase<T, C> swrve = (SwrveBase<T, C>) this;
             Map<String, String> emptyPayload = new HashMap<String, String>();
             boolean canTrigger = campaignDisplayer.canTrigger(campaign, SWRVE_AUTOSHOW_AT_SESSION_START_TRIGGER, emptyPayload, null);
@@ -655,7 +744,7 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
 
         if (json.length() == 0) {
             SwrveLogger.i("Campaign JSON empty, no campaigns downloaded");
-            campaigns.clear();
+            campaignsSnapshot = campaignsSnapshot.withoutCampaigns();
             return;
         }
 
@@ -677,6 +766,7 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
             updateCdnPaths(json);
 
             // App Data
+            SparseArray<String> appStoreURLs = campaignsSnapshot.copyAppStoreURLs();
             JSONObject gamesData = json.getJSONObject("game_data");
             if (gamesData != null) {
                 @SuppressWarnings("unchecked")
@@ -686,7 +776,7 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
                     JSONObject gameData = gamesData.getJSONObject(appId);
                     if (gameData.has("app_store_url")) {
                         String url = gameData.getString("app_store_url");
-                        this.appStoreURLs.put(Integer.parseInt(appId), url);
+                        appStoreURLs.put(Integer.parseInt(appId), url);
                         if (SwrveHelper.isNullOrEmpty(url)) {
                             SwrveLogger.e("App store link " + appId + " is empty!");
                         } else {
@@ -719,7 +809,7 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
                 campaignsDownloaded = new HashMap<Integer, String>();
                 SwrveLogger.i("You are a QA user!");
                 if (qaRestClient == null) {
-                    qaRestClient = new RESTClient(config.getHttpTimeout());
+                    qaRestClient = new RESTClient(config.getHttpTimeout(), config.getRequestContentEncodings());
                 }
                 qaUser = new SwrveQAUser(appId, apiKey, userId, qaRestClient, jsonQa);
                 qaUser.bindToServices();
@@ -743,32 +833,24 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
             }
 
             JSONArray jsonCampaigns = json.getJSONArray("campaigns");
-            List<Integer> newCampaignIds = new ArrayList<Integer>();
 
             // Save the state of previous campaigns
             saveCampaignsState();
 
-            // Remove any campaigns that aren't in the new list
-            // We do this before updating campaigns and adding new campaigns to ensure
-            // there isn't a gap where no campaigns are available while reloading
-            for (int i = 0, j = jsonCampaigns.length(); i < j; i++) {
-                JSONObject campaignData = jsonCampaigns.getJSONObject(i);
-                newCampaignIds.add(campaignData.getInt("id"));
-            }
-            for (int i = campaigns.size() - 1; i >= 0; i--) {
-                SwrveBaseCampaign campaign = campaigns.get(i);
-                if (!newCampaignIds.contains(campaign.getId())) {
-                    campaigns.remove(i);
-                }
-            }
-
+            // The new campaigns are loaded off to the side and replace the current ones in one
+            // step, so there is no gap where no campaigns are available while reloading
             boolean mustLoadPreviousState = (wasPreviouslyQAUser || qaUser == null || !qaUser.isResetDevice());
-            List<SwrveBaseCampaign> newCampaigns = new ArrayList<>();
-            Set<SwrveAssetsQueueItem> assetsQueue = new HashSet<>();
-            for (int i = 0, j = jsonCampaigns.length(); i < j; i++) {
+            SwrveCampaignsSnapshot previousSnapshot = campaignsSnapshot;
+            int campaignCount = jsonCampaigns.length();
+            SwrveBaseCampaign[] loadedCampaigns = new SwrveBaseCampaign[campaignCount];
+            String[] campaignContentHashes = new String[campaignCount];
+            List<Set<SwrveAssetsQueueItem>> campaignAssetQueues = new ArrayList<>(campaignCount);
+            List<Integer> campaignsToParse = new ArrayList<>();
+            for (int i = 0; i < campaignCount; i++) {
                 JSONObject campaignData = jsonCampaigns.getJSONObject(i);
                 // Load campaign and get assets to be loaded
                 Set<SwrveAssetsQueueItem> campaignAssetQueue = new HashSet<>();
+                campaignAssetQueues.add(campaignAssetQueue);
 
                 // Check filters (permission requests, platform)
                 boolean passesAllFilters = true;
@@ -783,39 +865,58 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
 
                 if (passesAllFilters) {
                     SwrveBaseCampaign campaign = null;
-                    if (campaignData.has("conversation")) {
-                        int conversationVersionDownloaded = campaignData.optInt("conversation_version", 1);
-                        if (conversationVersionDownloaded <= ISwrveConversationSDK.CONVERSATION_VERSION) {
-                            campaign = loadConversationCampaignFromJSON(campaignData, assetsQueue);
-                        } else {
-                            SwrveLogger.i("Conversation version " + conversationVersionDownloaded + " cannot be loaded with this SDK version");
-                        }
+                    // Campaigns whose JSON has not changed since the last refresh are not parsed again,
+                    // unless their state is being reset for QA
+                    String contentHash = SwrveHelper.md5(campaignData.toString());
+                    campaignContentHashes[i] = contentHash;
+                    if (mustLoadPreviousState && !SwrveHelper.isNullOrEmpty(contentHash)) {
+                        campaign = previousSnapshot.getUnchangedCampaign(campaignData.optInt("id"), contentHash);
+                    }
+                    if (campaign != null) {
+                        loadedCampaigns[i] = campaign;
+                        campaignAssetQueue.addAll(previousSnapshot.getCampaignAssets(campaign.getId()));
+                        SwrveLogger.i("Campaign " + campaign.getId() + " has not changed");
                     } else {
-                        campaign = loadCampaignFromJSON(campaignData, campaignAssetQueue);
+                        campaignsToParse.add(i);
                     }
+                } else {
+                    SwrveLogger.i("Not all requirements were satisfied for this campaign: " + lastCheckedFilter);
+                }
+            }
 
-                    if (campaign != null) {
-                        assetsQueue.addAll(campaignAssetQueue);
-
-                        // Check if we need to reset the device for QA, otherwise load campaign state
-                        if (mustLoadPreviousState) {
-                            SwrveCampaignState state = states.get(campaign.getId());
-                            if (state != null) {
-                                campaign.setSaveableState(state);
-                            }
-                        }
+            if (!parseCampaigns(jsonCampaigns, campaignsToParse, campaignAssetQueues, loadedCampaigns)) {
+                return;
+            }
 
-                        newCampaigns.add(campaign);
-                        campaignsState.put(campaign.getId(), campaign.getSaveableState());
-                        SwrveLogger.i("Got campaign with id " + campaign.getId());
+            // Merge the campaigns and their assets in the order they were downloaded
+            List<SwrveBaseCampaign> newCampaigns = new ArrayList<>();
+            Map<Integer, String> contentHashes = new HashMap<>();
+            Map<Integer, Set<SwrveAssetsQueueItem>> campaignAssets = new HashMap<>();
+            Set<SwrveAssetsQueueItem> assetsQueue = new HashSet<>();
+            for (int i = 0; i < campaignCount; i++) {
+                SwrveBaseCampaign campaign = loadedCampaigns[i];
+                if (campaign == null) {
+                    continue;
+                }
+                assetsQueue.addAll(campaignAssetQueues.get(i));
 
-                        if (qaUser != null) {
-                            // Add campaign for QA purposes
-                            campaignsDownloaded.put(campaign.getId(), null);
-                        }
+                // Check if we need to reset the device for QA, otherwise load campaign state
+                if (mustLoadPreviousState) {
+                    SwrveCampaignState state = states.get(campaign.getId());
+                    if (state != null) {
+                        campaign.setSaveableState(state);
                     }
-                } else {
-                    SwrveLogger.i("Not all requirements were satisfied for this campaign: " + lastCheckedFilter);
+                }
+
+                newCampaigns.add(campaign);
+                contentHashes.put(campaign.getId(), campaignContentHashes[i]);
+                campaignAssets.put(campaign.getId(), campaignAssetQueues.get(i));
+                campaignsState.put(campaign.getId(), campaign.getSaveableState());
+                SwrveLogger.i("Got campaign with id " + campaign.getId());
+
+                if (qaUser != null) {
+                    // Add campaign for QA purposes
+                    campaignsDownloaded.put(campaign.getId(), null);
                 }
             }
 
@@ -826,10 +927,11 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
 
             // Launch load assets, then add to active campaigns
             // Note that campaign is also added to campaigns list in this function
+            swrveAssetsManager.setCampaignAssets(campaignAssets);
             downloadAssets(assetsQueue);
 
             // Update current list of campaigns with new ones
-            this.campaigns = new ArrayList<SwrveBaseCampaign>(newCampaigns);
+            campaignsSnapshot = new SwrveCampaignsSnapshot(newCampaigns, appStoreURLs, contentHashes, campaignAssets);
         } catch (JSONException exp) {
             SwrveLogger.e("Error parsing campaign JSON", exp);
         }
@@ -875,6 +977,66 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
         }
     }
 
+    /*
+     * Parse the campaigns at the given indexes of jsonCampaigns into the same positions of campaigns,
+     * using the campaign loading executor when there is one. Returns false if interrupted.
+     */
+    private boolean parseCampaigns(JSONArray jsonCampaigns, List<Integer> indexes, final List<Set<SwrveAssetsQueueItem>> campaignAssetQueues, SwrveBaseCampaign[] campaigns) throws JSONException {
+        ExecutorService executor = campaignLoadingExecutor;
+        if (executor == null || executor.isShutdown() || indexes.size() < 2) {
+            for (int index : indexes) {
+                campaigns[index] = parseCampaign(jsonCampaigns.getJSONObject(index), campaignAssetQueues.get(index));
+            }
+            return true;
+        }
+
+        List<Future<SwrveBaseCampaign>> results = new ArrayList<>(indexes.size());
+        try {
+            for (final int index : indexes) {
+                final JSONObject campaignData = jsonCampaigns.getJSONObject(index);
+                results.add(executor.submit(new Callable<SwrveBaseCampaign>() {
+                    @Override
+                    public SwrveBaseCampaign call() throws Exception {
+                        return parseCampaign(campaignData, campaignAssetQueues.get(index));
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                campaigns[indexes.get(i)] = results.get(i).get();
+            }
+            return true;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JSONException) {
+                throw (JSONException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            SwrveLogger.e("Interrupted while loading campaigns", e);
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            // Stop parsing the remaining campaigns if one of them failed
+            for (Future<SwrveBaseCampaign> result : results) {
+                result.cancel(false);
+            }
+        }
+    }
+
+    private SwrveBaseCampaign parseCampaign(JSONObject campaignData, Set<SwrveAssetsQueueItem> campaignAssetQueue) throws JSONException {
+        if (campaignData.has("conversation")) {
+            int conversationVersionDownloaded = campaignData.optInt("conversation_version", 1);
+            if (conversationVersionDownloaded <= ISwrveConversationSDK.CONVERSATION_VERSION) {
+                return loadConversationCampaignFromJSON(campaignData, campaignAssetQueue);
+            }
+            SwrveLogger.i("Conversation version " + conversationVersionDownloaded + " cannot be loaded with this SDK version");
+            return null;
+        }
+        return loadCampaignFromJSON(campaignData, campaignAssetQueue);
+    }
+
     protected SwrveInAppCampaign loadCampaignFromJSON(JSONObject campaignData, Set<SwrveAssetsQueueItem> assetsQueue) throws JSONException {
         return new SwrveInAppCampaign(this, campaignDisplayer, campaignData, assetsQueue);
     }
@@ -1004,6 +1166,14 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
      * Initialize Resource Manager with cache content
      */
     protected void initResources() {
+        SwrveCacheSnapshot snapshot = getCacheSnapshot(RESOURCES_CACHE_CATEGORY);
+        Map<String, SwrveResource> snapshotResources = (snapshot == null) ? null : snapshot.readResources();
+        if (snapshotResources != null) {
+            this.resourceManager.setResources(snapshotResources);
+            SwrveLogger.i("Loaded resources from snapshot.");
+            return;
+        }
+
         String cachedResources = null;
 
         // Read cached resources
@@ -1021,6 +1191,7 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
             try {
                 JSONArray resourceJson = new JSONArray(cachedResources);
                 this.resourceManager.setResourcesFromJSON(resourceJson);
+                saveCacheSnapshot(RESOURCES_CACHE_CATEGORY, null, this.resourceManager.getResources());
             } catch (JSONException e) {
                 SwrveLogger.e("Could not parse cached json content for resources", e);
             }
@@ -1031,14 +1202,23 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
 
     protected void initABTestDetails() {
         try {
-            String campaignsFromCache = cachedLocalStorage.getSecureCacheEntryForUser(userId, CAMPAIGN_CATEGORY, getUniqueKey());
-            if (!SwrveHelper.isNullOrEmpty(campaignsFromCache)) {
-                JSONObject campaignsJson = new JSONObject(campaignsFromCache);
-                if (campaignsJson != null) {
-                    JSONObject abTestInformationJson = campaignsJson.optJSONObject("ab_test_details");
-                    if (abTestInformationJson != null) {
-                        resourceManager.setABTestDetailsFromJSON(abTestInformationJson);
-                    }
+            // Reuse the campaigns initCampaigns already verified and decoded
+            JSONObject campaignsJson = cachedCampaignsJson;
+            cachedCampaignsJson = null;
+            if (campaignsJson == null) {
+                SwrveCacheSnapshot snapshot = getCacheSnapshot(CAMPAIGN_CATEGORY);
+                campaignsJson = (snapshot == null) ? null : snapshot.readJSONObject();
+            }
+            if (campaignsJson == null) {
+                String campaignsFromCache = cachedLocalStorage.getSecureCacheEntryForUser(userId, CAMPAIGN_CATEGORY, getUniqueKey());
+                if (!SwrveHelper.isNullOrEmpty(campaignsFromCache)) {
+                    campaignsJson = new JSONObject(campaignsFromCache);
+                }
+            }
+            if (campaignsJson != null) {
+                JSONObject abTestInformationJson = campaignsJson.optJSONObject("ab_test_details");
+                if (abTestInformationJson != null) {
+                    resourceManager.setABTestDetailsFromJSON(abTestInformationJson);
                 }
             }
         } catch (JSONException e) {
@@ -1052,19 +1232,36 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
      * Initialize campaigns with cache content
      */
     protected void initCampaigns() {
-        campaigns = new ArrayList<SwrveBaseCampaign>();
+        campaignsSnapshot = SwrveCampaignsSnapshot.EMPTY;
         campaignDisplayer = new SwrveCampaignDisplayer(qaUser);
         campaignsState = new HashMap<Integer, SwrveCampaignState>();
+        cachedCampaignsJson = null;
+
+        SwrveCacheSnapshot snapshot = getCacheSnapshot(CAMPAIGN_CATEGORY);
+        JSONObject snapshotJson = (snapshot == null) ? null : snapshot.readJSONObject();
+        if (snapshotJson != null) {
+            if (config.isABTestDetailsEnabled()) {
+                cachedCampaignsJson = snapshotJson;
+            }
+            loadCampaignsStateFromCache();
+            updateCampaigns(snapshotJson, campaignsState);
+            SwrveLogger.i("Loaded campaigns from snapshot.");
+            return;
+        }
 
         try {
             String campaignsFromCache = cachedLocalStorage.getSecureCacheEntryForUser(userId, CAMPAIGN_CATEGORY, getUniqueKey());
             if (!SwrveHelper.isNullOrEmpty(campaignsFromCache)) {
                 JSONObject campaignsJson = new JSONObject(campaignsFromCache);
+                if (config.isABTestDetailsEnabled()) {
+                    cachedCampaignsJson = campaignsJson;
+                }
                 // Load campaigns state
                 loadCampaignsStateFromCache();
                 // Update campaigns with the loaded JSON content
                 updateCampaigns(campaignsJson, campaignsState);
                 SwrveLogger.i("Loaded campaigns from cache.");
+                saveCacheSnapshot(CAMPAIGN_CATEGORY, campaignsJson, null);
             } else {
                 invalidateETag();
             }
@@ -1102,6 +1299,17 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
         }
     }
 
+    /**
+     * Campaigns of the snapshot that can be triggered by the event. QA users get a reason for
+     * every campaign, so all campaigns are returned for them.
+     */
+    protected List<SwrveBaseCampaign> getCampaignsForEvent(SwrveCampaignsSnapshot snapshot, String event) {
+        if (qaUser != null) {
+            return snapshot.getCampaigns();
+        }
+        return snapshot.getCampaignsForEvent(event);
+    }
+
     /**
      * Update campaigns with given JSON
      */
@@ -1193,6 +1401,16 @@ abstract class SwrveImp<T, C extends SwrveConfigBase> implements ISwrveCampaignM
         return swrveAssetsManager == null ? new HashSet<String>() : swrveAssetsManager.getAssetsOnDisk();
     }
 
+    @Override
+    public boolean areCampaignAssetsReady(int campaignId) {
+        return swrveAssetsManager != null && swrveAssetsManager.areCampaignAssetsReady(campaignId);
+    }
+
+    @Override
+    public boolean isCampaignTracked(int campaignId) {
+        return swrveAssetsManager != null && swrveAssetsManager.isCampaignTracked(campaignId);
+    }
+
     /**
      * @deprecated use {@link #SWRVE_AUTOSHOW_AT_SESSION_START_TRIGGER} instead
      */
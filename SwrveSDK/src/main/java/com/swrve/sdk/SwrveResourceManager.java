@@ -42,6 +42,15 @@ public class SwrveResourceManager {
         }
     }
 
+    /*
+     * Replace the resources with ones already converted from JSON.
+     */
+    protected void setResources(Map<String, SwrveResource> resources) {
+        synchronized (this.resources) {
+            this.resources = resources;
+        }
+    }
+
     protected Map<String, SwrveResource> _getResources() {
         return this.resources;
     }
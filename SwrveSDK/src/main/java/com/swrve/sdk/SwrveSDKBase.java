@@ -456,6 +456,26 @@ public abstract class SwrveSDKBase {
         return instance.getInitialisedTime();
     }
 
+    /**
+     * Get the counters of the event batch uploads and the state of their circuit breaker.
+     *
+     * @return the event upload stats.
+     */
+    public static SwrveEventsUploadStats getEventsUploadStats() {
+        checkInstanceCreated();
+        return instance.getEventsUploadStats();
+    }
+
+    /**
+     * Get the number of events discarded because the in-memory event queue was full.
+     *
+     * @return the number of dropped events since the SDK was initialized.
+     */
+    public static long getDroppedEventCount() {
+        checkInstanceCreated();
+        return instance.getDroppedEventCount();
+    }
+
     /**
      * Get the custom listener to process Talk message install button clicks
      *
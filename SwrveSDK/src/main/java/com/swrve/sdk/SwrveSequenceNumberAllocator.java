@@ -0,0 +1,85 @@
+package com.swrve.sdk;
+
+import com.swrve.sdk.localstorage.IMemoryLocalStorage;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Used internally to hand out event sequence numbers.
+ *
+ * Numbers are reserved from storage in blocks and only the high-water mark of the current block is
+ * persisted. Numbers that were reserved but never used (process killed, crash) are skipped on the next
+ * lease, so the sequence stays monotonic across restarts but may contain gaps.
+ */
+class SwrveSequenceNumberAllocator {
+
+    protected static final String SEQNUM_CATEGORY = "seqnum";
+    protected static final int DEFAULT_BLOCK_SIZE = 1000;
+
+    private final int blockSize;
+    private final AtomicInteger lastSequenceNumber = new AtomicInteger(0);
+    private volatile int leaseLimit = 0;
+
+    protected SwrveSequenceNumberAllocator() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    protected SwrveSequenceNumberAllocator(int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be greater than zero");
+        }
+        this.blockSize = blockSize;
+    }
+
+    /*
+     * Returns the next sequence number from the current block, leasing a new block from the storage
+     * when the current one is exhausted.
+     */
+    protected int nextSequenceNumber(IMemoryLocalStorage storage) {
+        while (true) {
+            int seqnum = nextLeasedSequenceNumber();
+            if (seqnum > 0) {
+                return seqnum;
+            }
+            synchronized (this) {
+                if (lastSequenceNumber.get() >= leaseLimit) {
+                    leaseBlock(storage);
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns the next sequence number from the current block or 0 if a new block needs to be leased.
+     */
+    protected int nextLeasedSequenceNumber() {
+        while (true) {
+            int limit = leaseLimit;
+            int seqnum = lastSequenceNumber.get();
+            if (seqnum >= limit) {
+                return 0;
+            }
+            if (lastSequenceNumber.compareAndSet(seqnum, seqnum + 1)) {
+                return seqnum + 1;
+            }
+        }
+    }
+
+    private void leaseBlock(IMemoryLocalStorage storage) {
+        // Re-read the high-water mark as it may have been moved by another allocator using the same storage
+        int highWaterMark = 0;
+        String savedHighWaterMark = storage.getSharedCacheEntry(SEQNUM_CATEGORY);
+        if (!SwrveHelper.isNullOrEmpty(savedHighWaterMark)) {
+            try {
+                highWaterMark = Integer.parseInt(savedHighWaterMark);
+            } catch (NumberFormatException ex) {
+                SwrveLogger.e("Invalid saved sequence number " + savedHighWaterMark, ex);
+            }
+        }
+        int start = Math.max(highWaterMark, lastSequenceNumber.get());
+        int newLimit = start + blockSize;
+        storage.setAndFlushSharedEntry(SEQNUM_CATEGORY, Integer.toString(newLimit));
+        lastSequenceNumber.set(start);
+        leaseLimit = newLimit;
+    }
+}
@@ -56,6 +56,6 @@ public class SwrveWakefulService extends IntentService {
     private SwrveEventsManager getSendEventsManager(MemoryCachedLocalStorage memoryCachedLocalStorage){
         short deviceId = EventHelper.getDeviceId(memoryCachedLocalStorage);
         String sessionToken = SwrveHelper.generateSessionToken(swrve.apiKey, swrve.appId, swrve.userId);
-        return new SwrveEventsManagerImp(swrve.config, swrve.restClient, swrve.userId, swrve.appVersion, sessionToken, deviceId);
+        return new SwrveEventsManagerImp(swrve.config, swrve.restClient, swrve.userId, swrve.appVersion, sessionToken, deviceId, swrve.batchRetryPolicy);
     }
 }
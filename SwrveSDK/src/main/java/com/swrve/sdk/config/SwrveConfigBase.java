@@ -5,11 +5,14 @@ import android.graphics.Color;
 import com.swrve.sdk.SwrveAppStore;
 import com.swrve.sdk.SwrveHelper;
 import com.swrve.sdk.messaging.SwrveOrientation;
+import com.swrve.sdk.rest.RESTClient;
 
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * Configuration for the Swrve SDK.
@@ -35,6 +38,21 @@ public abstract class SwrveConfigBase {
      */
     private int maxEventsPerFlush = 50;
 
+    /**
+     * Maximum size in bytes of the events sent in one batch. A single larger event is sent on its own.
+     */
+    private long maxBytesPerFlush = 256 * 1024;
+
+    /**
+     * Keep sending batches of queued events until the queue is empty.
+     */
+    private boolean drainQueuedEventsEnabled;
+
+    /**
+     * Maximum number of batch requests running at once when sending all the queued events.
+     */
+    private int maxBatchesInFlight = 1;
+
     /**
      * Name of SQLite database to use for storage.
      */
@@ -126,6 +144,11 @@ public abstract class SwrveConfigBase {
      */
     private int httpTimeout = 60000;
 
+    /**
+     * Content encoding used to compress POST request bodies, per endpoint path.
+     */
+    private Map<String, String> requestContentEncodings = new HashMap<String, String>();
+
     /**
      * Hide the toolbar when displaing in-app messages.
      */
@@ -141,6 +164,47 @@ public abstract class SwrveConfigBase {
      */
     private boolean abTestDetailsEnabled;
 
+    /**
+     * Maximum number of events kept in memory before they are saved to disk.
+     */
+    private int maxEventsInMemory = 2000;
+
+    /**
+     * Number of events in memory that triggers moving the oldest events to disk in the background.
+     * Never more than maxEventsInMemory.
+     */
+    private int eventsSpillThreshold = 1500;
+
+    /**
+     * Store events in an append-only journal instead of SQLite.
+     */
+    private boolean eventJournalEnabled;
+
+    /**
+     * Milliseconds between forcing the event journal to the storage device.
+     */
+    private long eventJournalSyncInterval = 1000;
+
+    /**
+     * Evaluate campaign triggers for events in the background instead of on the calling thread.
+     */
+    private boolean asyncTriggerEvaluationEnabled;
+
+    /**
+     * Number of threads used to parse campaigns when they are loaded.
+     */
+    private int campaignLoadingParallelism = 1;
+
+    /**
+     * Number of campaign assets downloaded at the same time.
+     */
+    private int assetDownloadParallelism = 4;
+
+    /**
+     * Maximum bytes of campaign assets kept in the cache directory.
+     */
+    private long assetCacheSize = 50 * 1024 * 1024;
+
     /**
      * Create an instance of the SDK advance preferences.
      */
@@ -278,6 +342,80 @@ public abstract class SwrveConfigBase {
         return this;
     }
 
+    /**
+     * @return Maximum size in bytes of the events in a batch.
+     */
+    public long getMaxBytesPerFlush() {
+        return maxBytesPerFlush;
+    }
+
+    /**
+     * Set the maximum size in bytes of the events in a batch to the event server. Use 0 to only
+     * limit the number of events.
+     *
+     * @param maxBytesPerFlush Maximum size in bytes of the events in a batch.
+     */
+    public SwrveConfigBase setMaxBytesPerFlush(long maxBytesPerFlush) {
+        this.maxBytesPerFlush = maxBytesPerFlush;
+        return this;
+    }
+
+    /**
+     * @return if batches of queued events are sent until the queue is empty.
+     */
+    public boolean isDrainQueuedEventsEnabled() {
+        return drainQueuedEventsEnabled;
+    }
+
+    /**
+     * @param enabled to keep sending batches of queued events until the queue is empty, instead of
+     *                one batch each time events are sent.
+     */
+    public void setDrainQueuedEventsEnabled(boolean enabled) {
+        this.drainQueuedEventsEnabled = enabled;
+    }
+
+    /**
+     * @return Maximum number of batch requests running at once.
+     */
+    public int getMaxBatchesInFlight() {
+        return maxBatchesInFlight;
+    }
+
+    /**
+     * Set the maximum number of batch requests running at once when sending all the queued events.
+     *
+     * @param maxBatchesInFlight Maximum number of batch requests running at once.
+     */
+    public SwrveConfigBase setMaxBatchesInFlight(int maxBatchesInFlight) {
+        this.maxBatchesInFlight = maxBatchesInFlight;
+        return this;
+    }
+
+    /**
+     * @return Content encoding used to compress POST request bodies, per endpoint path.
+     */
+    public Map<String, String> getRequestContentEncodings() {
+        return requestContentEncodings;
+    }
+
+    /**
+     * Compress the body of POST requests to an endpoint, i.e. "/1/batch" for event batches.
+     *
+     * @param path            Path of the endpoint.
+     * @param contentEncoding "gzip", "deflate" or null to send the body uncompressed.
+     */
+    public SwrveConfigBase setRequestContentEncoding(String path, String contentEncoding) {
+        if (contentEncoding == null) {
+            requestContentEncodings.remove(path);
+        } else if (RESTClient.CONTENT_ENCODING_GZIP.equals(contentEncoding) || RESTClient.CONTENT_ENCODING_DEFLATE.equals(contentEncoding)) {
+            requestContentEncodings.put(path, contentEncoding);
+        } else {
+            throw new IllegalArgumentException("Unsupported content encoding " + contentEncoding);
+        }
+        return this;
+    }
+
     /**
      * @return Name of the internal SQLite database.
      */
@@ -643,4 +781,149 @@ public abstract class SwrveConfigBase {
     public void setABTestDetailsEnabled(boolean enabled) {
         this.abTestDetailsEnabled = enabled;
     }
+
+    /**
+     * @return Maximum number of events kept in memory.
+     */
+    public int getMaxEventsInMemory() {
+        return maxEventsInMemory;
+    }
+
+    /**
+     * Set the maximum number of events kept in memory. When this limit is reached events are saved
+     * to disk before new ones are queued, or dropped if that is not possible.
+     *
+     * @param maxEventsInMemory Maximum number of events kept in memory.
+     */
+    public SwrveConfigBase setMaxEventsInMemory(int maxEventsInMemory) {
+        this.maxEventsInMemory = Math.max(1, maxEventsInMemory);
+        return this;
+    }
+
+    /**
+     * @return Number of events in memory that triggers saving them to disk in the background,
+     * at most the maximum number of events in memory.
+     */
+    public int getEventsSpillThreshold() {
+        return Math.min(eventsSpillThreshold, maxEventsInMemory);
+    }
+
+    /**
+     * Set the number of events in memory that triggers saving the oldest events to disk in the
+     * background. Use 0 to disable. A threshold above the maximum number of events in memory is
+     * lowered to that maximum, otherwise events would be dropped before they are saved.
+     *
+     * @param eventsSpillThreshold Number of events in memory.
+     */
+    public SwrveConfigBase setEventsSpillThreshold(int eventsSpillThreshold) {
+        this.eventsSpillThreshold = Math.max(0, eventsSpillThreshold);
+        return this;
+    }
+
+    /**
+     * @return if events are stored in an append-only journal instead of SQLite.
+     */
+    public boolean isEventJournalEnabled() {
+        return eventJournalEnabled;
+    }
+
+    /**
+     * @param enabled to store events in an append-only journal instead of SQLite.
+     */
+    public void setEventJournalEnabled(boolean enabled) {
+        this.eventJournalEnabled = enabled;
+    }
+
+    /**
+     * @return milliseconds between forcing the event journal to the storage device.
+     */
+    public long getEventJournalSyncInterval() {
+        return eventJournalSyncInterval;
+    }
+
+    /**
+     * Set how often the event journal is forced to the storage device. Events are always written
+     * to the journal straight away and survive the app being killed, but the events written since
+     * the last sync can be lost if the device loses power. Use 0 to force every event, which is
+     * safer but slower.
+     *
+     * @param eventJournalSyncInterval Milliseconds between syncs.
+     */
+    public SwrveConfigBase setEventJournalSyncInterval(long eventJournalSyncInterval) {
+        this.eventJournalSyncInterval = Math.max(0, eventJournalSyncInterval);
+        return this;
+    }
+
+    /**
+     * @return if campaign triggers are evaluated in the background instead of on the thread sending the event.
+     */
+    public boolean isAsyncTriggerEvaluationEnabled() {
+        return asyncTriggerEvaluationEnabled;
+    }
+
+    /**
+     * Evaluate the campaign triggers of events in the background and only show the resulting
+     * in-app message or conversation on the UI thread. Disabled by default, which keeps the
+     * evaluation and the message listener calls on the thread that sent the event.
+     *
+     * @param enabled to evaluate campaign triggers in the background.
+     */
+    public void setAsyncTriggerEvaluationEnabled(boolean enabled) {
+        this.asyncTriggerEvaluationEnabled = enabled;
+    }
+
+    /**
+     * @return the number of threads used to parse campaigns when they are loaded.
+     */
+    public int getCampaignLoadingParallelism() {
+        return campaignLoadingParallelism;
+    }
+
+    /**
+     * Parse the campaigns on up to this number of background threads when they are loaded. The
+     * loaded campaigns are always in the same order as in the downloaded data. Defaults to 1,
+     * which parses them one by one on the thread loading the campaigns.
+     *
+     * @param campaignLoadingParallelism number of threads, at least 1.
+     */
+    public SwrveConfigBase setCampaignLoadingParallelism(int campaignLoadingParallelism) {
+        this.campaignLoadingParallelism = Math.max(1, campaignLoadingParallelism);
+        return this;
+    }
+
+    /**
+     * @return the number of campaign assets downloaded at the same time.
+     */
+    public int getAssetDownloadParallelism() {
+        return assetDownloadParallelism;
+    }
+
+    /**
+     * Download up to this number of campaign images and fonts at the same time. Defaults to 4.
+     *
+     * @param assetDownloadParallelism number of parallel downloads, at least 1.
+     */
+    public SwrveConfigBase setAssetDownloadParallelism(int assetDownloadParallelism) {
+        this.assetDownloadParallelism = Math.max(1, assetDownloadParallelism);
+        return this;
+    }
+
+    /**
+     * @return the maximum bytes of campaign assets kept in the cache directory.
+     */
+    public long getAssetCacheSize() {
+        return assetCacheSize;
+    }
+
+    /**
+     * Remove the least recently used campaign images and fonts once the ones downloaded by the SDK
+     * take more than this number of bytes. Assets used by the loaded campaigns are always kept,
+     * even if they take more. Defaults to 50 MB.
+     *
+     * @param assetCacheSize maximum bytes of assets, 0 to never remove them.
+     */
+    public SwrveConfigBase setAssetCacheSize(long assetCacheSize) {
+        this.assetCacheSize = Math.max(0, assetCacheSize);
+        return this;
+    }
 }
@@ -0,0 +1,611 @@
+package com.swrve.sdk.localstorage;
+
+import com.swrve.sdk.SwrveLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Used internally to keep events in append-only segment files.
+ *
+ * Every record is written as [length][crc32][utf-8 event] and its id is made of the segment number
+ * and the record offset, so ids are unique and increasing. The id of the oldest event that has not
+ * been removed is persisted in a cursor file, and a segment file is deleted once all of its events
+ * have been removed. When opening, records after a torn or corrupted write are discarded. Events
+ * removed out of order after the cursor can be returned again after a restart.
+ *
+ * Appended records are written to the segment file straight away, so they survive the app process
+ * being killed, but they are only forced to the storage device at most once every syncInterval
+ * milliseconds, and when the journal is closed. When an append is not synced straight away a sync
+ * is scheduled, so events are never left unsynced for longer than syncInterval. Events appended
+ * since the last sync can be lost if the device itself loses power. A syncInterval of 0 forces
+ * every append.
+ *
+ * One instance is shared by all the storages opened on the same directory.
+ */
+class EventJournal {
+
+    private static final String LOG_TAG = "EventJournal";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CURSOR_FILE = "cursor";
+    private static final int HEADER_SIZE = 8;
+    private static final int CURSOR_SIZE = 12;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Map<String, EventJournal> openJournals = new HashMap<String, EventJournal>();
+    // Runs the delayed syncs of every journal, its thread stops when no sync is pending
+    private static ScheduledThreadPoolExecutor syncExecutor;
+
+    private final File directory;
+    private final int segmentSize;
+    private final long maxSize;
+    private final long syncInterval;
+    private final List<Segment> segments = new ArrayList<Segment>();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(4096);
+    private FileChannel cursorChannel;
+    private long cursor = -1;
+    private long nextSegmentNumber = 1;
+    private long totalSize;
+    private long lastSyncTime;
+    private boolean syncScheduled;
+    private int refCount;
+
+    private EventJournal(File directory, int segmentSize, long maxSize, long syncInterval) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSize = maxSize;
+        this.syncInterval = syncInterval;
+    }
+
+    static EventJournal acquire(File directory, int segmentSize, long maxSize, long syncInterval) throws IOException {
+        synchronized (openJournals) {
+            String key = directory.getAbsolutePath();
+            EventJournal journal = openJournals.get(key);
+            if (journal == null) {
+                journal = new EventJournal(directory, segmentSize, maxSize, syncInterval);
+                journal.open();
+                openJournals.put(key, journal);
+            }
+            journal.refCount++;
+            return journal;
+        }
+    }
+
+    void release() {
+        synchronized (openJournals) {
+            refCount--;
+            if (refCount == 0) {
+                openJournals.remove(directory.getAbsolutePath());
+                synchronized (this) {
+                    try {
+                        sync();
+                    } catch (IOException e) {
+                        SwrveLogger.e(LOG_TAG, "Could not sync the event journal", e);
+                    }
+                    closeChannels();
+                }
+            }
+        }
+    }
+
+    String getPath() {
+        return directory.getAbsolutePath();
+    }
+
+    static long toId(long segmentNumber, int offset) {
+        return (segmentNumber << 32) | offset;
+    }
+
+    private static long segmentNumber(long id) {
+        return id >>> 32;
+    }
+
+    private static int offset(long id) {
+        return (int) id;
+    }
+
+    /*
+     * Appends all the events and returns their ids. Either all events are stored or none.
+     */
+    synchronized long[] append(List<String> events) throws IOException {
+        long[] ids = new long[events.size()];
+        int initialSegmentCount = segments.size();
+        int initialSize = (initialSegmentCount == 0) ? 0 : segments.get(initialSegmentCount - 1).size;
+        Segment segment = null;
+        int bufferStart = 0;
+        writeBuffer.clear();
+        try {
+            for (int i = 0; i < events.size(); i++) {
+                byte[] data = events.get(i).getBytes(UTF8);
+                int recordSize = HEADER_SIZE + data.length;
+                if (totalSize + recordSize > maxSize) {
+                    throw new IOException("Event journal is full");
+                }
+                if (segment == null || !fits(segment, recordSize)) {
+                    if (segment != null) {
+                        writeBuffered(segment, bufferStart);
+                    }
+                    segment = writableSegment(recordSize);
+                    bufferStart = segment.size;
+                }
+                crc.reset();
+                crc.update(data, 0, data.length);
+                ensureWriteCapacity(recordSize);
+                writeBuffer.putInt(data.length).putInt((int) crc.getValue()).put(data);
+                ids[i] = toId(segment.number, segment.size);
+                segment.addRecord(data.length);
+                totalSize += recordSize;
+            }
+            if (segment != null) {
+                writeBuffered(segment, bufferStart);
+            }
+        } catch (IOException e) {
+            rollback(initialSegmentCount, initialSize);
+            throw e;
+        }
+        return ids;
+    }
+
+    synchronized LinkedHashMap<Long, String> getFirst(Integer n) throws IOException {
+        return getFirst(n, Long.MAX_VALUE, Collections.<Long>emptySet());
+    }
+
+    /*
+     * Returns the first events not in excludedIds until n events are selected or the next one would
+     * take the size of the selection over maxBytes. Only the selected records are read.
+     */
+    synchronized LinkedHashMap<Long, String> getFirst(Integer n, long maxBytes, Collection<Long> excludedIds) throws IOException {
+        int limit = (n == null) ? Integer.MAX_VALUE : n;
+        LinkedHashMap<Long, String> events = new LinkedHashMap<Long, String>();
+        int[] indexes = new int[Math.min(limit, 64)];
+        long bytes = 0;
+        boolean budgetReached = false;
+        for (int s = 0; s < segments.size() && events.size() < limit && !budgetReached; s++) {
+            Segment segment = segments.get(s);
+            int selected = 0;
+            for (int i = segment.firstLive; i < segment.count && events.size() + selected < limit; i++) {
+                if (segment.removed.get(i) || (!excludedIds.isEmpty() && excludedIds.contains(toId(segment.number, segment.offsets[i])))) {
+                    continue;
+                }
+                bytes += segment.lengths[i];
+                if (bytes > maxBytes) {
+                    budgetReached = true;
+                    break;
+                }
+                if (selected == indexes.length) {
+                    indexes = Arrays.copyOf(indexes, selected * 2);
+                }
+                indexes[selected++] = i;
+            }
+            if (selected > 0) {
+                readRecords(segment, indexes, selected, events);
+            }
+        }
+        return events;
+    }
+
+    synchronized void remove(Collection<Long> ids) throws IOException {
+        for (Long id : ids) {
+            Segment segment = findSegment(segmentNumber(id));
+            if (segment != null) {
+                segment.remove(offset(id));
+            }
+        }
+        reclaimSegments();
+        writeCursor();
+    }
+
+    synchronized int getEventCount() {
+        int count = 0;
+        for (Segment segment : segments) {
+            count += segment.count - segment.removedCount;
+        }
+        return count;
+    }
+
+    synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    synchronized void clear() throws IOException {
+        for (Segment segment : segments) {
+            deleteSegment(segment);
+        }
+        segments.clear();
+        totalSize = 0;
+        writeCursor();
+    }
+
+    private void open() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create event journal directory " + directory);
+        }
+        cursorChannel = new RandomAccessFile(new File(directory, CURSOR_FILE), "rw").getChannel();
+        long savedCursor = readCursor();
+
+        long[] numbers = listSegmentNumbers();
+        for (long number : numbers) {
+            Segment segment = new Segment(number, segmentFile(number));
+            recoverSegment(segment);
+            segment.removeBefore(savedCursor);
+            segments.add(segment);
+            totalSize += segment.size;
+        }
+        if (numbers.length > 0) {
+            nextSegmentNumber = numbers[numbers.length - 1] + 1;
+        }
+        if (savedCursor > 0) {
+            nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumber(savedCursor) + 1);
+        }
+        reclaimSegments();
+        writeCursor();
+    }
+
+    // Scans the records verifying the checksums and truncates the file after the last valid one
+    private void recoverSegment(Segment segment) throws IOException {
+        FileChannel channel = segment.channel;
+        long fileSize = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        int position = 0;
+        while (position + HEADER_SIZE <= fileSize) {
+            header.clear();
+            readFully(channel, header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 0 || position + HEADER_SIZE + (long) length > fileSize) {
+                break;
+            }
+            ByteBuffer data = ByteBuffer.allocate(length);
+            readFully(channel, data, position + HEADER_SIZE);
+            crc.reset();
+            crc.update(data.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            segment.addRecord(length);
+            position += HEADER_SIZE + length;
+        }
+        if (position < fileSize) {
+            SwrveLogger.w(LOG_TAG, "Discarding %d bytes of incomplete records in %s", fileSize - position, segment.file.getName());
+            channel.truncate(position);
+        }
+    }
+
+    private void readRecords(Segment segment, int[] indexes, int selected, LinkedHashMap<Long, String> events) throws IOException {
+        // Read the whole span of the selected records at once
+        int first = indexes[0];
+        int last = indexes[selected - 1];
+        int start = segment.offsets[first];
+        int end = segment.offsets[last] + HEADER_SIZE + segment.lengths[last];
+        ByteBuffer buffer = ByteBuffer.allocate(end - start);
+        readFully(segment.channel, buffer, start);
+        byte[] bytes = buffer.array();
+        for (int i = 0; i < selected; i++) {
+            int index = indexes[i];
+            int offset = segment.offsets[index];
+            String event = new String(bytes, offset - start + HEADER_SIZE, segment.lengths[index], UTF8);
+            events.put(toId(segment.number, offset), event);
+        }
+    }
+
+    private boolean fits(Segment segment, int recordSize) {
+        return segment.size == 0 || segment.size + recordSize <= segmentSize;
+    }
+
+    private Segment writableSegment(int recordSize) throws IOException {
+        if (!segments.isEmpty()) {
+            Segment last = segments.get(segments.size() - 1);
+            if (fits(last, recordSize)) {
+                return last;
+            }
+        }
+        long number = nextSegmentNumber++;
+        Segment segment = new Segment(number, segmentFile(number));
+        segments.add(segment);
+        return segment;
+    }
+
+    private void writeBuffered(Segment segment, int position) throws IOException {
+        writeBuffer.flip();
+        long filePosition = position;
+        while (writeBuffer.hasRemaining()) {
+            filePosition += segment.channel.write(writeBuffer, filePosition);
+        }
+        writeBuffer.clear();
+        segment.unsynced = true;
+        long now = System.currentTimeMillis();
+        if (now - lastSyncTime >= syncInterval) {
+            sync();
+            lastSyncTime = now;
+        } else if (!syncScheduled) {
+            syncScheduled = true;
+            getSyncExecutor().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    scheduledSync();
+                }
+            }, lastSyncTime + syncInterval - now, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void scheduledSync() {
+        syncScheduled = false;
+        try {
+            sync();
+            lastSyncTime = System.currentTimeMillis();
+        } catch (IOException e) {
+            SwrveLogger.e(LOG_TAG, "Could not sync the event journal", e);
+        }
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor getSyncExecutor() {
+        if (syncExecutor == null) {
+            syncExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "SwrveEventJournalSync");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            syncExecutor.setKeepAliveTime(30, TimeUnit.SECONDS);
+            syncExecutor.allowCoreThreadTimeOut(true);
+        }
+        return syncExecutor;
+    }
+
+    // Forces the segments written since the last sync to the storage device
+    private void sync() throws IOException {
+        for (Segment segment : segments) {
+            if (segment.unsynced) {
+                segment.channel.force(false);
+                segment.unsynced = false;
+            }
+        }
+    }
+
+    private void ensureWriteCapacity(int recordSize) {
+        if (writeBuffer.remaining() < recordSize) {
+            ByteBuffer newBuffer = ByteBuffer.allocate(Math.max(writeBuffer.capacity() * 2, writeBuffer.position() + recordSize));
+            writeBuffer.flip();
+            newBuffer.put(writeBuffer);
+            writeBuffer = newBuffer;
+        }
+    }
+
+    // Removes everything written after the given point by a failed append
+    private void rollback(int segmentCount, int size) {
+        while (segments.size() > segmentCount) {
+            Segment segment = segments.remove(segments.size() - 1);
+            totalSize -= segment.size;
+            deleteSegment(segment);
+        }
+        if (segmentCount > 0) {
+            Segment segment = segments.get(segmentCount - 1);
+            totalSize -= segment.size - size;
+            segment.truncate(size);
+            try {
+                segment.channel.truncate(size);
+            } catch (IOException e) {
+                SwrveLogger.e(LOG_TAG, "Could not truncate %s", e, segment.file.getName());
+            }
+        }
+    }
+
+    private void reclaimSegments() {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            boolean isActive = (i == segments.size() - 1) && segment.size < segmentSize;
+            if (!isActive && segment.removedCount == segment.count) {
+                segments.remove(i);
+                totalSize -= segment.size;
+                deleteSegment(segment);
+            }
+        }
+    }
+
+    private void deleteSegment(Segment segment) {
+        try {
+            segment.channel.close();
+        } catch (IOException e) {
+            SwrveLogger.e(LOG_TAG, "Could not close %s", e, segment.file.getName());
+        }
+        if (!segment.file.delete()) {
+            SwrveLogger.w(LOG_TAG, "Could not delete %s", segment.file.getName());
+        }
+    }
+
+    private Segment findSegment(long number) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleNumber = segments.get(middle).number;
+            if (middleNumber < number) {
+                low = middle + 1;
+            } else if (middleNumber > number) {
+                high = middle - 1;
+            } else {
+                return segments.get(middle);
+            }
+        }
+        return null;
+    }
+
+    private long readCursor() throws IOException {
+        if (cursorChannel.size() < CURSOR_SIZE) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(CURSOR_SIZE);
+        readFully(cursorChannel, buffer, 0);
+        buffer.flip();
+        long value = buffer.getLong();
+        int checksum = buffer.getInt();
+        crc.reset();
+        crc.update(buffer.array(), 0, 8);
+        if ((int) crc.getValue() != checksum) {
+            SwrveLogger.w(LOG_TAG, "Event journal cursor is corrupted, events may be sent again");
+            return 0;
+        }
+        return value;
+    }
+
+    private void writeCursor() throws IOException {
+        long newCursor = toId(nextSegmentNumber, 0);
+        for (Segment segment : segments) {
+            if (segment.firstLive < segment.count) {
+                newCursor = toId(segment.number, segment.offsets[segment.firstLive]);
+                break;
+            }
+        }
+        if (newCursor == cursor) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(CURSOR_SIZE);
+        buffer.putLong(newCursor);
+        crc.reset();
+        crc.update(buffer.array(), 0, 8);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            cursorChannel.write(buffer, buffer.position());
+        }
+        cursorChannel.force(false);
+        cursor = newCursor;
+    }
+
+    private long[] listSegmentNumbers() {
+        String[] names = directory.list();
+        if (names == null) {
+            return new long[0];
+        }
+        long[] numbers = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    numbers[count] = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    count++;
+                } catch (NumberFormatException e) {
+                    SwrveLogger.w(LOG_TAG, "Ignoring unknown file %s", name);
+                }
+            }
+        }
+        numbers = Arrays.copyOf(numbers, count);
+        Arrays.sort(numbers);
+        return numbers;
+    }
+
+    private File segmentFile(long number) {
+        return new File(directory, String.format("%s%010d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private void closeChannels() {
+        for (Segment segment : segments) {
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                SwrveLogger.e(LOG_TAG, "Could not close %s", e, segment.file.getName());
+            }
+        }
+        segments.clear();
+        try {
+            cursorChannel.close();
+        } catch (IOException e) {
+            SwrveLogger.e(LOG_TAG, "Could not close the event journal cursor", e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of event journal file");
+            }
+        }
+    }
+
+    /*
+     * In-memory index of the records in a segment file.
+     */
+    private static class Segment {
+        final long number;
+        final File file;
+        final FileChannel channel;
+        int[] offsets = new int[64];
+        int[] lengths = new int[64];
+        int count;
+        int size;
+        final BitSet removed = new BitSet();
+        int removedCount;
+        int firstLive;
+        boolean unsynced;
+
+        Segment(long number, File file) throws IOException {
+            this.number = number;
+            this.file = file;
+            this.channel = new RandomAccessFile(file, "rw").getChannel();
+        }
+
+        void addRecord(int length) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+            }
+            offsets[count] = size;
+            lengths[count] = length;
+            count++;
+            size += HEADER_SIZE + length;
+        }
+
+        void remove(int offset) {
+            int index = Arrays.binarySearch(offsets, 0, count, offset);
+            if (index >= 0 && !removed.get(index)) {
+                removed.set(index);
+                removedCount++;
+                while (firstLive < count && removed.get(firstLive)) {
+                    firstLive++;
+                }
+            }
+        }
+
+        // Marks as removed the records before the persisted cursor
+        void removeBefore(long cursorId) {
+            for (int i = 0; i < count && toId(number, offsets[i]) < cursorId; i++) {
+                remove(offsets[i]);
+            }
+        }
+
+        void truncate(int newSize) {
+            while (count > 0 && offsets[count - 1] >= newSize) {
+                count--;
+                if (removed.get(count)) {
+                    removed.clear(count);
+                    removedCount--;
+                }
+            }
+            size = newSize;
+            firstLive = Math.min(firstLive, count);
+        }
+    }
+}
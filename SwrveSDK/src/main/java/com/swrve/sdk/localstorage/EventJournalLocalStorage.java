@@ -0,0 +1,196 @@
+package com.swrve.sdk.localstorage;
+
+import android.content.Context;
+
+import com.swrve.sdk.SwrveLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Used internally to provide a persistent storage of data on the device, keeping events in an
+ * append-only journal of segment files instead of SQLite. Other persistent data is kept in SQLite.
+ */
+public class EventJournalLocalStorage implements ILocalStorage, IFastInsertLocalStorage, IBudgetedLocalStorage {
+    protected static final String LOG_TAG = "EventJournal";
+
+    public static final int DEFAULT_SEGMENT_SIZE = 256 * 1024;
+    public static final long DEFAULT_SYNC_INTERVAL = 1000;
+    private static final String JOURNAL_DIR_SUFFIX = "_events";
+
+    private SQLiteLocalStorage cacheStorage;
+    private EventJournal journal;
+    private AtomicBoolean connectionOpen;
+
+    public EventJournalLocalStorage(Context context, String dbName, long maxSize) throws IOException {
+        this(context, dbName, maxSize, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public EventJournalLocalStorage(Context context, String dbName, long maxSize, int segmentSize) throws IOException {
+        this(context, dbName, maxSize, segmentSize, DEFAULT_SYNC_INTERVAL);
+    }
+
+    /*
+     * Appended events are forced to the storage device at most once every syncInterval
+     * milliseconds. A crash of the app loses no events, but a power loss can lose the events
+     * appended since the last sync. Use 0 to force every append.
+     */
+    public EventJournalLocalStorage(Context context, String dbName, long maxSize, int segmentSize, long syncInterval) throws IOException {
+        this.cacheStorage = new SQLiteLocalStorage(context, dbName, maxSize);
+        try {
+            this.journal = EventJournal.acquire(new File(context.getFilesDir(), dbName + JOURNAL_DIR_SUFFIX), segmentSize, maxSize, syncInterval);
+        } catch (IOException e) {
+            cacheStorage.close();
+            throw e;
+        }
+        this.connectionOpen = new AtomicBoolean(true);
+        importSQLiteEvents();
+    }
+
+    public String getJournalPath() {
+        return journal.getPath();
+    }
+
+    // Events left in SQLite (i.e. by the wakeful service or before the journal was enabled) are moved to the journal
+    private void importSQLiteEvents() {
+        synchronized (MemoryCachedLocalStorage.EVENT_LOCK) {
+            LinkedHashMap<Long, String> events = cacheStorage.getFirstNEvents(null);
+            if (events.isEmpty()) {
+                return;
+            }
+            try {
+                journal.append(new ArrayList<String>(events.values()));
+                cacheStorage.removeEventsById(events.keySet());
+            } catch (IOException e) {
+                SwrveLogger.e(LOG_TAG, "Could not move events from SQLite to the event journal", e);
+            }
+        }
+    }
+
+    @Override
+    public void addEvent(String eventJSON) throws Exception {
+        addEventAndGetId(eventJSON);
+    }
+
+    public long addEventAndGetId(String eventJSON) throws IOException {
+        long id = 0;
+        if (connectionOpen.get()) {
+            id = journal.append(Collections.singletonList(eventJSON))[0];
+        }
+        return id;
+    }
+
+    @Override
+    public void removeEventsById(Collection<Long> ids) {
+        if (connectionOpen.get()) {
+            try {
+                journal.remove(ids);
+            } catch (IOException e) {
+                SwrveLogger.e(LOG_TAG, "Could not remove events from the event journal", e);
+            }
+        }
+    }
+
+    @Override
+    public LinkedHashMap<Long, String> getFirstNEvents(Integer n) {
+        LinkedHashMap<Long, String> events = new LinkedHashMap<Long, String>();
+        if (connectionOpen.get()) {
+            try {
+                events = journal.getFirst(n);
+            } catch (IOException e) {
+                SwrveLogger.e(LOG_TAG, "Could not read events from the event journal", e);
+            }
+        }
+        return events;
+    }
+
+    @Override
+    public LinkedHashMap<Long, String> getFirstNEvents(Integer n, long maxBytes, Collection<Long> excludedIds) {
+        LinkedHashMap<Long, String> events = new LinkedHashMap<Long, String>();
+        if (connectionOpen.get()) {
+            try {
+                events = journal.getFirst(n, maxBytes, excludedIds);
+            } catch (IOException e) {
+                SwrveLogger.e(LOG_TAG, "Could not read events from the event journal", e);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * @return Number of events in the journal.
+     */
+    public int getEventCount() {
+        return journal.getEventCount();
+    }
+
+    // Fast flush
+    @Override
+    public void addMultipleEvent(List<String> eventsJSON) {
+        if (connectionOpen.get()) {
+            try {
+                journal.append(eventsJSON);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not add events to the event journal", e);
+            }
+        }
+    }
+
+    @Override
+    public void setMultipleCacheEntries(List<Entry<String, Entry<String, String>>> cacheEntries) {
+        cacheStorage.setMultipleCacheEntries(cacheEntries);
+    }
+
+    @Override
+    public String getCacheEntryForUser(String userId, String category) {
+        return cacheStorage.getCacheEntryForUser(userId, category);
+    }
+
+    @Override
+    public String getSecureCacheEntryForUser(String userId, String category, String uniqueKey) throws SecurityException {
+        return cacheStorage.getSecureCacheEntryForUser(userId, category, uniqueKey);
+    }
+
+    @Override
+    public void setCacheEntryForUser(String userId, String category, String rawData) {
+        cacheStorage.setCacheEntryForUser(userId, category, rawData);
+    }
+
+    @Override
+    public void setSecureCacheEntryForUser(String userId, String category, String rawData, String signature) {
+        cacheStorage.setSecureCacheEntryForUser(userId, category, rawData, signature);
+    }
+
+    @Override
+    public Map<Entry<String, String>, String> getAllCacheEntries() {
+        return cacheStorage.getAllCacheEntries();
+    }
+
+    @Override
+    public void reset() {
+        if (connectionOpen.get()) {
+            try {
+                journal.clear();
+            } catch (IOException e) {
+                SwrveLogger.e(LOG_TAG, "Could not clear the event journal", e);
+            }
+        }
+        cacheStorage.reset();
+    }
+
+    @Override
+    public void close() {
+        if (connectionOpen.compareAndSet(true, false)) {
+            journal.release();
+        }
+        cacheStorage.close();
+    }
+}
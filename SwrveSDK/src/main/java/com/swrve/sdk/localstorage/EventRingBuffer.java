@@ -0,0 +1,231 @@
+package com.swrve.sdk.localstorage;
+
+import com.swrve.sdk.SwrveHelper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Used internally to keep events in memory in a growable ring buffer. Ids are assigned in increasing
+ * order so a sent batch taken from the head is acknowledged by advancing the head pointer. The
+ * UTF-8 length of each event is computed once when it is added, for batches selected by size.
+ * Not thread safe, callers must synchronize.
+ */
+class EventRingBuffer {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int maxCapacity;
+    private long[] ids;
+    private String[] events;
+    private int[] lengths;
+    private int head;
+    private int size;
+    private long nextId;
+
+    EventRingBuffer(int maxCapacity) {
+        this.maxCapacity = maxCapacity;
+        int capacity = Math.min(INITIAL_CAPACITY, maxCapacity);
+        this.ids = new long[capacity];
+        this.events = new String[capacity];
+        this.lengths = new int[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return size >= maxCapacity;
+    }
+
+    /*
+     * Appends an event and returns its id, or -1 if the buffer is full.
+     */
+    long add(String event) {
+        if (isFull()) {
+            return -1;
+        }
+        if (size == ids.length) {
+            grow();
+        }
+        int tail = index(size);
+        long id = nextId++;
+        ids[tail] = id;
+        events[tail] = event;
+        lengths[tail] = SwrveHelper.utf8Length(event);
+        size++;
+        return id;
+    }
+
+    LinkedHashMap<Long, String> peek(int n) {
+        int count = Math.min(n, size);
+        LinkedHashMap<Long, String> result = new LinkedHashMap<Long, String>(count * 2);
+        for (int i = 0; i < count; i++) {
+            int index = index(i);
+            result.put(ids[index], events[index]);
+        }
+        return result;
+    }
+
+    /*
+     * Returns the first events not in excludedIds until n events are selected or the next one would
+     * take the UTF-8 size of the selection over maxBytes.
+     */
+    LinkedHashMap<Long, String> peek(int n, long maxBytes, Collection<Long> excludedIds) {
+        LinkedHashMap<Long, String> result = new LinkedHashMap<Long, String>();
+        long bytes = 0;
+        for (int i = 0; i < size && result.size() < n; i++) {
+            int index = index(i);
+            if (excludedIds.contains(ids[index])) {
+                continue;
+            }
+            bytes += lengths[index];
+            if (bytes > maxBytes) {
+                break;
+            }
+            result.put(ids[index], events[index]);
+        }
+        return result;
+    }
+
+    List<String> peekAllEvents() {
+        List<String> result = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(events[index(i)]);
+        }
+        return result;
+    }
+
+    /*
+     * Removes the first n events.
+     */
+    void removeFirst(int n) {
+        int count = Math.min(n, size);
+        for (int i = 0; i < count; i++) {
+            events[index(i)] = null;
+        }
+        head = index(count);
+        size -= count;
+        if (size == 0) {
+            head = 0;
+        }
+    }
+
+    void remove(Collection<Long> removedIds) {
+        int count = removedIds.size();
+        if (count == 0 || size == 0) {
+            return;
+        }
+        if (isHeadRange(removedIds)) {
+            removeFirst(count);
+        } else {
+            long[] sortedIds = toSortedArray(removedIds);
+            retainWhere(sortedIds, false);
+        }
+    }
+
+    /*
+     * Keeps only the events with the given ids.
+     */
+    void retain(Collection<Long> retainedIds) {
+        if (retainedIds.isEmpty()) {
+            clear();
+        } else {
+            retainWhere(toSortedArray(retainedIds), true);
+        }
+    }
+
+    List<String> eventsNotIn(Collection<Long> excludedIds) {
+        long[] sortedIds = toSortedArray(excludedIds);
+        List<String> result = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            int index = index(i);
+            if (Arrays.binarySearch(sortedIds, ids[index]) < 0) {
+                result.add(events[index]);
+            }
+        }
+        return result;
+    }
+
+    void clear() {
+        Arrays.fill(events, null);
+        head = 0;
+        size = 0;
+    }
+
+    // Ids in the buffer are strictly increasing, so the ids are the head range if they
+    // are contiguous and the first and last ones match the head.
+    private boolean isHeadRange(Collection<Long> removedIds) {
+        int count = removedIds.size();
+        if (count > size) {
+            return false;
+        }
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (Long id : removedIds) {
+            long value = id;
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+        }
+        return (max - min + 1 == count) && ids[head] == min && ids[index(count - 1)] == max;
+    }
+
+    private void retainWhere(long[] sortedIds, boolean keepIfFound) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int index = index(i);
+            boolean found = Arrays.binarySearch(sortedIds, ids[index]) >= 0;
+            if (found == keepIfFound) {
+                int target = index(kept);
+                ids[target] = ids[index];
+                events[target] = events[index];
+                lengths[target] = lengths[index];
+                kept++;
+            }
+        }
+        for (int i = kept; i < size; i++) {
+            events[index(i)] = null;
+        }
+        size = kept;
+    }
+
+    private void grow() {
+        int newCapacity = Math.min(ids.length * 2, maxCapacity);
+        long[] newIds = new long[newCapacity];
+        String[] newEvents = new String[newCapacity];
+        int[] newLengths = new int[newCapacity];
+        for (int i = 0; i < size; i++) {
+            int index = index(i);
+            newIds[i] = ids[index];
+            newEvents[i] = events[index];
+            newLengths[i] = lengths[index];
+        }
+        ids = newIds;
+        events = newEvents;
+        lengths = newLengths;
+        head = 0;
+    }
+
+    private int index(int offset) {
+        int index = head + offset;
+        return (index >= ids.length) ? index - ids.length : index;
+    }
+
+    private static long[] toSortedArray(Collection<Long> ids) {
+        long[] result = new long[ids.size()];
+        int i = 0;
+        for (Long id : ids) {
+            result[i++] = id;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+}
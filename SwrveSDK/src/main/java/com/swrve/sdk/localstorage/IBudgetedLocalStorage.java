@@ -0,0 +1,16 @@
+package com.swrve.sdk.localstorage;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+
+/**
+ * Used internally to select events by size without reading events that will not be part of the batch.
+ */
+public interface IBudgetedLocalStorage {
+
+    /*
+     * Returns the first events, skipping the excluded ids, until n events are selected or the next
+     * event would take the UTF-8 size of the selection over maxBytes.
+     */
+    LinkedHashMap<Long, String> getFirstNEvents(Integer n, long maxBytes, Collection<Long> excludedIds);
+}
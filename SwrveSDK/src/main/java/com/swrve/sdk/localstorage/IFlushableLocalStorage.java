@@ -1,5 +1,7 @@
 package com.swrve.sdk.localstorage;
 
+import java.util.Collection;
+
 /**
  * Used internally to define a storage object that is capable of flushing.
  */
@@ -7,5 +9,9 @@ public interface IFlushableLocalStorage {
 
     void flushEvents(IFastInsertLocalStorage externalStorage);
 
+    void flushEvents(IFastInsertLocalStorage externalStorage, Collection<Long> retainedIds);
+
     void flushCache(IFastInsertLocalStorage externalStorage);
+
+    int getEventCount();
 }
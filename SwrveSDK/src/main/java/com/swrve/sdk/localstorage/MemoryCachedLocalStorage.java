@@ -1,15 +1,22 @@
 package com.swrve.sdk.localstorage;
 
-import com.swrve.sdk.SwrveLogger;
-
 import com.swrve.sdk.SwrveHelper;
+import com.swrve.sdk.SwrveLogger;
 
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Used internally to provide a multi-layer cache of events and resource diffs.
@@ -20,13 +27,47 @@ public class MemoryCachedLocalStorage implements IMemoryLocalStorage {
 
     public static final Object EVENT_LOCK = new Object();
 
+    // Ids of events that are being sent, per storage. Guarded by EVENT_LOCK.
+    private static final Map<Object, Set<Long>> leasedEventIds = new HashMap<Object, Set<Long>>();
+
     private Object cacheLock = new Object();
 
+    private Executor spillExecutor;
+    private int spillThreshold;
+    private int maxEventsInMemory;
+    private final AtomicBoolean spillScheduled = new AtomicBoolean(false);
+
     public MemoryCachedLocalStorage(ILocalStorage cache, ILocalStorage secondaryStorage) {
         this.cache = cache;
         this.secondaryStorage = secondaryStorage;
     }
 
+    /*
+     * Once the memory cache holds spillThreshold events its oldest events are moved to the
+     * secondary storage in the background using the executor. If it reaches maxEventsInMemory
+     * before that happens they are moved synchronously so no events are dropped. A spillThreshold
+     * above maxEventsInMemory is lowered to maxEventsInMemory.
+     */
+    public void setSpillToSecondaryStorage(int spillThreshold, int maxEventsInMemory, Executor executor) {
+        if (spillThreshold > maxEventsInMemory) {
+            SwrveLogger.w("SwrveSDK", "Events spill threshold " + spillThreshold + " is above the maximum events in memory, using " + maxEventsInMemory);
+            spillThreshold = maxEventsInMemory;
+        }
+        this.spillThreshold = spillThreshold;
+        this.maxEventsInMemory = maxEventsInMemory;
+        this.spillExecutor = executor;
+    }
+
+    /**
+     * @return Number of events that were discarded because the memory cache was full.
+     */
+    public long getDroppedEventCount() {
+        if (cache instanceof MemoryLocalStorage) {
+            return ((MemoryLocalStorage) cache).getDroppedEventCount();
+        }
+        return 0;
+    }
+
     public ILocalStorage getSecondaryStorage() {
         return secondaryStorage;
     }
@@ -86,33 +127,266 @@ public class MemoryCachedLocalStorage implements IMemoryLocalStorage {
     }
 
     public LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> getCombinedFirstNEvents(Integer n) {
+        return getCombinedFirstNEvents(n, 0);
+    }
+
+    /*
+     * Returns the first n events, starting with the secondary storage. If maxBytes is greater than
+     * zero the selection also stops before the UTF-8 size of the events goes over it, but always
+     * contains at least one event so a single large event can still be sent.
+     */
+    public LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> getCombinedFirstNEvents(Integer n, long maxBytes) {
         synchronized (EVENT_LOCK) {
-            LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> result = new LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>>();
-            int eventCount = 0;
-            if (secondaryStorage != null) {
-                LinkedHashMap<Long, String> events = secondaryStorage.getFirstNEvents(n);
-                eventCount = events.size();
-                if (eventCount > 0) {
-                    result.put(secondaryStorage, events);
+            return selectCombinedFirstNEvents(n, maxBytes, false);
+        }
+    }
+
+    public LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> leaseCombinedFirstNEvents(Integer n) {
+        return leaseCombinedFirstNEvents(n, 0);
+    }
+
+    /*
+     * Selects the first events that are not already being sent, like getCombinedFirstNEvents, and
+     * leases them. Leased events are not returned by this method again until they are released, and
+     * are kept in memory when flushing. The caller must call acknowledgeEvents or releaseEvents once
+     * the send has finished.
+     */
+    public LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> leaseCombinedFirstNEvents(Integer n, long maxBytes) {
+        synchronized (EVENT_LOCK) {
+            LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> result = selectCombinedFirstNEvents(n, maxBytes, true);
+            leaseEvents(result);
+            return result;
+        }
+    }
+
+    private LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> selectCombinedFirstNEvents(Integer n, long maxBytes, boolean skipLeased) {
+        LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> result = new LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>>();
+        long remainingBytes = (maxBytes > 0) ? maxBytes : Long.MAX_VALUE;
+        int eventCount = 0;
+        if (secondaryStorage != null) {
+            LinkedHashMap<Long, String> events = getFirstEvents(secondaryStorage, n, remainingBytes, skipLeased, true);
+            eventCount = events.size();
+            if (eventCount > 0) {
+                result.put(secondaryStorage, events);
+                if (maxBytes > 0) {
+                    remainingBytes -= getSize(events);
+                }
+            }
+            // Events in memory are newer, they are only added once the secondary storage has no
+            // more events to send so the batch keeps the order of the events
+            if (maxBytes > 0 && eventCount > 0 && eventCount < n && hasMoreEvents(secondaryStorage, events, skipLeased)) {
+                return result;
+            }
+        }
+
+        if (n - eventCount > 0 && remainingBytes > 0) {
+            LinkedHashMap<Long, String> events = getFirstEvents(cache, n - eventCount, remainingBytes, skipLeased, result.isEmpty());
+            if (events.size() > 0) {
+                result.put(cache, events);
+            }
+        }
+
+        return result;
+    }
+
+    private LinkedHashMap<Long, String> getFirstEvents(ILocalStorage storage, int n, long maxBytes, boolean skipLeased, boolean atLeastOne) {
+        if (maxBytes == Long.MAX_VALUE) {
+            return skipLeased ? getFirstNNotLeasedEvents(storage, n) : storage.getFirstNEvents(n);
+        }
+
+        Set<Long> excludedIds = skipLeased ? leasedEventIds.get(getLeaseKey(storage)) : null;
+        if (excludedIds == null) {
+            excludedIds = Collections.emptySet();
+        }
+        LinkedHashMap<Long, String> events;
+        if (storage instanceof IBudgetedLocalStorage) {
+            events = ((IBudgetedLocalStorage) storage).getFirstNEvents(n, maxBytes, excludedIds);
+        } else {
+            events = skipLeased ? getFirstNNotLeasedEvents(storage, n) : storage.getFirstNEvents(n);
+            trimToSize(events, maxBytes);
+        }
+        if (events.isEmpty() && atLeastOne) {
+            // The first event alone is bigger than the budget
+            events = skipLeased ? getFirstNNotLeasedEvents(storage, 1) : storage.getFirstNEvents(1);
+        }
+        return events;
+    }
+
+    // Whether the storage has events to send after the selected ones
+    private boolean hasMoreEvents(ILocalStorage storage, LinkedHashMap<Long, String> selectedEvents, boolean skipLeased) {
+        Set<Long> leasedIds = skipLeased ? leasedEventIds.get(getLeaseKey(storage)) : null;
+        if (storage instanceof IBudgetedLocalStorage) {
+            Set<Long> excludedIds = new HashSet<Long>(selectedEvents.keySet());
+            if (leasedIds != null) {
+                excludedIds.addAll(leasedIds);
+            }
+            return !((IBudgetedLocalStorage) storage).getFirstNEvents(1, Long.MAX_VALUE, excludedIds).isEmpty();
+        }
+        int n = selectedEvents.size() + 1;
+        LinkedHashMap<Long, String> events = skipLeased ? getFirstNNotLeasedEvents(storage, n) : storage.getFirstNEvents(n);
+        return events.size() == n;
+    }
+
+    private static long getSize(LinkedHashMap<Long, String> events) {
+        long size = 0;
+        for (String event : events.values()) {
+            size += SwrveHelper.utf8Length(event);
+        }
+        return size;
+    }
+
+    private static void trimToSize(LinkedHashMap<Long, String> events, long maxBytes) {
+        long size = 0;
+        Iterator<String> eventsIt = events.values().iterator();
+        while (eventsIt.hasNext()) {
+            String event = eventsIt.next();
+            size += SwrveHelper.utf8Length(event);
+            if (size > maxBytes) {
+                eventsIt.remove();
+            }
+        }
+    }
+
+    public void leaseEvents(LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> combinedEvents) {
+        synchronized (EVENT_LOCK) {
+            for (Entry<ILocalStorage, LinkedHashMap<Long, String>> entry : combinedEvents.entrySet()) {
+                Object key = getLeaseKey(entry.getKey());
+                Set<Long> leasedIds = leasedEventIds.get(key);
+                if (leasedIds == null) {
+                    leasedIds = new HashSet<Long>();
+                    leasedEventIds.put(key, leasedIds);
                 }
+                leasedIds.addAll(entry.getValue().keySet());
             }
+        }
+    }
 
-            if (n - eventCount > 0) {
-                LinkedHashMap<Long, String> events = cache.getFirstNEvents(n - eventCount);
-                int remainingEventCount = events.size();
-                if (remainingEventCount > 0) {
-                    result.put(cache, events);
+    /*
+     * Removes leased events from the storage they came from once they have been sent.
+     */
+    public void acknowledgeEvents(LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> combinedEvents) {
+        synchronized (EVENT_LOCK) {
+            for (Entry<ILocalStorage, LinkedHashMap<Long, String>> entry : combinedEvents.entrySet()) {
+                entry.getKey().removeEventsById(entry.getValue().keySet());
+            }
+            releaseEvents(combinedEvents);
+        }
+    }
+
+    /*
+     * Releases leased events so they can be sent again.
+     */
+    public void releaseEvents(LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> combinedEvents) {
+        synchronized (EVENT_LOCK) {
+            for (Entry<ILocalStorage, LinkedHashMap<Long, String>> entry : combinedEvents.entrySet()) {
+                Object key = getLeaseKey(entry.getKey());
+                Set<Long> leasedIds = leasedEventIds.get(key);
+                if (leasedIds != null) {
+                    leasedIds.removeAll(entry.getValue().keySet());
+                    if (leasedIds.isEmpty()) {
+                        leasedEventIds.remove(key);
+                    }
                 }
             }
+        }
+    }
 
-            return result;
+    private LinkedHashMap<Long, String> getFirstNNotLeasedEvents(ILocalStorage storage, int n) {
+        Set<Long> leasedIds = leasedEventIds.get(getLeaseKey(storage));
+        if (leasedIds == null || leasedIds.isEmpty()) {
+            return storage.getFirstNEvents(n);
         }
+
+        LinkedHashMap<Long, String> events = storage.getFirstNEvents(n + leasedIds.size());
+        Iterator<Long> idsIt = events.keySet().iterator();
+        int eventCount = 0;
+        while (idsIt.hasNext()) {
+            Long id = idsIt.next();
+            if (leasedIds.contains(id) || eventCount >= n) {
+                idsIt.remove();
+            } else {
+                eventCount++;
+            }
+        }
+        return events;
+    }
+
+    // The SQLite ids are shared by every connection to the same database
+    private static Object getLeaseKey(ILocalStorage storage) {
+        if (storage instanceof SQLiteLocalStorage) {
+            return ((SQLiteLocalStorage) storage).getDatabasePath();
+        } else if (storage instanceof EventJournalLocalStorage) {
+            return ((EventJournalLocalStorage) storage).getJournalPath();
+        }
+        return storage;
     }
 
     @Override
     public void addEvent(String eventJSON) throws Exception {
+        int eventCount = 0;
         synchronized (EVENT_LOCK) {
+            if (canSpill() && getCacheEventCount() >= maxEventsInMemory) {
+                spillEvents();
+            }
             cache.addEvent(eventJSON);
+            if (canSpill()) {
+                eventCount = getCacheEventCount();
+            }
+        }
+        if (eventCount >= spillThreshold && spillExecutor != null && spillScheduled.compareAndSet(false, true)) {
+            try {
+                spillExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            synchronized (EVENT_LOCK) {
+                                spillEvents();
+                            }
+                        } catch (Exception e) {
+                            SwrveLogger.e("SwrveSDK", "Could not move events to secondary storage", e);
+                        } finally {
+                            spillScheduled.set(false);
+                        }
+                    }
+                });
+            } catch (Exception e) {
+                spillScheduled.set(false);
+                SwrveLogger.e("SwrveSDK", "Could not schedule moving events to secondary storage", e);
+            }
+        }
+    }
+
+    private boolean canSpill() {
+        return spillThreshold > 0 && cache != secondaryStorage && cache instanceof IFlushableLocalStorage && secondaryStorage instanceof IFastInsertLocalStorage;
+    }
+
+    private int getCacheEventCount() {
+        return ((IFlushableLocalStorage) cache).getEventCount();
+    }
+
+    /*
+     * Moves the oldest events that are not being sent to the secondary storage, down to half of the
+     * spill threshold. The events stay in memory if the secondary storage rejects them (i.e. it is full).
+     * Must be called holding EVENT_LOCK.
+     */
+    private void spillEvents() {
+        if (!canSpill()) {
+            return;
+        }
+        int count = getCacheEventCount() - (spillThreshold / 2);
+        if (count <= 0) {
+            return;
+        }
+        LinkedHashMap<Long, String> events = getFirstNNotLeasedEvents(cache, count);
+        if (events.isEmpty()) {
+            return;
+        }
+        try {
+            ((IFastInsertLocalStorage) secondaryStorage).addMultipleEvent(new ArrayList<String>(events.values()));
+            cache.removeEventsById(events.keySet());
+            SwrveLogger.i("SwrveSDK", "Moved " + events.size() + " events from memory to secondary storage");
+        } catch (Exception e) {
+            SwrveLogger.e("SwrveSDK", "Secondary storage could not accept events, keeping them in memory", e);
         }
     }
 
@@ -186,7 +460,13 @@ public class MemoryCachedLocalStorage implements IMemoryLocalStorage {
             IFlushableLocalStorage flushableStorage = ((IFlushableLocalStorage) cache);
             IFastInsertLocalStorage targetStorage = ((IFastInsertLocalStorage) secondaryStorage);
             synchronized (EVENT_LOCK) {
-                flushableStorage.flushEvents(targetStorage);
+                Set<Long> leasedIds = leasedEventIds.get(getLeaseKey(cache));
+                if (leasedIds == null || leasedIds.isEmpty()) {
+                    flushableStorage.flushEvents(targetStorage);
+                } else {
+                    // Events being sent stay where they are so they can be acknowledged
+                    flushableStorage.flushEvents(targetStorage, leasedIds);
+                }
             }
             synchronized (cacheLock) {
                 flushableStorage.flushCache(targetStorage);
@@ -1,6 +1,7 @@
 package com.swrve.sdk.localstorage;
 
 import com.swrve.sdk.SwrveHelper;
+import com.swrve.sdk.SwrveLogger;
 
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
@@ -16,42 +17,54 @@ import java.util.Map.Entry;
 /**
  * Used internally to provide a volatile storage of data that may be saved later on the device.
  */
-public class MemoryLocalStorage implements ILocalStorage, IFlushableLocalStorage {
+public class MemoryLocalStorage implements ILocalStorage, IFlushableLocalStorage, IBudgetedLocalStorage {
 
-    private static final int MAX_ELEMENTS = 2000;
-    private List<StoredEvent> events = new ArrayList<StoredEvent>();
+    public static final int MAX_ELEMENTS = 2000;
+    private EventRingBuffer events;
     private Map<String, StoredCacheEntry> serverCache = new HashMap<String, StoredCacheEntry>();
+    private long droppedEventCount;
+
+    public MemoryLocalStorage() {
+        this(MAX_ELEMENTS);
+    }
+
+    public MemoryLocalStorage(int maxEvents) {
+        this.events = new EventRingBuffer(maxEvents);
+    }
 
     @Override
     public synchronized void addEvent(String eventJSON) throws Exception {
-        if (events.size() < MAX_ELEMENTS) {
-            StoredEvent newEvent = new StoredEvent();
-            newEvent.event = eventJSON;
-            events.add(newEvent);
+        if (events.add(eventJSON) < 0) {
+            droppedEventCount++;
+            SwrveLogger.w("In-memory event queue is full, event dropped. Total dropped: " + droppedEventCount);
         }
     }
 
+    @Override
+    public synchronized int getEventCount() {
+        return events.size();
+    }
+
+    /**
+     * @return Number of events that were discarded because the queue was full.
+     */
+    public synchronized long getDroppedEventCount() {
+        return droppedEventCount;
+    }
+
     @Override
     public synchronized void removeEventsById(Collection<Long> ids) {
-        Iterator<StoredEvent> iter = events.iterator();
-        while (iter.hasNext()) {
-            StoredEvent event = iter.next();
-            if (ids.contains(event.id))
-                iter.remove();
-        }
+        events.remove(ids);
     }
 
     @Override
     public synchronized LinkedHashMap<Long, String> getFirstNEvents(Integer n) {
-        LinkedHashMap<Long, String> topEvents = new LinkedHashMap<Long, String>();
-        int countLeft = n;
-        Iterator<StoredEvent> iter = events.iterator();
-        while (iter.hasNext() && countLeft > 0) {
-            StoredEvent event = iter.next();
-            topEvents.put(event.id, event.event);
-            countLeft--;
-        }
-        return topEvents;
+        return events.peek(n);
+    }
+
+    @Override
+    public synchronized LinkedHashMap<Long, String> getFirstNEvents(Integer n, long maxBytes, Collection<Long> excludedIds) {
+        return events.peek((n == null) ? Integer.MAX_VALUE : n, maxBytes, excludedIds);
     }
 
     @Override
@@ -124,16 +137,17 @@ public class MemoryLocalStorage implements ILocalStorage, IFlushableLocalStorage
     @Override
     public synchronized void flushEvents(IFastInsertLocalStorage externalStorage) {
         // Exchange events
-        Iterator<StoredEvent> eventIter = events.iterator();
-        List<String> eventsToFlush = new ArrayList<String>();
-        while (eventIter.hasNext()) {
-            StoredEvent event = eventIter.next();
-            eventsToFlush.add(event.event);
-        }
-        externalStorage.addMultipleEvent(eventsToFlush);
+        externalStorage.addMultipleEvent(events.peekAllEvents());
         events.clear();
     }
 
+    @Override
+    public synchronized void flushEvents(IFastInsertLocalStorage externalStorage, Collection<Long> retainedIds) {
+        // Exchange events, keeping the retained ones (i.e. being sent) in memory
+        externalStorage.addMultipleEvent(events.eventsNotIn(retainedIds));
+        events.retain(retainedIds);
+    }
+
     @Override
     public synchronized void flushCache(IFastInsertLocalStorage externalStorage) {
         // Exchange cache
@@ -152,21 +166,11 @@ public class MemoryLocalStorage implements ILocalStorage, IFlushableLocalStorage
     }
 
     @Override
-    public void reset() {
+    public synchronized void reset() {
         events.clear();
         serverCache.clear();
     }
 
-    private static class StoredEvent {
-        public static long eventCount = 0;
-        public long id;
-        public String event;
-
-        public StoredEvent() {
-            this.id = (eventCount++);
-        }
-    }
-
     private static class StoredCacheEntry {
         public String userId;
         public String category;
@@ -17,6 +17,7 @@ import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -28,16 +29,17 @@ import java.util.concurrent.atomic.AtomicBoolean;
 /**
  * Used internally to provide a persistent storage of data on the device.
  */
-public class SQLiteLocalStorage implements ILocalStorage, IFastInsertLocalStorage {
+public class SQLiteLocalStorage implements ILocalStorage, IFastInsertLocalStorage, IBudgetedLocalStorage {
     protected static final String LOG_TAG = "SQLite";
 
     // Database
-    public static final int SWRVE_DB_VERSION = 1;
+    public static final int SWRVE_DB_VERSION = 2;
 
     // Events JSON table
     public static final String TABLE_EVENTS_JSON = "events";
     public static final String COLUMN_ID = "_id";
     public static final String COLUMN_EVENT = "event";
+    public static final String COLUMN_EVENT_LENGTH = "event_length";
 
     // Cache table
     public static final String TABLE_CACHE = "server_cache";
@@ -56,6 +58,10 @@ public class SQLiteLocalStorage implements ILocalStorage, IFastInsertLocalStorag
         this.connectionOpen = new AtomicBoolean(true);
     }
 
+    public String getDatabasePath() {
+        return database.getPath();
+    }
+
     public void addEvent(String eventJSON) throws SQLException {
         addEventAndGetId(eventJSON);
     }
@@ -65,6 +71,7 @@ public class SQLiteLocalStorage implements ILocalStorage, IFastInsertLocalStorag
         if (connectionOpen.get()) {
             ContentValues values = new ContentValues();
             values.put(COLUMN_EVENT, eventJSON);
+            values.put(COLUMN_EVENT_LENGTH, SwrveHelper.utf8Length(eventJSON));
             rowId = database.insertOrThrow(TABLE_EVENTS_JSON, null, values);
         }
         return rowId;
@@ -108,6 +115,60 @@ public class SQLiteLocalStorage implements ILocalStorage, IFastInsertLocalStorag
         return events;
     }
 
+    @Override
+    public LinkedHashMap<Long, String> getFirstNEvents(Integer n, long maxBytes, Collection<Long> excludedIds) {
+        LinkedHashMap<Long, String> events = new LinkedHashMap<Long, String>();
+
+        if (connectionOpen.get()) {
+            // Select the ids using the stored lengths so only the events in the batch are read
+            List<Long> selectedIds = new ArrayList<Long>();
+            Cursor cursor = null;
+            try {
+                String limit = (n == null) ? null : Integer.toString(n + excludedIds.size());
+                cursor = database.query(TABLE_EVENTS_JSON, new String[]{COLUMN_ID, COLUMN_EVENT_LENGTH}, null, null, null, null, COLUMN_ID, limit);
+
+                long bytes = 0;
+                cursor.moveToFirst();
+                while (!cursor.isAfterLast() && (n == null || selectedIds.size() < n)) {
+                    long id = cursor.getLong(0);
+                    if (!excludedIds.contains(id)) {
+                        bytes += cursor.getLong(1);
+                        if (bytes > maxBytes) {
+                            break;
+                        }
+                        selectedIds.add(id);
+                    }
+                    cursor.moveToNext();
+                }
+                cursor.close();
+                cursor = null;
+
+                if (!selectedIds.isEmpty()) {
+                    String firstId = Long.toString(selectedIds.get(0));
+                    String lastId = Long.toString(selectedIds.get(selectedIds.size() - 1));
+                    cursor = database.query(TABLE_EVENTS_JSON, new String[]{COLUMN_ID, COLUMN_EVENT}, COLUMN_ID + " BETWEEN ? AND ?", new String[]{firstId, lastId}, null, null, COLUMN_ID);
+
+                    cursor.moveToFirst();
+                    while (!cursor.isAfterLast()) {
+                        long id = cursor.getLong(0);
+                        if (Collections.binarySearch(selectedIds, id) >= 0) {
+                            events.put(id, cursor.getString(1));
+                        }
+                        cursor.moveToNext();
+                    }
+                }
+            } catch (Exception ex) {
+                SwrveLogger.e(Log.getStackTraceString(ex));
+            } finally {
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+        }
+
+        return events;
+    }
+
     @Override
     public void setCacheEntryForUser(String userId, String category, String rawData) {
         ContentValues values = new ContentValues();
@@ -218,14 +279,16 @@ public class SQLiteLocalStorage implements ILocalStorage, IFastInsertLocalStorag
     @Override
     public void addMultipleEvent(List<String> eventsJSON) throws SQLException {
         if (connectionOpen.get()) {
-            String sql = "INSERT INTO " + TABLE_EVENTS_JSON + " (" + COLUMN_EVENT + ") VALUES (?)";
+            String sql = "INSERT INTO " + TABLE_EVENTS_JSON + " (" + COLUMN_EVENT + ", " + COLUMN_EVENT_LENGTH + ") VALUES (?, ?)";
             database.beginTransaction();
             SQLiteStatement stmt = null;
             try {
                 stmt = database.compileStatement(sql);
                 Iterator<String> eventsIt = eventsJSON.iterator();
                 while (eventsIt.hasNext()) {
-                    stmt.bindString(1, eventsIt.next());
+                    String eventJSON = eventsIt.next();
+                    stmt.bindString(1, eventJSON);
+                    stmt.bindLong(2, SwrveHelper.utf8Length(eventJSON));
                     stmt.execute();
                     stmt.clearBindings();
                 }
@@ -295,14 +358,18 @@ public class SQLiteLocalStorage implements ILocalStorage, IFastInsertLocalStorag
 
         @Override
         public void onCreate(SQLiteDatabase db) {
-            db.execSQL("CREATE TABLE " + TABLE_EVENTS_JSON + " (" + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " + COLUMN_EVENT + " TEXT NOT NULL);");
+            db.execSQL("CREATE TABLE " + TABLE_EVENTS_JSON + " (" + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " + COLUMN_EVENT + " TEXT NOT NULL, " + COLUMN_EVENT_LENGTH + " INTEGER NOT NULL DEFAULT 0);");
 
             db.execSQL("CREATE TABLE " + TABLE_CACHE + " (" + COLUMN_USER_ID + " TEXT NOT NULL, " + COLUMN_CATEGORY + " TEXT NOT NULL, " + COLUMN_RAW_DATA + " TEXT NOT NULL, " + "PRIMARY KEY (" + COLUMN_USER_ID + "," + COLUMN_CATEGORY + "));");
         }
 
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-            // no upgrade in first version
+            if (oldVersion < 2) {
+                // Existing events are measured in characters, close enough for the batch size budget
+                db.execSQL("ALTER TABLE " + TABLE_EVENTS_JSON + " ADD COLUMN " + COLUMN_EVENT_LENGTH + " INTEGER NOT NULL DEFAULT 0;");
+                db.execSQL("UPDATE " + TABLE_EVENTS_JSON + " SET " + COLUMN_EVENT_LENGTH + " = length(" + COLUMN_EVENT + ");");
+            }
         }
 
     }
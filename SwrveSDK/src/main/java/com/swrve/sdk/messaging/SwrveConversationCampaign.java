@@ -98,7 +98,8 @@ public class SwrveConversationCampaign extends SwrveBaseCampaign implements Seri
      */
     public SwrveConversation getConversationForEvent(String event, Map<String, String> payload, Date now, Map<Integer, SwrveCampaignDisplayer.Result> campaignDisplayResult) {
         boolean shouldShowCampaign = campaignDisplayer.shouldShowCampaign(this, event, payload, now, campaignDisplayResult, 1);
-        boolean canShowCampaign = shouldShowCampaign && conversation != null && conversation.areAssetsReady(campaignManager.getAssetsOnDisk());
+        boolean canShowCampaign = shouldShowCampaign && conversation != null
+                && areConversationAssetsReady();
         if (canShowCampaign) {
             SwrveLogger.i(LOG_TAG, event + " matches a trigger in " + id);
             return this.conversation;
@@ -120,4 +121,12 @@ public class SwrveConversationCampaign extends SwrveBaseCampaign implements Seri
     public boolean areAssetsReady(Set<String> assetsOnDisk) {
         return conversation.areAssetsReady(assetsOnDisk);
     }
+
+    // Tracked campaigns know if all their assets are downloaded without checking each one
+    private boolean areConversationAssetsReady() {
+        if (campaignManager.isCampaignTracked(id)) {
+            return campaignManager.areCampaignAssetsReady(id);
+        }
+        return conversation.areAssetsReady(campaignManager.getAssetsOnDisk());
+    }
 }
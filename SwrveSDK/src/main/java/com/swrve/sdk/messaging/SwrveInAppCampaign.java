@@ -49,23 +49,11 @@ public class SwrveInAppCampaign extends SwrveBaseCampaign {
                 SwrveMessage message = createMessage(this, messageData, campaignManager.getCacheDir());
 
                 // If the message has some format
-                List<SwrveMessageFormat> formats = message.getFormats();
-                if (formats != null && formats.size() > 0) {
-                    // Add assets to queue
+                if (!message.getFormatOrientations().isEmpty()) {
+                    // Add all button and background images to the download queue
                     if (assetsQueue != null) {
-                        for (SwrveMessageFormat format : message.getFormats()) {
-                            // Add all images to the download queue
-                            for (SwrveButton button : format.getButtons()) {
-                                if (!SwrveHelper.isNullOrEmpty(button.getImage())) {
-                                    assetsQueue.add(new SwrveAssetsQueueItem(button.getImage(), button.getImage(), true));
-                                }
-                            }
-
-                            for (SwrveImage image : format.getImages()) {
-                                if (!SwrveHelper.isNullOrEmpty(image.getFile())) {
-                                    assetsQueue.add(new SwrveAssetsQueueItem(image.getFile(), image.getFile(), true));
-                                }
-                            }
+                        for (String asset : message.getAssetNames()) {
+                            assetsQueue.add(new SwrveAssetsQueueItem(asset, asset, true));
                         }
                     }
                     addMessage(message);
@@ -136,19 +124,24 @@ public class SwrveInAppCampaign extends SwrveBaseCampaign {
     }
 
     protected SwrveMessage getNextMessage(Map<Integer, Result> campaignDisplayResult) {
+        // Once all the campaign assets are downloaded each message does not need to be checked. While
+        // a tracked campaign is downloading only another of its messages can be ready.
+        boolean campaignTracked = campaignManager.isCampaignTracked(id);
+        boolean campaignReady = campaignTracked && campaignManager.areCampaignAssetsReady(id);
+        boolean checkMessages = !campaignReady && (!campaignTracked || messages.size() > 1);
         if (randomOrder) {
             List<SwrveMessage> randomMessages = new ArrayList<SwrveMessage>(messages);
             Collections.shuffle(randomMessages);
             Iterator<SwrveMessage> itRandom = randomMessages.iterator();
             while (itRandom.hasNext()) {
                 SwrveMessage msg = itRandom.next();
-                if (msg.areAssetsReady(campaignManager.getAssetsOnDisk())) {
+                if (campaignReady || (checkMessages && msg.areAssetsReady(campaignManager.getAssetsOnDisk()))) {
                     return msg;
                 }
             }
         } else if (saveableState.next < messages.size()) {
             SwrveMessage msg = messages.get(saveableState.next);
-            if (msg.areAssetsReady(campaignManager.getAssetsOnDisk())) {
+            if (campaignReady || (checkMessages && msg.areAssetsReady(campaignManager.getAssetsOnDisk()))) {
                 return messages.get(saveableState.next);
             }
         }
@@ -9,12 +9,18 @@ import org.json.JSONObject;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
 /**
  * In-app message inside a campaign, with different formats.
+ *
+ * Messages loaded from JSON keep their formats as JSON text until they are first used, as most
+ * messages are never shown. The orientations and assets of the formats, needed to decide if the
+ * message can be shown, are available without parsing them.
  */
 public class SwrveMessage {
     protected static final String LOG_TAG = "SwrveSDK";
@@ -27,8 +33,14 @@ public class SwrveMessage {
     protected int priority = 9999;
     // Parent in-app campaign
     protected SwrveInAppCampaign campaign;
-    // List of available formats
+    // List of available formats, null until parsed from formatsData
     protected List<SwrveMessageFormat> formats;
+    // JSON of the formats while they have not been parsed
+    private String formatsData;
+    // Orientation of each format in formatsData
+    private List<SwrveOrientation> formatOrientations;
+    // Button and image assets of the formats in formatsData
+    private Set<String> assetNames;
     // Location of the images and button resources
     protected File cacheDir;
 
@@ -58,11 +70,48 @@ public class SwrveMessage {
         JSONObject template = messageData.getJSONObject("template");
         JSONArray jsonFormats = template.getJSONArray("formats");
 
+        // Only read what is needed to select the message, the formats are parsed on first use
+        this.formatOrientations = new ArrayList<SwrveOrientation>(jsonFormats.length());
+        this.assetNames = new LinkedHashSet<String>();
         for (int i = 0, j = jsonFormats.length(); i < j; i++) {
             JSONObject messageFormatData = jsonFormats.getJSONObject(i);
-            SwrveMessageFormat messageFormat = new SwrveMessageFormat(this, messageFormatData);
-            getFormats().add(messageFormat);
+            SwrveOrientation orientation = null;
+            if (messageFormatData.has("orientation")) {
+                orientation = SwrveOrientation.parse(messageFormatData.getString("orientation"));
+            }
+            formatOrientations.add(orientation);
+
+            JSONArray jsonButtons = messageFormatData.getJSONArray("buttons");
+            for (int b = 0, k = jsonButtons.length(); b < k; b++) {
+                addAssetName(jsonButtons.getJSONObject(b).getJSONObject("image_up").getString("value"));
+            }
+            JSONArray jsonImages = messageFormatData.getJSONArray("images");
+            for (int ii = 0, ji = jsonImages.length(); ii < ji; ii++) {
+                addAssetName(jsonImages.getJSONObject(ii).getJSONObject("image").getString("value"));
+            }
         }
+        this.formats = null;
+        this.formatsData = jsonFormats.toString();
+    }
+
+    private void addAssetName(String asset) {
+        if (!SwrveHelper.isNullOrEmpty(asset)) {
+            assetNames.add(asset);
+        }
+    }
+
+    private List<SwrveMessageFormat> parseFormats(String data) {
+        List<SwrveMessageFormat> parsedFormats = new ArrayList<SwrveMessageFormat>();
+        try {
+            JSONArray jsonFormats = new JSONArray(data);
+            for (int i = 0, j = jsonFormats.length(); i < j; i++) {
+                parsedFormats.add(new SwrveMessageFormat(this, jsonFormats.getJSONObject(i)));
+            }
+        } catch (JSONException e) {
+            SwrveLogger.e(LOG_TAG, "Could not load the formats of message " + id, e);
+            parsedFormats.clear();
+        }
+        return parsedFormats;
     }
 
     /**
@@ -101,12 +150,58 @@ public class SwrveMessage {
     /**
      * @return list of message formats for this device.
      */
-    public List<SwrveMessageFormat> getFormats() {
+    public synchronized List<SwrveMessageFormat> getFormats() {
+        if (formats == null && formatsData != null) {
+            formats = parseFormats(formatsData);
+            formatsData = null;
+            formatOrientations = null;
+            assetNames = null;
+        }
         return formats;
     }
 
-    protected void setFormats(List<SwrveMessageFormat> formats) {
+    protected synchronized void setFormats(List<SwrveMessageFormat> formats) {
         this.formats = formats;
+        this.formatsData = null;
+        this.formatOrientations = null;
+        this.assetNames = null;
+    }
+
+    /**
+     * @return the orientation of each format, without parsing the formats.
+     */
+    protected synchronized List<SwrveOrientation> getFormatOrientations() {
+        if (formats == null) {
+            return (formatOrientations == null) ? new ArrayList<SwrveOrientation>() : formatOrientations;
+        }
+        List<SwrveOrientation> orientations = new ArrayList<SwrveOrientation>(formats.size());
+        for (SwrveMessageFormat format : formats) {
+            orientations.add(format.getOrientation());
+        }
+        return orientations;
+    }
+
+    /**
+     * @return the button and image assets of all formats, without parsing the formats.
+     */
+    protected synchronized Collection<String> getAssetNames() {
+        if (formats == null) {
+            return (assetNames == null) ? new LinkedHashSet<String>() : assetNames;
+        }
+        Set<String> names = new LinkedHashSet<String>();
+        for (SwrveMessageFormat format : formats) {
+            for (SwrveButton button : format.getButtons()) {
+                if (!SwrveHelper.isNullOrEmpty(button.getImage())) {
+                    names.add(button.getImage());
+                }
+            }
+            for (SwrveImage image : format.getImages()) {
+                if (!SwrveHelper.isNullOrEmpty(image.getFile())) {
+                    names.add(image.getFile());
+                }
+            }
+        }
+        return names;
     }
 
     /**
@@ -139,6 +234,7 @@ public class SwrveMessage {
      * Message format for the specified orientation.
      */
     public SwrveMessageFormat getFormat(SwrveOrientation orientation) {
+        List<SwrveMessageFormat> formats = getFormats();
         if (formats != null) {
             // Get given orientation
             Iterator<SwrveMessageFormat> itFormats = formats.iterator();
@@ -163,7 +259,7 @@ public class SwrveMessage {
         if (orientation == SwrveOrientation.Both) {
             return true;
         }
-        return (getFormat(orientation) != null);
+        return getFormatOrientations().contains(orientation);
     }
 
     protected boolean assetInCache(Set<String> assetsOnDisk, String asset) {
@@ -174,28 +270,10 @@ public class SwrveMessage {
      * @return true if all assets for this message have been downloaded.
      */
     public boolean areAssetsReady(Set<String> assetsOnDisk) {
-        if (this.formats != null) {
-            Iterator<SwrveMessageFormat> itFormats = formats.iterator();
-            while (itFormats.hasNext()) {
-                SwrveMessageFormat format = itFormats.next();
-
-                Iterator<SwrveButton> itButtons = format.buttons.iterator();
-                while (itButtons.hasNext()) {
-                    String buttonAsset = itButtons.next().getImage();
-                    if (!this.assetInCache(assetsOnDisk, buttonAsset)) {
-                        SwrveLogger.i(LOG_TAG, "Button asset not yet downloaded: " + buttonAsset);
-                        return false;
-                    }
-                }
-
-                Iterator<SwrveImage> itImages = format.images.iterator();
-                while (itImages.hasNext()) {
-                    String imageAsset = itImages.next().getFile();
-                    if (!this.assetInCache(assetsOnDisk, imageAsset)) {
-                        SwrveLogger.i(LOG_TAG, "Image asset not yet downloaded: " + imageAsset);
-                        return false;
-                    }
-                }
+        for (String asset : getAssetNames()) {
+            if (!this.assetInCache(assetsOnDisk, asset)) {
+                SwrveLogger.i(LOG_TAG, "Message asset not yet downloaded: " + asset);
+                return false;
             }
         }
 
@@ -16,6 +16,7 @@ public class Trigger {
 
     private String eventName;
     private Conditions conditions;
+    private transient TriggerPredicate predicate; // compiled from the conditions, not part of the json
 
     public static List<Trigger> fromJson(String json, int id) {
         List<Trigger> triggers = null;
@@ -26,6 +27,7 @@ public class Trigger {
             Type listType = new TypeToken<List<Trigger>>(){}.getType();
             triggers = gson.fromJson(json, listType);
             triggers = validateTriggers(triggers, id);
+            triggers = compileTriggers(triggers, id);
         }catch (JsonParseException ex) {
             SwrveLogger.e(LOG_TAG, "Could not parse campaign[" + id + "] trigger json:" + json, ex);
         }
@@ -65,6 +67,20 @@ public class Trigger {
         return triggers;
     }
 
+    private static List<Trigger> compileTriggers(List<Trigger> triggers, int id) {
+        if (triggers == null) {
+            return null;
+        }
+        for (Trigger trigger : triggers) {
+            trigger.predicate = TriggerPredicate.compile(trigger.getConditions());
+            if (trigger.predicate == null) {
+                SwrveLogger.e(LOG_TAG, "Invalid trigger in campaign[" + id + "] trigger:" + trigger);
+                return null;
+            }
+        }
+        return triggers;
+    }
+
     public String getEventName() {
         return eventName;
     }
@@ -73,6 +89,13 @@ public class Trigger {
         return conditions;
     }
 
+    /**
+     * @return the compiled conditions of the trigger.
+     */
+    public TriggerPredicate getPredicate() {
+        return predicate;
+    }
+
     @Override
     public String toString() {
         return "Trigger{" +
@@ -0,0 +1,159 @@
+package com.swrve.sdk.messaging.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Used internally to match event payloads against the conditions of a trigger.
+ *
+ * Predicates are compiled once from the trigger conditions when the campaigns are loaded. Values
+ * are case folded at that point so that each event only folds the payload values it compares.
+ * New condition operators are added as new subclasses built by compile().
+ */
+public abstract class TriggerPredicate {
+
+    /**
+     * Predicate for triggers without conditions.
+     */
+    public static final TriggerPredicate ALWAYS = new TriggerPredicate() {
+        @Override
+        public boolean matches(Map<String, String> payload) {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "always";
+        }
+    };
+
+    /**
+     * @param payload event payload, can be null.
+     * @return true if the payload satisfies the conditions.
+     */
+    public abstract boolean matches(Map<String, String> payload);
+
+    /**
+     * Compile validated trigger conditions.
+     *
+     * @param conditions trigger conditions.
+     * @return the predicate or null if the conditions are not supported.
+     */
+    public static TriggerPredicate compile(Conditions conditions) {
+        if (conditions == null) {
+            return null;
+        }
+        if (conditions.getOp() == null) {
+            return (conditions.getArgs() == null) ? ALWAYS : null;
+        }
+        switch (conditions.getOp()) {
+            case EQ:
+                return new EqualsPredicate(conditions.getKey(), conditions.getValue());
+            case AND:
+                List<Arg> args = conditions.getArgs();
+                if (args == null || args.isEmpty()) {
+                    return null;
+                }
+                EqualsPredicate[] predicates = new EqualsPredicate[args.size()];
+                for (int i = 0; i < predicates.length; i++) {
+                    Arg arg = args.get(i);
+                    if (!Arg.Op.EQ.equals(arg.getOp())) {
+                        return null;
+                    }
+                    predicates[i] = new EqualsPredicate(arg.getKey(), arg.getValue());
+                }
+                return (predicates.length == 1) ? predicates[0] : new AndPredicate(predicates);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Case folding used to compare values, equivalent to String.equalsIgnoreCase.
+     *
+     * @param value string to fold.
+     * @return the case folded string.
+     */
+    public static String foldCase(String value) {
+        char[] folded = new char[value.length()];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = foldCase(value.charAt(i));
+        }
+        return new String(folded);
+    }
+
+    private static char foldCase(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    // Same result as value.equalsIgnoreCase(original) where folded is foldCase(original)
+    private static boolean equalsFolded(String value, String folded) {
+        int length = folded.length();
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (foldCase(value.charAt(i)) != folded.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class EqualsPredicate extends TriggerPredicate {
+        private final String key;
+        private final String foldedValue;
+
+        private EqualsPredicate(String key, String value) {
+            this.key = key;
+            this.foldedValue = foldCase(value);
+        }
+
+        @Override
+        public boolean matches(Map<String, String> payload) {
+            if (payload == null) {
+                return false;
+            }
+            String value = payload.get(key);
+            return value != null && equalsFolded(value, foldedValue);
+        }
+
+        @Override
+        public String toString() {
+            return key + " eq '" + foldedValue + "'";
+        }
+    }
+
+    private static final class AndPredicate extends TriggerPredicate {
+        private final EqualsPredicate[] predicates;
+
+        private AndPredicate(EqualsPredicate[] predicates) {
+            this.predicates = predicates;
+        }
+
+        @Override
+        public boolean matches(Map<String, String> payload) {
+            if (payload == null) {
+                return false;
+            }
+            for (EqualsPredicate predicate : predicates) {
+                if (!predicate.matches(payload)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < predicates.length; i++) {
+                if (i > 0) {
+                    text.append(" and ");
+                }
+                text.append(predicates[i]);
+            }
+            return text.toString();
+        }
+    }
+}
@@ -57,7 +57,8 @@ public class SwrveInAppMessageActivity extends Activity {
             }
         }
 
-        if (message == null) {
+        // The formats are parsed on first use and can be empty if they were not valid
+        if (message == null || message.getFormats().isEmpty()) {
             finish();
             return;
         }
@@ -2,7 +2,6 @@ package com.swrve.sdk;
 
 import com.swrve.sdk.localstorage.IMemoryLocalStorage;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -14,7 +13,7 @@ import java.util.Random;
  * Used internally to generate JSON batch strings from event data.
  */
 final class EventHelper {
-    private static final Object BATCH_API_VERSION = "2";
+    private static final String BATCH_API_VERSION = "2";
 
     protected synchronized static short getDeviceId(IMemoryLocalStorage storage) {
         String id = storage.getSharedCacheEntry("device_id");
@@ -36,9 +35,17 @@ final class EventHelper {
      * the batch API to inform Swrve of these events.
      */
     public static String eventAsJSON(String type, Map<String, Object> parameters, Map<String, String> payload, int seqnum) throws JSONException {
+        long time = System.currentTimeMillis();
+        if (EventJSONSerializer.canSerialize(parameters, payload, seqnum)) {
+            return EventJSONSerializer.eventAsJSON(type, time, parameters, payload, seqnum);
+        }
+        return eventAsJSONObject(type, time, parameters, payload, seqnum).toString();
+    }
+
+    protected static JSONObject eventAsJSONObject(String type, long time, Map<String, Object> parameters, Map<String, String> payload, int seqnum) throws JSONException {
         JSONObject obj = new JSONObject();
         obj.put("type", type);
-        obj.put("time", System.currentTimeMillis());
+        obj.put("time", time);
         if (seqnum > 0) {
             obj.put("seqnum", seqnum);
         }
@@ -51,37 +58,66 @@ final class EventHelper {
         if (payload != null) {
             obj.put("payload", new JSONObject(payload));
         }
-        return obj.toString();
+        return obj;
     }
 
     /*
      * Generate JSON in the format expected by the batch API to inform Swrve of
-     * these events.
+     * these events. The stored events are already serialized JSON objects, so they
+     * are copied into the batch as they are instead of being parsed again.
      */
     public static String eventsAsBatch(LinkedHashMap<Long, String> events, String userId, String appVersion, String sessionToken, short deviceId) throws JSONException {
-        JSONObject batch = new JSONObject();
-        batch.put("user", userId);
-        batch.put("session_token", sessionToken);
-        batch.put("version", BATCH_API_VERSION);
-        batch.put("app_version", appVersion);
-        batch.put("device_id", deviceId);
-        batch.put("data", orderedMapToJSONArray(events));
+        int capacity = 256;
+        for (String event : events.values()) {
+            capacity += event.length() + 1;
+        }
+        StringBuilder batch = new StringBuilder(capacity);
+        batch.append('{');
+        // Same keys and order as the JSONObject previously used, null values are left out
+        boolean first = appendStringField(batch, "user", userId, true);
+        first = appendStringField(batch, "session_token", sessionToken, first);
+        first = appendStringField(batch, "version", BATCH_API_VERSION, first);
+        appendStringField(batch, "app_version", appVersion, first);
+        batch.append(",\"device_id\":").append(deviceId);
+        batch.append(",\"data\":[");
+        boolean firstEvent = true;
+        for (String event : events.values()) {
+            if (!firstEvent) {
+                batch.append(',');
+            }
+            batch.append(event);
+            firstEvent = false;
+        }
+        batch.append("]}");
         return batch.toString();
     }
 
+    private static boolean appendStringField(StringBuilder json, String name, String value, boolean first) {
+        if (value == null) {
+            return first;
+        }
+        if (!first) {
+            json.append(',');
+        }
+        json.append('"').append(name).append("\":");
+        EventJSONSerializer.appendString(json, value);
+        return false;
+    }
+
     /*
-     * Parse TreeMap of JSON string objects into an array of JSONObjects,
-     * ordered by Map key value. Using TreeMap ensures the keys are ordered.
+     * Events are copied into batches without being parsed, so events that do not come from
+     * eventAsJSON have to be checked once before they are stored.
      */
-    private static JSONArray orderedMapToJSONArray(LinkedHashMap<Long, String> map)
-            throws JSONException {
-        JSONArray obj = new JSONArray();
-
-        for (LinkedHashMap.Entry<Long, String> entry : map.entrySet()) {
-            String value = entry.getValue();
-            obj.put(new JSONObject(value));
+    public static boolean isValidEvent(String eventJSON) {
+        if (eventJSON == null) {
+            return false;
+        }
+        try {
+            new JSONObject(eventJSON);
+            return true;
+        } catch (JSONException e) {
+            return false;
         }
-        return obj;
     }
 
     /*
@@ -0,0 +1,159 @@
+package com.swrve.sdk;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+
+/**
+ * Used internally to write event JSON straight into a reusable buffer.
+ *
+ * The output is the same as building the event with JSONObject and calling toString(): keys are
+ * written in the same order, null parameters are left out and strings and numbers are formatted
+ * the same way. Events whose parameters would need more than that (nested objects, or parameters
+ * overriding the event fields) are left to JSONObject by the caller.
+ */
+final class EventJSONSerializer {
+
+    // Buffers that grew larger than this are not kept for the next event
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(512);
+        }
+    };
+
+    private EventJSONSerializer() {
+    }
+
+    /*
+     * Returns true if the event can be written by this serializer with the same output as JSONObject.
+     */
+    static boolean canSerialize(Map<String, Object> parameters, Map<String, String> payload, int seqnum) {
+        if (parameters == null) {
+            return true;
+        }
+        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+            String key = entry.getKey();
+            if (key == null || key.equals("type") || key.equals("time")
+                    || (seqnum > 0 && key.equals("seqnum")) || (payload != null && key.equals("payload"))) {
+                return false;
+            }
+            Object value = entry.getValue();
+            if (value != null && !(value instanceof String) && !(value instanceof Number) && !(value instanceof Boolean)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String eventAsJSON(String type, long time, Map<String, Object> parameters, Map<String, String> payload, int seqnum) throws JSONException {
+        StringBuilder json = BUFFER.get();
+        json.setLength(0);
+        try {
+            json.append('{');
+            if (type != null) {
+                json.append("\"type\":");
+                appendString(json, type);
+                json.append(',');
+            }
+            json.append("\"time\":").append(time);
+            if (seqnum > 0) {
+                json.append(",\"seqnum\":").append(seqnum);
+            }
+            if (parameters != null) {
+                for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+                    Object value = entry.getValue();
+                    if (value == null) {
+                        continue;
+                    }
+                    json.append(',');
+                    appendString(json, entry.getKey());
+                    json.append(':');
+                    appendValue(json, value);
+                }
+            }
+            if (payload != null) {
+                json.append(",\"payload\":{");
+                boolean first = true;
+                for (Map.Entry<String, String> entry : payload.entrySet()) {
+                    if (entry.getKey() == null) {
+                        throw new NullPointerException("key == null");
+                    }
+                    if (!first) {
+                        json.append(',');
+                    }
+                    appendString(json, entry.getKey());
+                    json.append(':');
+                    if (entry.getValue() == null) {
+                        json.append("null");
+                    } else {
+                        appendString(json, entry.getValue());
+                    }
+                    first = false;
+                }
+                json.append('}');
+            }
+            json.append('}');
+            return json.toString();
+        } finally {
+            if (json.capacity() > MAX_RETAINED_CAPACITY) {
+                BUFFER.remove();
+            }
+        }
+    }
+
+    private static void appendValue(StringBuilder json, Object value) throws JSONException {
+        if (value instanceof String) {
+            appendString(json, (String) value);
+        } else if (value instanceof Number) {
+            json.append(JSONObject.numberToString((Number) value));
+        } else {
+            json.append(value);
+        }
+    }
+
+    /*
+     * Appends the value as a quoted JSON string, escaped like JSONObject.quote.
+     */
+    static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    json.append('\\').append(c);
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                case '\b':
+                    json.append("\\b");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\f':
+                    json.append("\\f");
+                    break;
+                default:
+                    if (c <= 0x1F) {
+                        json.append("\\u00");
+                        json.append(Character.forDigit(c >> 4, 16));
+                        json.append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        json.append(c);
+                    }
+                    break;
+            }
+        }
+        json.append('"');
+    }
+}
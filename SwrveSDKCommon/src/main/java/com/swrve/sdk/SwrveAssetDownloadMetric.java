@@ -0,0 +1,61 @@
+package com.swrve.sdk;
+
+/**
+ * Used internally to record how long an asset took to download and how many bytes were received.
+ */
+class SwrveAssetDownloadMetric {
+
+    private final String name;
+    private final long bytes;
+    private final long resumedBytes;
+    private final long durationMillis;
+    private final boolean success;
+
+    protected SwrveAssetDownloadMetric(String name, long bytes, long resumedBytes, long durationMillis, boolean success) {
+        this.name = name;
+        this.bytes = bytes;
+        this.resumedBytes = resumedBytes;
+        this.durationMillis = durationMillis;
+        this.success = success;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return bytes of the asset received, after decompressing it.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return bytes of the asset already downloaded by an earlier, interrupted, attempt.
+     */
+    public long getResumedBytes() {
+        return resumedBytes;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return true if the asset matched its digest and was stored.
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+
+    @Override
+    public String toString() {
+        return "SwrveAssetDownloadMetric{" +
+                "name='" + name + '\'' +
+                ", bytes=" + bytes +
+                ", resumedBytes=" + resumedBytes +
+                ", durationMillis=" + durationMillis +
+                ", success=" + success +
+                '}';
+    }
+}
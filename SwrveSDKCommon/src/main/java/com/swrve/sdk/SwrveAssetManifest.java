@@ -0,0 +1,210 @@
+package com.swrve.sdk;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.swrve.sdk.SwrveHelper.LOG_TAG;
+
+/**
+ * Used internally to keep track of the assets the SDK stored in the storage dir, with their digest,
+ * size and when they were last needed by a campaign.
+ *
+ * The manifest is persisted in the storage dir so the asset files do not need to be checked at
+ * startup. Only assets in the manifest are ever evicted, as the storage dir is usually shared with
+ * the rest of the app.
+ */
+class SwrveAssetManifest {
+
+    protected static final String FILE_NAME = "swrve_assets.manifest";
+
+    private final File file;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long totalSize;
+    private boolean loaded;
+    private boolean changed;
+
+    static class Entry {
+        final String name;
+        final String digest;
+        final long size;
+        long lastUsed;
+
+        Entry(String name, String digest, long size, long lastUsed) {
+            this.name = name;
+            this.digest = digest;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    protected SwrveAssetManifest(File storageDir) {
+        this.file = new File(storageDir, FILE_NAME);
+    }
+
+    protected synchronized boolean contains(String name) {
+        load();
+        return entries.containsKey(name);
+    }
+
+    protected synchronized Set<String> getNames() {
+        load();
+        return new HashSet<>(entries.keySet());
+    }
+
+    protected synchronized long getTotalSize() {
+        load();
+        return totalSize;
+    }
+
+    protected synchronized void add(String name, String digest, long size, long now) {
+        load();
+        Entry previous = entries.put(name, new Entry(name, digest, size, now));
+        if (previous != null) {
+            totalSize -= previous.size;
+        }
+        totalSize += size;
+        changed = true;
+    }
+
+    /*
+     * Record that a campaign needed the asset.
+     */
+    protected synchronized void touch(String name, long now) {
+        load();
+        Entry entry = entries.get(name);
+        if (entry != null && entry.lastUsed != now) {
+            entry.lastUsed = now;
+            changed = true;
+        }
+    }
+
+    protected synchronized void remove(String name) {
+        load();
+        Entry entry = entries.remove(name);
+        if (entry != null) {
+            totalSize -= entry.size;
+            changed = true;
+        }
+    }
+
+    /*
+     * Assets that are not referenced, least recently used first, to remove so the total size is
+     * at most maxSize. Referenced assets are never returned.
+     */
+    protected synchronized List<String> getEvictionCandidates(long maxSize, Map<String, Integer> references) {
+        load();
+        List<String> candidates = new ArrayList<>();
+        if (totalSize <= maxSize) {
+            return candidates;
+        }
+        List<Entry> unreferenced = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            Integer count = references.get(entry.name);
+            if (count == null || count <= 0) {
+                unreferenced.add(entry);
+            }
+        }
+        Collections.sort(unreferenced, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry lhs, Entry rhs) {
+                return (lhs.lastUsed < rhs.lastUsed) ? -1 : ((lhs.lastUsed == rhs.lastUsed) ? 0 : 1);
+            }
+        });
+        long size = totalSize;
+        for (Entry entry : unreferenced) {
+            if (size <= maxSize) {
+                break;
+            }
+            candidates.add(entry.name);
+            size -= entry.size;
+        }
+        return candidates;
+    }
+
+    /*
+     * Write the manifest if it changed since it was loaded or saved.
+     */
+    protected synchronized void save() {
+        if (!changed) {
+            return;
+        }
+        File tempFile = new File(file.getPath() + ".tmp");
+        Writer out = null;
+        try {
+            out = new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8");
+            for (Entry entry : entries.values()) {
+                out.write(entry.name + "\t" + entry.digest + "\t" + entry.size + "\t" + entry.lastUsed + "\n");
+            }
+            out.close();
+            out = null;
+            if (tempFile.renameTo(file)) {
+                changed = false;
+            } else {
+                SwrveLogger.e(LOG_TAG, "Could not rename " + tempFile);
+            }
+        } catch (IOException e) {
+            SwrveLogger.e(LOG_TAG, "Could not save the assets manifest", e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    SwrveLogger.e(LOG_TAG, "Error closing the assets manifest", e);
+                }
+            }
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!file.exists()) {
+            return;
+        }
+        BufferedReader in = null;
+        try {
+            in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length != 4) {
+                    SwrveLogger.w(LOG_TAG, "Ignoring invalid assets manifest entry:" + line);
+                    continue;
+                }
+                try {
+                    Entry entry = new Entry(fields[0], fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+                    entries.put(entry.name, entry);
+                    totalSize += entry.size;
+                } catch (NumberFormatException e) {
+                    SwrveLogger.w(LOG_TAG, "Ignoring invalid assets manifest entry:" + line);
+                }
+            }
+        } catch (IOException e) {
+            SwrveLogger.e(LOG_TAG, "Could not load the assets manifest", e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    SwrveLogger.e(LOG_TAG, "Error closing the assets manifest", e);
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.swrve.sdk;
 
 import java.io.File;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -32,6 +33,27 @@ interface SwrveAssetsManager {
      */
     File getStorageDir();
 
+    /**
+     * The assets used by each loaded campaign. Assets used by a loaded campaign are never evicted.
+     * @param campaignAssets assets by campaign id.
+     */
+    void setCampaignAssets(Map<Integer, Set<SwrveAssetsQueueItem>> campaignAssets);
+
+    /**
+     * Whether all the assets of a loaded campaign are downloaded, without checking each asset.
+     * @param campaignId id of a campaign passed to setCampaignAssets.
+     * @return true if the campaign assets are ready, false if not or the campaign is not loaded.
+     */
+    boolean areCampaignAssetsReady(int campaignId);
+
+    /**
+     * Whether the assets of a campaign are tracked, so areCampaignAssetsReady is known to be
+     * accurate for it.
+     * @param campaignId id of a campaign.
+     * @return true if the campaign was passed to the last call of setCampaignAssets.
+     */
+    boolean isCampaignTracked(int campaignId);
+
     /**
      * Gets the current set of downloaded assets. (contains both image and font assets)
      * @return a set of assets strings.
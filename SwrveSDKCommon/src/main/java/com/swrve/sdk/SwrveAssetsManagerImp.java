@@ -4,31 +4,88 @@ import android.content.Context;
 
 import com.swrve.sdk.rest.SwrveFilterInputStream;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
 
 import static com.swrve.sdk.SwrveHelper.LOG_TAG;
 
 class SwrveAssetsManagerImp implements SwrveAssetsManager {
 
+    // Partial downloads are kept as <asset>.part, with the expected digest and validator in <asset>.part.info
+    protected static final String PART_SUFFIX = ".part";
+    protected static final String PART_INFO_SUFFIX = ".part.info";
+    // Assets are named after the SHA-1 of their content
+    private static final Pattern ASSET_NAME = Pattern.compile("[0-9a-f]{40}");
+
     protected Set<String> assetsOnDisk = new HashSet<>();
 
     protected final Context context;
     protected String cdnImages;
     protected String cdnFonts;
     protected File storageDir;
+    // Downloads assets in parallel, null when they are downloaded one by one
+    protected ExecutorService downloadExecutor;
+    // Metrics of the assets downloaded by the last call to downloadAssets
+    protected final List<SwrveAssetDownloadMetric> downloadMetrics = new ArrayList<>();
+    // Names of the assets being downloaded, so their partial files are only written once
+    private final Set<String> downloadsInProgress = new HashSet<>();
+    // Assets stored by the SDK in storageDir
+    protected SwrveAssetManifest manifest;
+    // Maximum bytes of assets to keep in storageDir, 0 for no limit
+    protected final long maxCacheSize;
+    // Number of loaded campaigns that use each asset. Guarded by itself.
+    protected final Map<String, Integer> assetReferences = new HashMap<>();
+    // Number of assets each loaded campaign is still missing. Guarded by assetReferences.
+    protected final Map<Integer, Integer> campaignMissingAssets = new HashMap<>();
+    // Loaded campaigns waiting for each missing asset. Guarded by assetReferences.
+    private final Map<String, List<Integer>> campaignsWaitingForAsset = new HashMap<>();
+    private boolean manifestIndexed;
 
     protected SwrveAssetsManagerImp(Context context) {
+        this(context, 1, 0);
+    }
+
+    /*
+     * Downloads up to downloadParallelism assets at the same time. Idle download threads are
+     * stopped after a while so the pool does not need to be shut down. Assets not used by the
+     * loaded campaigns are removed, least recently used first, when storageDir holds more than
+     * maxCacheSize bytes of assets.
+     */
+    protected SwrveAssetsManagerImp(Context context, int downloadParallelism, long maxCacheSize) {
         this.context = context;
+        this.maxCacheSize = maxCacheSize;
+        if (downloadParallelism > 1) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(downloadParallelism, downloadParallelism, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+            executor.allowCoreThreadTimeOut(true);
+            this.downloadExecutor = executor;
+        }
     }
 
     @Override
@@ -44,6 +101,104 @@ class SwrveAssetsManagerImp implements SwrveAssetsManager {
     @Override
     public void setStorageDir(File storageDir) {
         this.storageDir = storageDir;
+        this.manifest = new SwrveAssetManifest(storageDir);
+        synchronized (assetsOnDisk) {
+            manifestIndexed = false;
+        }
+    }
+
+    @Override
+    public void setCampaignAssets(Map<Integer, Set<SwrveAssetsQueueItem>> campaignAssets) {
+        indexManifest();
+        synchronized (assetReferences) {
+            assetReferences.clear();
+            campaignMissingAssets.clear();
+            campaignsWaitingForAsset.clear();
+            for (Map.Entry<Integer, Set<SwrveAssetsQueueItem>> campaign : campaignAssets.entrySet()) {
+                int missingAssets = 0;
+                for (SwrveAssetsQueueItem asset : campaign.getValue()) {
+                    Integer count = assetReferences.get(asset.getName());
+                    assetReferences.put(asset.getName(), (count == null) ? 1 : count + 1);
+                    boolean onDisk;
+                    synchronized (assetsOnDisk) {
+                        onDisk = assetsOnDisk.contains(asset.getName());
+                    }
+                    if (!onDisk) {
+                        missingAssets++;
+                        List<Integer> waiting = campaignsWaitingForAsset.get(asset.getName());
+                        if (waiting == null) {
+                            waiting = new ArrayList<>();
+                            campaignsWaitingForAsset.put(asset.getName(), waiting);
+                        }
+                        waiting.add(campaign.getKey());
+                    }
+                }
+                campaignMissingAssets.put(campaign.getKey(), missingAssets);
+            }
+        }
+    }
+
+    @Override
+    public boolean areCampaignAssetsReady(int campaignId) {
+        synchronized (assetReferences) {
+            Integer missingAssets = campaignMissingAssets.get(campaignId);
+            return missingAssets != null && missingAssets == 0;
+        }
+    }
+
+    @Override
+    public boolean isCampaignTracked(int campaignId) {
+        synchronized (assetReferences) {
+            return campaignMissingAssets.containsKey(campaignId);
+        }
+    }
+
+    /*
+     * Add the assets in the manifest to assetsOnDisk the first time it is needed, so the asset
+     * files do not need to be checked one by one. Android can delete single files from the cache
+     * dir while keeping the manifest, so entries are validated once against a listing of storageDir.
+     */
+    private void indexManifest() {
+        SwrveAssetManifest manifest = this.manifest;
+        if (manifest == null) {
+            return;
+        }
+        synchronized (assetsOnDisk) {
+            if (manifestIndexed) {
+                return;
+            }
+            manifestIndexed = true;
+            String[] fileNames = storageDir.list();
+            Set<String> files = new HashSet<>();
+            if (fileNames != null) {
+                Collections.addAll(files, fileNames);
+            }
+            for (String name : manifest.getNames()) {
+                if (files.contains(name)) {
+                    assetsOnDisk.add(name);
+                } else {
+                    SwrveLogger.i(LOG_TAG, "Asset " + name + " was removed from " + storageDir + ", it will be downloaded again");
+                    manifest.remove(name);
+                }
+            }
+        }
+    }
+
+    /*
+     * Record that an asset is on disk and update the campaigns that were waiting for it.
+     */
+    private void assetStored(String name) {
+        synchronized (assetsOnDisk) {
+            assetsOnDisk.add(name); // store the font name
+        }
+        synchronized (assetReferences) {
+            List<Integer> waiting = campaignsWaitingForAsset.remove(name);
+            if (waiting != null) {
+                for (Integer campaignId : waiting) {
+                    campaignMissingAssets.put(campaignId, campaignMissingAssets.get(campaignId) - 1);
+                }
+            }
+        }
     }
 
     @Override
@@ -77,31 +232,199 @@ class SwrveAssetsManagerImp implements SwrveAssetsManager {
         }
 
         Set<SwrveAssetsQueueItem> assetsToDownload = filterExistingFiles(assetsQueue);
-        for (SwrveAssetsQueueItem assetItem : assetsToDownload) {
-            boolean success = downloadAsset(assetItem);
-            if (success) {
-                synchronized (assetsOnDisk) {
-                    assetsOnDisk.add(assetItem.getName()); // store the font name
+        synchronized (downloadMetrics) {
+            downloadMetrics.clear();
+        }
+        long startTime = System.nanoTime();
+        ExecutorService executor = downloadExecutor;
+        if (executor == null || assetsToDownload.size() < 2) {
+            for (SwrveAssetsQueueItem assetItem : assetsToDownload) {
+                downloadAndStoreAsset(assetItem);
+            }
+        } else {
+            List<Future<?>> downloads = new ArrayList<>(assetsToDownload.size());
+            try {
+                for (final SwrveAssetsQueueItem assetItem : assetsToDownload) {
+                    downloads.add(executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            downloadAndStoreAsset(assetItem);
+                        }
+                    }));
+                }
+                // Wait for all downloads so the callback sees every asset that was stored
+                for (Future<?> download : downloads) {
+                    try {
+                        download.get();
+                    } catch (ExecutionException e) {
+                        SwrveLogger.e(LOG_TAG, "Error downloading asset", e.getCause());
+                    } catch (CancellationException e) {
+                        SwrveLogger.e(LOG_TAG, "Asset download cancelled", e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                SwrveLogger.e(LOG_TAG, "Interrupted while downloading assets", e);
+                Thread.currentThread().interrupt();
+            } finally {
+                for (Future<?> download : downloads) {
+                    download.cancel(true);
                 }
             }
         }
+
+        removeOrphanFiles(assetsToDownload);
+        evictAssets();
+        manifest.save();
+
+        if (!assetsToDownload.isEmpty()) {
+            long totalBytes = 0;
+            for (SwrveAssetDownloadMetric metric : getDownloadMetrics()) {
+                totalBytes += metric.getBytes();
+            }
+            SwrveLogger.i(LOG_TAG, "Downloaded " + assetsToDownload.size() + " assets, " + totalBytes + " bytes in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms");
+        }
     }
 
+    private void downloadAndStoreAsset(SwrveAssetsQueueItem assetItem) {
+        boolean success = downloadAsset(assetItem);
+        if (success) {
+            File file = new File(storageDir, assetItem.getName());
+            manifest.add(assetItem.getName(), assetItem.getDigest(), file.length(), System.currentTimeMillis());
+            assetStored(assetItem.getName());
+        }
+    }
+
+    /*
+     * Remove the files in storageDir that the manifest does not account for and nothing will use:
+     * partial downloads of assets that are stored or that no loaded campaign uses any more and, when
+     * the cache is limited, assets stored before the manifest existed that no loaded campaign uses.
+     * Partial downloads of the assets in the last queue are kept so they can be resumed.
+     */
+    private void removeOrphanFiles(Set<SwrveAssetsQueueItem> assetsQueue) {
+        String[] fileNames = storageDir.list();
+        if (fileNames == null) {
+            return;
+        }
+        Set<String> queued = new HashSet<>();
+        for (SwrveAssetsQueueItem item : assetsQueue) {
+            queued.add(item.getName());
+        }
+        int removed = 0;
+        for (String fileName : fileNames) {
+            boolean partial = true;
+            String name;
+            if (fileName.endsWith(PART_INFO_SUFFIX)) {
+                name = fileName.substring(0, fileName.length() - PART_INFO_SUFFIX.length());
+            } else if (fileName.endsWith(PART_SUFFIX)) {
+                name = fileName.substring(0, fileName.length() - PART_SUFFIX.length());
+            } else if (maxCacheSize > 0) {
+                name = fileName;
+                partial = false;
+            } else {
+                continue;
+            }
+            if (!ASSET_NAME.matcher(name).matches()) {
+                continue;
+            }
+            boolean referenced;
+            synchronized (assetReferences) {
+                referenced = assetReferences.containsKey(name);
+            }
+            boolean orphan;
+            if (partial) {
+                synchronized (downloadsInProgress) {
+                    orphan = !downloadsInProgress.contains(name) && (manifest.contains(name) || (!referenced && !queued.contains(name)));
+                }
+            } else {
+                orphan = !referenced && !manifest.contains(name);
+            }
+            if (orphan) {
+                File file = new File(storageDir, fileName);
+                if (file.delete()) {
+                    removed++;
+                } else {
+                    SwrveLogger.e(LOG_TAG, "Could not delete " + file);
+                }
+            }
+        }
+        if (removed > 0) {
+            SwrveLogger.i(LOG_TAG, "Removed " + removed + " files not used by any campaign from " + storageDir);
+        }
+    }
+
+    /*
+     * Remove the least recently used assets that no loaded campaign uses until the assets fit in
+     * maxCacheSize.
+     */
+    protected void evictAssets() {
+        if (maxCacheSize <= 0) {
+            return;
+        }
+        List<String> evicted;
+        synchronized (assetReferences) {
+            evicted = manifest.getEvictionCandidates(maxCacheSize, assetReferences);
+        }
+        for (String name : evicted) {
+            File file = new File(storageDir, name);
+            if (file.exists() && !file.delete()) {
+                SwrveLogger.e(LOG_TAG, "Could not evict asset " + file);
+                continue;
+            }
+            manifest.remove(name);
+            synchronized (assetsOnDisk) {
+                assetsOnDisk.remove(name);
+            }
+        }
+        if (!evicted.isEmpty()) {
+            SwrveLogger.i(LOG_TAG, "Evicted " + evicted.size() + " unused assets, " + manifest.getTotalSize() + " bytes of assets left");
+        }
+    }
+
+    /*
+     * Time and size of each asset downloaded by the last call to downloadAssets.
+     */
+    protected List<SwrveAssetDownloadMetric> getDownloadMetrics() {
+        synchronized (downloadMetrics) {
+            return new ArrayList<>(downloadMetrics);
+        }
+    }
+
+    /*
+     * Removes the assets already stored from the queue. Assets in the manifest are not checked on
+     * disk, only the ones that are not are looked for in case they were stored before the manifest
+     * existed.
+     */
     protected Set<SwrveAssetsQueueItem> filterExistingFiles(Set<SwrveAssetsQueueItem> assetsQueue) {
+        indexManifest();
+        long now = System.currentTimeMillis();
         Iterator<SwrveAssetsQueueItem> itDownloadQueue = assetsQueue.iterator();
         while (itDownloadQueue.hasNext()) {
             SwrveAssetsQueueItem item = itDownloadQueue.next();
-            File file = new File(storageDir, item.getName());
-            if (file.exists()) {
-                itDownloadQueue.remove();
-                synchronized (assetsOnDisk) {
-                    assetsOnDisk.add(item.getName()); // store the font name
+            boolean stored = manifest.contains(item.getName());
+            if (stored) {
+                manifest.touch(item.getName(), now);
+            } else {
+                File file = new File(storageDir, item.getName());
+                if (file.exists()) {
+                    manifest.add(item.getName(), item.getDigest(), file.length(), now);
+                    stored = true;
                 }
             }
+            if (stored) {
+                itDownloadQueue.remove();
+                assetStored(item.getName());
+            }
         }
         return assetsQueue;
     }
 
+    /*
+     * Streams the asset into <asset>.part in storageDir while computing its digest, and only
+     * renames it to the asset name if the digest matches. If the download is interrupted the
+     * partial file is kept and the next attempt asks the server for the rest of it with a Range
+     * request. Servers that do not support ranges, or where the asset changed, send the whole
+     * asset again.
+     */
     protected boolean downloadAsset(final SwrveAssetsQueueItem assetItem) {
         boolean success = false;
         String cdnRoot = assetItem.isImage() ? cdnImages : cdnFonts;
@@ -109,34 +432,84 @@ class SwrveAssetsManagerImp implements SwrveAssetsManager {
             SwrveLogger.e(LOG_TAG, "Error downloading asset. No cdn url for " + assetItem);
             return success;
         }
+        synchronized (downloadsInProgress) {
+            if (!downloadsInProgress.add(assetItem.getName())) {
+                SwrveLogger.i(LOG_TAG, "Asset already being downloaded:" + assetItem);
+                return success;
+            }
+        }
 
         String url = cdnRoot + assetItem.getName();
+        File partFile = new File(storageDir, assetItem.getName() + PART_SUFFIX);
+        File partInfoFile = new File(storageDir, assetItem.getName() + PART_INFO_SUFFIX);
+        long startTime = System.nanoTime();
+        long bytes = 0;
+        long resumedBytes = 0;
+        boolean keepPart = false;
         InputStream inputStream = null;
+        OutputStream fileStream = null;
         try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA1");
+            String validator = readPartValidator(partFile, partInfoFile, assetItem.getDigest());
+            long partLength = (validator == null) ? 0 : partFile.length();
+
             URLConnection openConnection = new URL(url).openConnection();
-            openConnection.setRequestProperty("Accept-Encoding", "gzip");
+            if (partLength > 0) {
+                // Ranges are of the encoded body, so resume without compression
+                openConnection.setRequestProperty("Range", "bytes=" + partLength + "-");
+                openConnection.setRequestProperty("If-Range", validator);
+            } else {
+                openConnection.setRequestProperty("Accept-Encoding", "gzip");
+            }
 
+            keepPart = partLength > 0; // keep it if the server cannot be reached
+            if (partLength > 0 && openConnection instanceof HttpURLConnection && ((HttpURLConnection) openConnection).getResponseCode() == 416) {
+                keepPart = false; // Range Not Satisfiable, the partial file is not usable
+                throw new IOException("Could not resume from " + partLength + " bytes");
+            }
             inputStream = new SwrveFilterInputStream(openConnection.getInputStream());
+            keepPart = false;
+
+            boolean resumed = partLength > 0 && isRangeResponse(openConnection, partLength);
+            if (resumed) {
+                digestFile(partFile, sha1);
+                resumedBytes = partLength;
+            } else {
+                validator = getValidator(openConnection);
+                writePartInfo(partInfoFile, assetItem.getDigest(), validator);
+            }
 
             // Support gzip if possible
+            long expectedBytes = openConnection.getContentLength();
             String encoding = openConnection.getContentEncoding();
             if (encoding != null && encoding.toLowerCase(Locale.ENGLISH).indexOf("gzip") != -1) {
                 inputStream = new GZIPInputStream(inputStream);
+                expectedBytes = -1;
             }
 
-            ByteArrayOutputStream stream = new ByteArrayOutputStream();
-            byte[] buffer = new byte[2048];
+            inputStream = new DigestInputStream(inputStream, sha1);
+            fileStream = new FileOutputStream(partFile, resumed);
+            keepPart = (validator != null); // can be resumed if interrupted from now on
+            byte[] buffer = new byte[8192];
             int bytesRead;
             while ((bytesRead = inputStream.read(buffer)) != -1) {
-                stream.write(buffer, 0, bytesRead);
+                fileStream.write(buffer, 0, bytesRead);
+                bytes += bytesRead;
+            }
+            fileStream.close();
+            fileStream = null;
+            if (expectedBytes >= 0 && bytes != expectedBytes) {
+                throw new IOException("Received " + bytes + " bytes of " + expectedBytes);
             }
-            byte[] fileContents = stream.toByteArray();
-            String sha1File = SwrveHelper.sha1(fileContents);
+            keepPart = false;
+
+            String sha1File = (resumedBytes + bytes == 0) ? null : SwrveHelper.toHexDigest(sha1.digest());
             if (assetItem.getDigest().equals(sha1File)) {
-                FileOutputStream fileStream = new FileOutputStream(new File(storageDir, assetItem.getName()));
-                fileStream.write(fileContents); // Save to file
-                fileStream.close();
-                success = true;
+                if (partFile.renameTo(new File(storageDir, assetItem.getName()))) {
+                    success = true;
+                } else {
+                    SwrveLogger.e(LOG_TAG, "Error downloading assetItem:" + assetItem + ". Could not rename " + partFile);
+                }
             } else {
                 SwrveLogger.e(LOG_TAG, "Error downloading assetItem:" + assetItem + ". Did not match digest:" + sha1File);
             }
@@ -150,7 +523,113 @@ class SwrveAssetsManagerImp implements SwrveAssetsManager {
                     SwrveLogger.e(LOG_TAG, "Error closing assets stream.", e);
                 }
             }
+            if (fileStream != null) {
+                try {
+                    fileStream.close();
+                } catch (Exception e) {
+                    SwrveLogger.e(LOG_TAG, "Error closing asset file.", e);
+                }
+            }
+            if (!keepPart) {
+                deleteFile(partFile);
+                deleteFile(partInfoFile);
+            }
+            synchronized (downloadsInProgress) {
+                downloadsInProgress.remove(assetItem.getName());
+            }
         }
+
+        SwrveAssetDownloadMetric metric = new SwrveAssetDownloadMetric(assetItem.getName(), bytes, resumedBytes, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), success);
+        synchronized (downloadMetrics) {
+            downloadMetrics.add(metric);
+        }
+        SwrveLogger.d(LOG_TAG, "Asset download " + metric);
         return success;
     }
-}
\ No newline at end of file
+
+    /*
+     * The validator of a partial download that can be resumed, or null after removing any
+     * partial download that cannot.
+     */
+    private String readPartValidator(File partFile, File partInfoFile, String digest) {
+        if (partFile.exists() && partInfoFile.exists()) {
+            InputStream in = null;
+            try {
+                in = new FileInputStream(partInfoFile);
+                String partInfo = SwrveHelper.readStringFromInputStream(in);
+                int separator = partInfo.indexOf(' ');
+                if (separator > 0 && partInfo.substring(0, separator).equals(digest)) {
+                    return partInfo.substring(separator + 1);
+                }
+            } catch (IOException e) {
+                SwrveLogger.e(LOG_TAG, "Could not read " + partInfoFile, e);
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        SwrveLogger.e(LOG_TAG, "Error closing " + partInfoFile, e);
+                    }
+                }
+            }
+        }
+        deleteFile(partFile);
+        deleteFile(partInfoFile);
+        return null;
+    }
+
+    private void writePartInfo(File partInfoFile, String digest, String validator) throws IOException {
+        if (validator == null) {
+            // The server gave nothing to check the asset did not change, so it cannot be resumed
+            deleteFile(partInfoFile);
+            return;
+        }
+        OutputStream out = new FileOutputStream(partInfoFile);
+        try {
+            out.write((digest + " " + validator).getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    /*
+     * Strong ETag or Last-Modified date of the response, which If-Range accepts.
+     */
+    private String getValidator(URLConnection connection) {
+        String etag = connection.getHeaderField("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return connection.getHeaderField("Last-Modified");
+    }
+
+    private boolean isRangeResponse(URLConnection connection, long partLength) throws IOException {
+        if (!(connection instanceof HttpURLConnection) || ((HttpURLConnection) connection).getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+            return false; // the server sent the whole asset
+        }
+        String contentRange = connection.getHeaderField("Content-Range");
+        if (contentRange == null || !contentRange.startsWith("bytes " + partLength + "-")) {
+            throw new IOException("Unexpected Content-Range " + contentRange + " resuming from " + partLength);
+        }
+        return true;
+    }
+
+    private void digestFile(File file, MessageDigest digest) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, bytesRead);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            SwrveLogger.e(LOG_TAG, "Could not delete " + file);
+        }
+    }
+}
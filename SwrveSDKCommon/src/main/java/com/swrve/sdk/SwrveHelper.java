@@ -95,16 +95,7 @@ public final class SwrveHelper {
         } else {
             try {
                 MessageDigest sha1 = MessageDigest.getInstance("SHA1");
-                byte[] hash = sha1.digest(bytesOfMessage);
-
-                StringBuilder hexDigest = new StringBuilder();
-                for (int i = 0; i < hash.length; i++) {
-                    if ((0xFF & hash[i]) < 0x10) {
-                        hexDigest.append("0");
-                    }
-                    hexDigest.append(Integer.toHexString(0xFF & hash[i]));
-                }
-                return hexDigest.toString();
+                return toHexDigest(sha1.digest(bytesOfMessage));
             } catch (NoSuchAlgorithmException nsae) {
                 SwrveLogger.wtf(LOG_TAG, "Couldn't find SHA1 - what a strange JVM", nsae);
                 return "";
@@ -112,6 +103,20 @@ public final class SwrveHelper {
         }
     }
 
+    /*
+     * Lowercase hex representation of a digest, as used for asset names and digests.
+     */
+    public static String toHexDigest(byte[] hash) {
+        StringBuilder hexDigest = new StringBuilder();
+        for (int i = 0; i < hash.length; i++) {
+            if ((0xFF & hash[i]) < 0x10) {
+                hexDigest.append("0");
+            }
+            hexDigest.append(Integer.toHexString(0xFF & hash[i]));
+        }
+        return hexDigest.toString();
+    }
+
     /*
      * Convert from JSONObject to Map.
      */
@@ -182,6 +187,27 @@ public final class SwrveHelper {
         return body.toString();
     }
 
+    /*
+     * Number of bytes the text takes encoded as UTF-8, without encoding it.
+     */
+    public static int utf8Length(CharSequence text) {
+        int length = 0;
+        for (int i = 0, size = text.length(); i < size; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
     public static String createHMACWithMD5(String source, String key) throws NoSuchAlgorithmException, InvalidKeyException {
         Mac hmac = Mac.getInstance("HmacMD5");
         SecretKeySpec secretKey = new SecretKeySpec(key.getBytes(), hmac.getAlgorithm());
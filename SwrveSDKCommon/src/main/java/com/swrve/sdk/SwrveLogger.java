@@ -152,6 +152,17 @@ public class SwrveLogger {
         return SwrveLogger.logLevel;
     }
 
+    /**
+     * @return true if messages of the given priority (i.e. Log.INFO) would be logged. Used to avoid
+     * building log messages that would be discarded.
+     */
+    public static boolean isLoggable(int priority) {
+        if (!logLevelSet) {
+            plantSwrveLogger();
+        }
+        return priority >= logLevel;
+    }
+
     public static void setLogLevel(int logLevel) {
         SwrveLogger.logLevel = logLevel;
         SwrveLogger.logLevelSet = true;
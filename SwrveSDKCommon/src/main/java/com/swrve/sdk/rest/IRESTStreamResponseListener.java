@@ -0,0 +1,26 @@
+package com.swrve.sdk.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Used internally to define an interface to handle REST client responses without reading the
+ * whole body into memory first.
+ *
+ * Clients that support streaming call onResponse with the body stream for successful responses.
+ * Other responses, and clients that do not support streaming, use onResponse(RESTResponse).
+ */
+public interface IRESTStreamResponseListener extends IRESTResponseListener {
+
+    /**
+     * Called while the connection is still open. The stream is closed by the client afterwards.
+     *
+     * @param responseCode HTTP response code.
+     * @param body response body, already decompressed.
+     * @param responseHeaders response headers.
+     * @throws IOException if the body could not be read.
+     */
+    void onResponse(int responseCode, InputStream body, Map<String, List<String>> responseHeaders) throws IOException;
+}
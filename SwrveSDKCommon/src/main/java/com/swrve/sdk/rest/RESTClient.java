@@ -6,6 +6,7 @@ import com.swrve.sdk.SwrveHelper;
 import com.swrve.sdk.SwrveLogger;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -15,11 +16,15 @@ import java.net.MalformedURLException;
 import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Used internally to implement an object capable to perform REST requests.
@@ -30,7 +35,11 @@ public class RESTClient implements IRESTClient {
     private static final String CHARSET = "UTF-8";
     private static final String COMMA_SEPARATOR = ", ", SEMICOLON_SEPARATOR = "; ";
 
+    public static final String CONTENT_ENCODING_GZIP = "gzip";
+    public static final String CONTENT_ENCODING_DEFLATE = "deflate";
+
     private final int httpTimeout;
+    private final Map<String, String> contentEncodings;
 
     /**
      * Safeguarded against multiple writers
@@ -39,7 +48,20 @@ public class RESTClient implements IRESTClient {
     private static List<String> metrics = new ArrayList<String>();
 
     public RESTClient(int httpTimeout) {
+        this(httpTimeout, null);
+    }
+
+    /*
+     * contentEncodings maps endpoint paths (i.e. /1/batch) to the encoding used to compress the
+     * body of POST requests to them.
+     */
+    public RESTClient(int httpTimeout, Map<String, String> contentEncodings) {
         this.httpTimeout = httpTimeout;
+        if (contentEncodings == null || contentEncodings.isEmpty()) {
+            this.contentEncodings = Collections.emptyMap();
+        } else {
+            this.contentEncodings = Collections.unmodifiableMap(new HashMap<String, String>(contentEncodings));
+        }
     }
 
     public void get(String endpoint, IRESTResponseListener callback) {
@@ -48,6 +70,7 @@ public class RESTClient implements IRESTClient {
         int responseCode = HttpURLConnection.HTTP_UNAVAILABLE;
         long connectTime = 0, responseHeaderTime = 0, responseBodyTime = 0;
         boolean isTimeout = false;
+        boolean streamed = false;
 
         InputStream wrapperIn = null;
         try {
@@ -89,7 +112,13 @@ public class RESTClient implements IRESTClient {
                 in = new BufferedInputStream(errorStream);
             }
             wrapperIn = new SwrveFilterInputStream(in);
-            responseBody = SwrveHelper.readStringFromInputStream(wrapperIn);
+            if (errorStream == null && callback instanceof IRESTStreamResponseListener) {
+                // Hand the body to the listener as it arrives instead of buffering it
+                streamed = true;
+                ((IRESTStreamResponseListener) callback).onResponse(responseCode, wrapperIn, urlConnection.getHeaderFields());
+            } else {
+                responseBody = SwrveHelper.readStringFromInputStream(wrapperIn);
+            }
 
             responseBodyTime = milisecondsFrom(start);
         } catch (Exception e) {
@@ -114,7 +143,7 @@ public class RESTClient implements IRESTClient {
             }
             recordGetMetrics(endpoint, connectTime, responseHeaderTime, responseBodyTime, isTimeout);
         }
-        if (callback != null) {
+        if (callback != null && !streamed) {
             RESTResponse response = new RESTResponse(responseCode, responseBody, urlConnection.getHeaderFields());
             callback.onResponse(response);
         }
@@ -143,6 +172,10 @@ public class RESTClient implements IRESTClient {
         try {
             byte[] bytes = encodedBody.getBytes("UTF-8");
             URL url = new URL(endpoint);
+            String contentEncoding = getContentEncoding(url);
+            if (contentEncoding != null) {
+                bytes = compress(bytes, contentEncoding);
+            }
             urlConnection = (HttpURLConnection) url.openConnection();
             urlConnection.setReadTimeout(httpTimeout);
             urlConnection.setConnectTimeout(httpTimeout);
@@ -150,6 +183,9 @@ public class RESTClient implements IRESTClient {
             urlConnection.setRequestProperty("Content-Type", contentType);
             urlConnection.setRequestProperty("Accept-Charset", CHARSET);
             urlConnection.setRequestProperty("Connection", "close");
+            if (contentEncoding != null) {
+                urlConnection.setRequestProperty("Content-Encoding", contentEncoding);
+            }
             urlConnection.setFixedLengthStreamingMode(bytes.length);
             urlConnection.setDoOutput(true);
             urlConnection.setDoInput(true);
@@ -206,6 +242,41 @@ public class RESTClient implements IRESTClient {
         }
     }
 
+    private String getContentEncoding(URL url) {
+        if (contentEncodings.isEmpty()) {
+            return null;
+        }
+        String path = url.getPath();
+        for (Map.Entry<String, String> contentEncoding : contentEncodings.entrySet()) {
+            // The endpoint can be behind a custom base path
+            if (path.endsWith(contentEncoding.getKey())) {
+                return contentEncoding.getValue();
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Compress the whole body first so it can still be sent with a fixed length
+     */
+    private byte[] compress(byte[] bytes, String contentEncoding) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+        OutputStream compressor;
+        if (CONTENT_ENCODING_GZIP.equals(contentEncoding)) {
+            compressor = new GZIPOutputStream(buffer);
+        } else if (CONTENT_ENCODING_DEFLATE.equals(contentEncoding)) {
+            compressor = new DeflaterOutputStream(buffer);
+        } else {
+            throw new IllegalArgumentException("Unsupported content encoding " + contentEncoding);
+        }
+        try {
+            compressor.write(bytes);
+        } finally {
+            compressor.close();
+        }
+        return buffer.toByteArray();
+    }
+
     /*
      * Print a sorted list with a custom separator
      */
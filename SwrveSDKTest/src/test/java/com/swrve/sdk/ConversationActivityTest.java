@@ -174,7 +174,7 @@ public class ConversationActivityTest extends SwrveBaseTest {
 
         Robolectric.flushForegroundThreadScheduler(); // allow tasks that added to ui thread to run (like activity.runOnUiThread)
 
-        assertNotNull(swrveSpy.campaigns);
+        assertNotNull(swrveSpy.campaignsSnapshot.getCampaigns());
         // Campaign will be displayed on SDK init!
         // Next activity started should be the ConversationActivity
         ShadowActivity shadowMainActivity = Shadows.shadowOf(mActivity);
@@ -183,13 +183,13 @@ public class ConversationActivityTest extends SwrveBaseTest {
         assertEquals(nextIntent.getComponent(), new ComponentName(mActivity, ConversationActivity.class));
 
         // Impressions should have increased by 1
-        assertEquals(1, swrveSpy.campaigns.get(0).getImpressions());
+        assertEquals(1, swrveSpy.campaignsSnapshot.getCampaigns().get(0).getImpressions());
     }
 
     @Test
     public void testConversationWidths() throws Exception {
         SwrveTestUtils.loadCampaignsFromFile(mActivity, swrveSpy, "conversation_campaign.json", "8d4f969706e6bf2aa344d6690496ecfdefc89f1f", "2617fb3c279e30dd7c180de8679a2e2d33cf3552");
-        assertNotNull(swrveSpy.campaigns);
+        assertNotNull(swrveSpy.campaignsSnapshot.getCampaigns());
         SwrveConversation conversation = swrveSpy.getConversationForEvent("swrve.messages.showatsessionstart", new HashMap<String, String>());
         assertNotNull(conversation);
 
@@ -166,7 +166,7 @@ public class ConversationUnitTest extends SwrveBaseTest {
     public void testConversationImageAssetsDownload() throws Exception {
         SwrveTestUtils.loadCampaignsFromFile(mActivity, swrveSpy, "conversation_campaign_v3.json", "8d4f969706e6bf2aa344d6690496ecfdefc89f1f", "2617fb3c279e30dd7c180de8679a2e2d33cf3552");
 
-        SwrveBaseCampaign swrveCampaign = swrveSpy.campaigns.get(0);
+        SwrveBaseCampaign swrveCampaign = swrveSpy.campaignsSnapshot.getCampaigns().get(0);
         assertTrue(swrveCampaign instanceof SwrveConversationCampaign);
         SwrveConversation conversation = ((SwrveConversationCampaign) swrveCampaign).getConversation();
         assertEquals(conversation.getCampaign().getId(), swrveCampaign.getId());
@@ -195,9 +195,9 @@ public class ConversationUnitTest extends SwrveBaseTest {
     public void testConversationCallActionCalledByUser() throws Exception {
         SwrveTestUtils.loadCampaignsFromFile(mActivity, swrveSpy, "conversation_campaign.json", "8d4f969706e6bf2aa344d6690496ecfdefc89f1f");
 
-        assertNotNull(swrveSpy.campaigns);
-        assertThat(swrveSpy.campaigns.size(), equalTo(1));
-        SwrveBaseCampaign swrveCampaign = swrveSpy.campaigns.get(0);
+        assertNotNull(swrveSpy.campaignsSnapshot.getCampaigns());
+        assertThat(swrveSpy.campaignsSnapshot.getCampaigns().size(), equalTo(1));
+        SwrveBaseCampaign swrveCampaign = swrveSpy.campaignsSnapshot.getCampaigns().get(0);
         assertTrue(swrveCampaign instanceof SwrveConversationCampaign);
         SwrveConversation conversation = ((SwrveConversationCampaign) swrveCampaign).getConversation();
         SwrveConversationEventHelper conversationEventHelper = new SwrveConversationEventHelper();
@@ -382,18 +382,18 @@ public class ConversationUnitTest extends SwrveBaseTest {
     @Test
     public void testSwrveConversationVersionFiltered() throws Exception {
         SwrveTestUtils.loadCampaignsFromFile(mActivity, swrveSpy, "conversation_campaign_versions.json");
-        assertNotNull(swrveSpy.campaigns);
+        assertNotNull(swrveSpy.campaignsSnapshot.getCampaigns());
         // One campaign with no version (defaulted to 1), another campaign with v1, and another high version is not loaded
         assertThat("Only 2 valid conversations can be parsed in this test. The raw json used in this test should contain one conversation that should not be parsed.\n " +
-                "If current feature increments the version, then be sure the raw json in this test gets incremented also.", swrveSpy.campaigns.size(), equalTo(2));
+                "If current feature increments the version, then be sure the raw json in this test gets incremented also.", swrveSpy.campaignsSnapshot.getCampaigns().size(), equalTo(2));
     }
 
     @Test
     public void testSwrveConversationDeviceFiltered() throws Exception {
         SwrveTestUtils.loadCampaignsFromFile(mActivity, swrveSpy, "conversation_campaign_filters.json");
-        assertNotNull(swrveSpy.campaigns);
+        assertNotNull(swrveSpy.campaignsSnapshot.getCampaigns());
         // One with no requirements, another with "android" and a campaign with "ios_permissions" that will be rejected.
-        assertThat(swrveSpy.campaigns.size(), equalTo(2));
+        assertThat(swrveSpy.campaignsSnapshot.getCampaigns().size(), equalTo(2));
     }
 
     private SwrveConversation getMockSwrveConversation(int id) {
@@ -0,0 +1,191 @@
+package com.swrve.sdk;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventHelperTest extends SwrveBaseTest {
+
+    @Test
+    public void testEventsAsBatchMatchesParsedBatch() throws Exception {
+        LinkedHashMap<Long, String> events = createEvents(20);
+        String batch = EventHelper.eventsAsBatch(events, "user \"1\"", "1.0", "token\n", (short) 42);
+        String parsedBatch = parsedBatch(events, "user \"1\"", "1.0", "token\n", (short) 42);
+
+        JSONObject batchJSON = new JSONObject(batch);
+        assertEquals(parsedBatch, batchJSON.toString());
+        assertEquals("user \"1\"", batchJSON.getString("user"));
+        assertEquals("2", batchJSON.getString("version"));
+        assertEquals(42, batchJSON.getInt("device_id"));
+        assertEquals(20, batchJSON.getJSONArray("data").length());
+    }
+
+    @Test
+    public void testEventsAsBatchWithoutOptionalValues() throws Exception {
+        LinkedHashMap<Long, String> events = createEvents(1);
+        String batch = EventHelper.eventsAsBatch(events, null, null, null, (short) 1);
+        assertEquals(parsedBatch(events, null, null, null, (short) 1), new JSONObject(batch).toString());
+
+        batch = EventHelper.eventsAsBatch(new LinkedHashMap<Long, String>(), "user", "1.0", "token", (short) 1);
+        assertEquals(0, new JSONObject(batch).getJSONArray("data").length());
+    }
+
+    @Test
+    public void testIsValidEvent() {
+        assertTrue(EventHelper.isValidEvent("{\"type\":\"event\",\"name\":\"a\"}"));
+        assertFalse(EventHelper.isValidEvent("{\"type\":\"event\","));
+        assertFalse(EventHelper.isValidEvent("[]"));
+        assertFalse(EventHelper.isValidEvent(null));
+    }
+
+    @Test
+    public void testEventsAsBatchBenchmark() throws Exception {
+        LinkedHashMap<Long, String> events = createEvents(50);
+        int iterations = 2000;
+        // Warm up both paths before measuring
+        for (int i = 0; i < 200; i++) {
+            EventHelper.eventsAsBatch(events, "user", "1.0", "token", (short) 1);
+            parsedBatch(events, "user", "1.0", "token", (short) 1);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            parsedBatch(events, "user", "1.0", "token", (short) 1);
+        }
+        long parsedTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            EventHelper.eventsAsBatch(events, "user", "1.0", "token", (short) 1);
+        }
+        long splicedTime = System.nanoTime() - start;
+
+        // Only logged, comparing the timings would be flaky on a loaded machine
+        SwrveLogger.i("Batch of 50 events: parsed %d us, spliced %d us per batch", parsedTime / iterations / 1000, splicedTime / iterations / 1000);
+        String batch = EventHelper.eventsAsBatch(events, "user", "1.0", "token", (short) 1);
+        assertEquals(parsedBatch(events, "user", "1.0", "token", (short) 1), new JSONObject(batch).toString());
+    }
+
+    @Test
+    public void testEventAsJSONMatchesJSONObject() throws Exception {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("name", "quote\" slash/ backslash\\ \t\b\n\r\f \u0001\u001f \u2028 é中");
+        parameters.put("int", 12);
+        parameters.put("long", 1500000000000L);
+        parameters.put("double", 1.5);
+        parameters.put("whole_double", 3.0);
+        parameters.put("float", 0.1f);
+        parameters.put("negative_zero", -0.0);
+        parameters.put("boolean", true);
+        parameters.put("null", null);
+        Map<String, String> payload = new LinkedHashMap<>();
+        payload.put("key/1", "value\n");
+        payload.put("empty", "");
+        payload.put("null", null);
+
+        assertSameAsJSONObject("event", parameters, payload, 7);
+        assertSameAsJSONObject("event", parameters, null, 0);
+        assertSameAsJSONObject("session_start", null, null, 1);
+        assertSameAsJSONObject(null, null, new HashMap<String, String>(), 1);
+        assertSameAsJSONObject("event", new HashMap<String, Object>(), payload, -1);
+    }
+
+    @Test
+    public void testEventAsJSONFallsBackToJSONObject() throws Exception {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("time", 5);
+        assertFalse(EventJSONSerializer.canSerialize(parameters, null, 1));
+        assertEquals(5, new JSONObject(EventHelper.eventAsJSON("event", parameters, 1)).getInt("time"));
+
+        parameters.clear();
+        parameters.put("attributes", new JSONObject().put("a", 1));
+        assertFalse(EventJSONSerializer.canSerialize(parameters, null, 1));
+        assertEquals(1, new JSONObject(EventHelper.eventAsJSON("user", parameters, 1)).getJSONObject("attributes").getInt("a"));
+
+        parameters.clear();
+        parameters.put("seqnum", 3);
+        assertTrue(EventJSONSerializer.canSerialize(parameters, null, 0));
+        assertFalse(EventJSONSerializer.canSerialize(parameters, null, 1));
+    }
+
+    @Test
+    public void testEventAsJSONAllocationBenchmark() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("name", "level.complete");
+        Map<String, String> payload = new HashMap<>();
+        for (int i = 0; i < 5; i++) {
+            payload.put("key" + i, "value" + i);
+        }
+        int iterations = 5000;
+        long threadId = Thread.currentThread().getId();
+        // Warm up both paths before measuring
+        for (int i = 0; i < 500; i++) {
+            EventHelper.eventAsJSONObject("event", 1500000000000L, parameters, payload, i + 1).toString();
+            EventJSONSerializer.eventAsJSON("event", 1500000000000L, parameters, payload, i + 1);
+        }
+
+        long start = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            EventHelper.eventAsJSONObject("event", 1500000000000L, parameters, payload, i + 1).toString();
+        }
+        long jsonObjectBytes = (threadBean.getThreadAllocatedBytes(threadId) - start) / iterations;
+
+        start = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            EventJSONSerializer.eventAsJSON("event", 1500000000000L, parameters, payload, i + 1);
+        }
+        long serializerBytes = (threadBean.getThreadAllocatedBytes(threadId) - start) / iterations;
+
+        SwrveLogger.i("Bytes allocated per event: JSONObject %d, serializer %d", jsonObjectBytes, serializerBytes);
+        assertTrue("Serializer allocated " + serializerBytes + " bytes per event, JSONObject " + jsonObjectBytes, serializerBytes * 2 < jsonObjectBytes);
+    }
+
+    private void assertSameAsJSONObject(String type, Map<String, Object> parameters, Map<String, String> payload, int seqnum) throws Exception {
+        assertTrue(EventJSONSerializer.canSerialize(parameters, payload, seqnum));
+        String expected = EventHelper.eventAsJSONObject(type, 1500000000000L, parameters, payload, seqnum).toString();
+        assertEquals(expected, EventJSONSerializer.eventAsJSON(type, 1500000000000L, parameters, payload, seqnum));
+    }
+
+    private LinkedHashMap<Long, String> createEvents(int count) throws Exception {
+        LinkedHashMap<Long, String> events = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> parameters = new HashMap<>();
+            parameters.put("name", "level.complete \"" + i + "\"");
+            Map<String, String> payload = new HashMap<>();
+            payload.put("score", Integer.toString(i * 100));
+            payload.put("unicode", "é中");
+            events.put((long) i, EventHelper.eventAsJSON("event", parameters, payload, i + 1));
+        }
+        return events;
+    }
+
+    // How batches were built before: every stored event parsed back into a JSONObject
+    private String parsedBatch(LinkedHashMap<Long, String> events, String userId, String appVersion, String sessionToken, short deviceId) throws Exception {
+        JSONObject batch = new JSONObject();
+        batch.put("user", userId);
+        batch.put("session_token", sessionToken);
+        batch.put("version", "2");
+        batch.put("app_version", appVersion);
+        batch.put("device_id", deviceId);
+        JSONArray data = new JSONArray();
+        for (String event : events.values()) {
+            data.put(new JSONObject(event));
+        }
+        batch.put("data", data);
+        return batch.toString();
+    }
+}
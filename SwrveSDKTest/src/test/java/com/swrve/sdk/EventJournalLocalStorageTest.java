@@ -0,0 +1,210 @@
+package com.swrve.sdk;
+
+import com.swrve.sdk.localstorage.EventJournalLocalStorage;
+import com.swrve.sdk.localstorage.ILocalStorage;
+import com.swrve.sdk.localstorage.SQLiteLocalStorage;
+
+import org.junit.Test;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventJournalLocalStorageTest extends SwrveBaseTest {
+
+    private static final long MAX_SIZE = 10 * 1024 * 1024;
+
+    @Test
+    public void testAddAndRemoveEvents() throws Exception {
+        EventJournalLocalStorage storage = new EventJournalLocalStorage(RuntimeEnvironment.application, "journal_add.db", MAX_SIZE);
+        storage.addMultipleEvent(Arrays.asList("event0", "event1", "event2"));
+        storage.addEvent("event3");
+
+        LinkedHashMap<Long, String> events = storage.getFirstNEvents(2);
+        assertEquals(Arrays.asList("event0", "event1"), new ArrayList<String>(events.values()));
+        storage.removeEventsById(events.keySet());
+
+        assertEquals(Arrays.asList("event2", "event3"), new ArrayList<String>(storage.getFirstNEvents(10).values()));
+        assertEquals(2, storage.getEventCount());
+        storage.close();
+    }
+
+    @Test
+    public void testSegmentsAreReclaimed() throws Exception {
+        EventJournalLocalStorage storage = new EventJournalLocalStorage(RuntimeEnvironment.application, "journal_reclaim.db", MAX_SIZE, 64);
+        for (int i = 0; i < 20; i++) {
+            storage.addEvent("event" + i);
+        }
+        File directory = new File(storage.getJournalPath());
+        int segmentFiles = countSegmentFiles(directory);
+        assertTrue(segmentFiles > 1);
+
+        LinkedHashMap<Long, String> events = storage.getFirstNEvents(10);
+        storage.removeEventsById(events.keySet());
+        assertTrue(countSegmentFiles(directory) < segmentFiles);
+
+        storage.removeEventsById(storage.getFirstNEvents(null).keySet());
+        assertEquals(0, storage.getEventCount());
+        assertTrue(countSegmentFiles(directory) <= 1);
+        storage.close();
+    }
+
+    @Test
+    public void testReadCursorSurvivesReopen() throws Exception {
+        EventJournalLocalStorage storage = new EventJournalLocalStorage(RuntimeEnvironment.application, "journal_cursor.db", MAX_SIZE);
+        for (int i = 0; i < 5; i++) {
+            storage.addEvent("event" + i);
+        }
+        storage.removeEventsById(storage.getFirstNEvents(3).keySet());
+        storage.close();
+
+        storage = new EventJournalLocalStorage(RuntimeEnvironment.application, "journal_cursor.db", MAX_SIZE);
+        assertEquals(Arrays.asList("event3", "event4"), new ArrayList<String>(storage.getFirstNEvents(10).values()));
+
+        // New ids keep increasing after a reopen
+        storage.addEvent("event5");
+        assertEquals(Arrays.asList("event3", "event4", "event5"), new ArrayList<String>(storage.getFirstNEvents(10).values()));
+        storage.close();
+    }
+
+    @Test
+    public void testTruncatedTailIsDiscarded() throws Exception {
+        EventJournalLocalStorage storage = new EventJournalLocalStorage(RuntimeEnvironment.application, "journal_tail.db", MAX_SIZE);
+        storage.addMultipleEvent(Arrays.asList("event0", "event1", "event2"));
+        File directory = new File(storage.getJournalPath());
+        storage.close();
+
+        // Simulate a write torn by a crash: a header promising more bytes than were written
+        File segment = getSegmentFiles(directory).get(0);
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        long validLength = file.length();
+        file.seek(validLength);
+        file.writeInt(100);
+        file.writeInt(12345);
+        file.write("{\"partial".getBytes("UTF-8"));
+        file.close();
+
+        storage = new EventJournalLocalStorage(RuntimeEnvironment.application, "journal_tail.db", MAX_SIZE);
+        assertEquals(validLength, segment.length());
+        storage.addEvent("event3");
+        assertEquals(Arrays.asList("event0", "event1", "event2", "event3"), new ArrayList<String>(storage.getFirstNEvents(10).values()));
+        storage.close();
+    }
+
+    @Test
+    public void testCorruptedRecordIsDiscarded() throws Exception {
+        EventJournalLocalStorage storage = new EventJournalLocalStorage(RuntimeEnvironment.application, "journal_crc.db", MAX_SIZE);
+        storage.addMultipleEvent(Arrays.asList("event0", "event1"));
+        File directory = new File(storage.getJournalPath());
+        storage.close();
+
+        // Flip the last byte of the second record
+        File segment = getSegmentFiles(directory).get(0);
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.seek(file.length() - 1);
+        file.write('X');
+        file.close();
+
+        storage = new EventJournalLocalStorage(RuntimeEnvironment.application, "journal_crc.db", MAX_SIZE);
+        assertEquals(Arrays.asList("event0"), new ArrayList<String>(storage.getFirstNEvents(10).values()));
+        storage.close();
+    }
+
+    @Test
+    public void testLeftoverSQLiteEventsAreImported() throws Exception {
+        SQLiteLocalStorage sqliteStorage = new SQLiteLocalStorage(RuntimeEnvironment.application, "journal_import.db", MAX_SIZE);
+        sqliteStorage.addEvent("event0");
+        sqliteStorage.addEvent("event1");
+        sqliteStorage.close();
+
+        EventJournalLocalStorage storage = new EventJournalLocalStorage(RuntimeEnvironment.application, "journal_import.db", MAX_SIZE);
+        assertEquals(Arrays.asList("event0", "event1"), new ArrayList<String>(storage.getFirstNEvents(10).values()));
+        storage.close();
+
+        sqliteStorage = new SQLiteLocalStorage(RuntimeEnvironment.application, "journal_import.db", MAX_SIZE);
+        assertEquals(0, sqliteStorage.getFirstNEvents(10).size());
+        sqliteStorage.close();
+    }
+
+    @Test
+    public void testBenchmarkAgainstSQLite() throws Exception {
+        int eventCount = 2000;
+        int batchSize = 50;
+        List<String> events = new ArrayList<String>();
+        for (int i = 0; i < eventCount; i++) {
+            events.add("{\"type\":\"event\",\"time\":1500000000000,\"seqnum\":" + i + ",\"name\":\"benchmark.event\",\"payload\":{\"level\":\"" + i + "\"}}");
+        }
+
+        SQLiteLocalStorage sqliteStorage = new SQLiteLocalStorage(RuntimeEnvironment.application, "benchmark_sqlite.db", MAX_SIZE);
+        runBenchmark("sqlite", sqliteStorage, events, batchSize);
+        sqliteStorage.close();
+
+        EventJournalLocalStorage journalStorage = new EventJournalLocalStorage(RuntimeEnvironment.application, "benchmark_journal.db", MAX_SIZE);
+        runBenchmark("journal", journalStorage, events, batchSize);
+        journalStorage.close();
+
+        EventJournalLocalStorage syncedJournalStorage = new EventJournalLocalStorage(RuntimeEnvironment.application, "benchmark_journal_synced.db", MAX_SIZE,
+                EventJournalLocalStorage.DEFAULT_SEGMENT_SIZE, 0);
+        runBenchmark("journal-sync-every-event", syncedJournalStorage, events, batchSize);
+        syncedJournalStorage.close();
+    }
+
+    @Test
+    public void testUnsyncedEventsAreKeptWhenReopened() throws Exception {
+        EventJournalLocalStorage storage = new EventJournalLocalStorage(RuntimeEnvironment.application, "journal_sync.db", MAX_SIZE,
+                EventJournalLocalStorage.DEFAULT_SEGMENT_SIZE, 60000);
+        for (int i = 0; i < 5; i++) {
+            storage.addEvent("event" + i);
+        }
+        storage.close();
+
+        storage = new EventJournalLocalStorage(RuntimeEnvironment.application, "journal_sync.db", MAX_SIZE);
+        assertEquals(5, storage.getEventCount());
+        storage.close();
+    }
+
+    // Adds every event one by one and then sends them in batches, like the SDK does. Reports one line per path.
+    private void runBenchmark(String path, ILocalStorage storage, List<String> events, int batchSize) throws Exception {
+        long start = System.nanoTime();
+        for (String event : events) {
+            storage.addEvent(event);
+        }
+        long addTime = System.nanoTime() - start;
+        int read = 0;
+        start = System.nanoTime();
+        LinkedHashMap<Long, String> batch = storage.getFirstNEvents(batchSize);
+        while (!batch.isEmpty()) {
+            read += batch.size();
+            storage.removeEventsById(batch.keySet());
+            batch = storage.getFirstNEvents(batchSize);
+        }
+        long drainTime = System.nanoTime() - start;
+        assertEquals(events.size(), read);
+        SwrveLogger.w("benchmark=event_storage path=%s events=%d add_ms=%d drain_ms=%d add_us_per_event=%d",
+                path, events.size(), addTime / 1000000, drainTime / 1000000, addTime / 1000 / events.size());
+    }
+
+    private int countSegmentFiles(File directory) {
+        return getSegmentFiles(directory).size();
+    }
+
+    private List<File> getSegmentFiles(File directory) {
+        List<File> segments = new ArrayList<File>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".log")) {
+                    segments.add(file);
+                }
+            }
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,232 @@
+package com.swrve.sdk;
+
+import com.swrve.sdk.localstorage.IFastInsertLocalStorage;
+import com.swrve.sdk.localstorage.ILocalStorage;
+import com.swrve.sdk.localstorage.MemoryCachedLocalStorage;
+import com.swrve.sdk.localstorage.MemoryLocalStorage;
+import com.swrve.sdk.localstorage.SQLiteLocalStorage;
+
+import org.junit.Test;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+
+public class MemoryLocalStorageTest extends SwrveBaseTest {
+
+    @Test
+    public void testRemoveHeadBatch() throws Exception {
+        MemoryLocalStorage storage = new MemoryLocalStorage();
+        for (int i = 0; i < 100; i++) {
+            storage.addEvent("event" + i);
+        }
+
+        LinkedHashMap<Long, String> batch = storage.getFirstNEvents(50);
+        assertEquals(50, batch.size());
+        storage.removeEventsById(batch.keySet());
+
+        LinkedHashMap<Long, String> remaining = storage.getFirstNEvents(100);
+        assertEquals(50, remaining.size());
+        assertEquals("event50", remaining.values().iterator().next());
+    }
+
+    @Test
+    public void testWrapAroundAndGrow() throws Exception {
+        MemoryLocalStorage storage = new MemoryLocalStorage();
+        int nextEvent = 0;
+        int firstEvent = 0;
+        // Keep adding and removing so the head moves around the buffer while it grows
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 13; i++) {
+                storage.addEvent("event" + (nextEvent++));
+            }
+            LinkedHashMap<Long, String> batch = storage.getFirstNEvents(7);
+            assertEquals("event" + firstEvent, batch.values().iterator().next());
+            storage.removeEventsById(batch.keySet());
+            firstEvent += 7;
+        }
+
+        List<String> events = new ArrayList<String>(storage.getFirstNEvents(1000).values());
+        assertEquals(nextEvent - firstEvent, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals("event" + (firstEvent + i), events.get(i));
+        }
+    }
+
+    @Test
+    public void testRemoveNonContiguousIds() throws Exception {
+        MemoryLocalStorage storage = new MemoryLocalStorage();
+        for (int i = 0; i < 5; i++) {
+            storage.addEvent("event" + i);
+        }
+        List<Long> ids = new ArrayList<Long>(storage.getFirstNEvents(5).keySet());
+        storage.removeEventsById(Arrays.asList(ids.get(1), ids.get(3)));
+
+        List<String> events = new ArrayList<String>(storage.getFirstNEvents(5).values());
+        assertEquals(Arrays.asList("event0", "event2", "event4"), events);
+    }
+
+    @Test
+    public void testFlushKeepsRetainedEvents() throws Exception {
+        MemoryLocalStorage storage = new MemoryLocalStorage();
+        for (int i = 0; i < 5; i++) {
+            storage.addEvent("event" + i);
+        }
+        LinkedHashMap<Long, String> retained = storage.getFirstNEvents(2);
+
+        final List<String> flushed = new ArrayList<String>();
+        storage.flushEvents(new IFastInsertLocalStorage() {
+            @Override
+            public void addMultipleEvent(List<String> eventsJSON) {
+                flushed.addAll(eventsJSON);
+            }
+
+            @Override
+            public void setMultipleCacheEntries(List<Map.Entry<String, Map.Entry<String, String>>> cacheEntries) {
+            }
+        }, retained.keySet());
+
+        assertEquals(Arrays.asList("event2", "event3", "event4"), flushed);
+        assertEquals(retained, storage.getFirstNEvents(5));
+
+        storage.removeEventsById(retained.keySet());
+        assertEquals(0, storage.getFirstNEvents(5).size());
+    }
+
+    @Test
+    public void testDroppedEventsAreCounted() throws Exception {
+        MemoryLocalStorage storage = new MemoryLocalStorage(3);
+        for (int i = 0; i < 5; i++) {
+            storage.addEvent("event" + i);
+        }
+        assertEquals(3, storage.getEventCount());
+        assertEquals(2, storage.getDroppedEventCount());
+    }
+
+    @Test
+    public void testSpillThresholdAboveMaximumIsLowered() throws Exception {
+        SQLiteLocalStorage sqliteStorage = new SQLiteLocalStorage(RuntimeEnvironment.application, "spill.db", 1024 * 1024);
+        MemoryLocalStorage memoryStorage = new MemoryLocalStorage(10);
+        MemoryCachedLocalStorage storage = new MemoryCachedLocalStorage(memoryStorage, sqliteStorage);
+        storage.setSpillToSecondaryStorage(50, 10, null);
+
+        for (int i = 0; i < 20; i++) {
+            storage.addEvent("event" + i);
+        }
+        assertEquals(0, storage.getDroppedEventCount());
+        assertEquals(20, memoryStorage.getEventCount() + sqliteStorage.getFirstNEvents(100).size());
+    }
+
+    @Test
+    public void testSpillToSecondaryStorage() throws Exception {
+        SQLiteLocalStorage sqliteStorage = new SQLiteLocalStorage(RuntimeEnvironment.application, "spill.db", 1024 * 1024);
+        MemoryLocalStorage memoryStorage = new MemoryLocalStorage(10);
+        MemoryCachedLocalStorage storage = new MemoryCachedLocalStorage(memoryStorage, sqliteStorage);
+        final List<Runnable> scheduled = new ArrayList<Runnable>();
+        storage.setSpillToSecondaryStorage(6, 10, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                scheduled.add(command);
+            }
+        });
+
+        for (int i = 0; i < 6; i++) {
+            storage.addEvent("event" + i);
+        }
+        assertEquals(1, scheduled.size());
+        assertEquals(6, memoryStorage.getEventCount());
+
+        scheduled.get(0).run();
+        // Oldest events are moved down to half of the threshold
+        assertEquals(3, memoryStorage.getEventCount());
+        assertEquals(Arrays.asList("event0", "event1", "event2"), new ArrayList<String>(sqliteStorage.getFirstNEvents(10).values()));
+
+        // Reaching the maximum moves events synchronously instead of dropping them
+        for (int i = 6; i < 20; i++) {
+            storage.addEvent("event" + i);
+        }
+        assertEquals(0, storage.getDroppedEventCount());
+
+        List<String> events = new ArrayList<String>();
+        for (LinkedHashMap<Long, String> storedEvents : storage.getCombinedFirstNEvents(100).values()) {
+            events.addAll(storedEvents.values());
+        }
+        assertEquals(20, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals("event" + i, events.get(i));
+        }
+        storage.close();
+    }
+
+    @Test
+    public void testCombinedEventsByteBudget() throws Exception {
+        SQLiteLocalStorage sqliteStorage = new SQLiteLocalStorage(RuntimeEnvironment.application, "budget.db", 1024 * 1024);
+        MemoryLocalStorage memoryStorage = new MemoryLocalStorage();
+        MemoryCachedLocalStorage storage = new MemoryCachedLocalStorage(memoryStorage, sqliteStorage);
+        String padding = new String(new char[95]).replace('\0', 'x');
+        for (int i = 0; i < 3; i++) {
+            sqliteStorage.addEvent("disk" + i + padding);
+            memoryStorage.addEvent("mem" + i + padding + "x");
+        }
+
+        // Every event is 100 bytes
+        assertEquals(Arrays.asList(2), getBatchSizes(storage.getCombinedFirstNEvents(50, 250)));
+        assertEquals(Arrays.asList(3, 1), getBatchSizes(storage.getCombinedFirstNEvents(50, 450)));
+        assertEquals(Arrays.asList(3, 3), getBatchSizes(storage.getCombinedFirstNEvents(50, 0)));
+        // A single event bigger than the budget is still selected
+        assertEquals(Arrays.asList(1), getBatchSizes(storage.getCombinedFirstNEvents(50, 10)));
+
+        // Leased events do not count against the budget
+        LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> leased = storage.leaseCombinedFirstNEvents(50, 200);
+        assertEquals(Arrays.asList(2), getBatchSizes(leased));
+        LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> next = storage.leaseCombinedFirstNEvents(50, 200);
+        assertEquals(Arrays.asList(1, 1), getBatchSizes(next));
+        assertEquals("disk2" + padding, next.get(sqliteStorage).values().iterator().next());
+        storage.releaseEvents(leased);
+        storage.releaseEvents(next);
+        storage.close();
+    }
+
+    @Test
+    public void testByteBudgetKeepsEventOrder() throws Exception {
+        SQLiteLocalStorage sqliteStorage = new SQLiteLocalStorage(RuntimeEnvironment.application, "budget_order.db", 1024 * 1024);
+        MemoryLocalStorage memoryStorage = new MemoryLocalStorage();
+        MemoryCachedLocalStorage storage = new MemoryCachedLocalStorage(memoryStorage, sqliteStorage);
+        String eventA = "A" + new String(new char[99]).replace('\0', 'x');
+        String eventB = "B" + new String(new char[299]).replace('\0', 'x');
+        String eventC = "C" + new String(new char[49]).replace('\0', 'x');
+        sqliteStorage.addEvent(eventA);
+        sqliteStorage.addEvent(eventB);
+        memoryStorage.addEvent(eventC);
+
+        // B does not fit after A, so the newer C in memory must not be sent before it
+        LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> batch = storage.leaseCombinedFirstNEvents(50, 250);
+        assertEquals(Arrays.asList(1), getBatchSizes(batch));
+        assertEquals(Arrays.asList(eventA), new ArrayList<String>(batch.get(sqliteStorage).values()));
+        storage.acknowledgeEvents(batch);
+
+        batch = storage.leaseCombinedFirstNEvents(50, 250);
+        assertEquals(Arrays.asList(eventB), new ArrayList<String>(batch.get(sqliteStorage).values()));
+        assertEquals(Arrays.asList(1), getBatchSizes(batch));
+        storage.acknowledgeEvents(batch);
+
+        batch = storage.leaseCombinedFirstNEvents(50, 250);
+        assertEquals(Arrays.asList(eventC), new ArrayList<String>(batch.get(memoryStorage).values()));
+        storage.acknowledgeEvents(batch);
+        storage.close();
+    }
+
+    private List<Integer> getBatchSizes(LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> combinedEvents) {
+        List<Integer> sizes = new ArrayList<Integer>();
+        for (LinkedHashMap<Long, String> events : combinedEvents.values()) {
+            sizes.add(events.size());
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,164 @@
+package com.swrve.sdk;
+
+import com.swrve.sdk.rest.IRESTResponseListener;
+import com.swrve.sdk.rest.IRESTStreamResponseListener;
+import com.swrve.sdk.rest.RESTClient;
+import com.swrve.sdk.rest.RESTResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RESTClientTest extends SwrveBaseTest {
+
+    private MockWebServer server;
+    private String batch;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        server = new MockWebServer();
+        server.start();
+
+        StringBuilder data = new StringBuilder("{\"user\":\"userId\",\"data\":[");
+        for (int i = 0; i < 100; i++) {
+            if (i > 0) {
+                data.append(",");
+            }
+            data.append("{\"type\":\"event\",\"time\":1500000000000,\"seqnum\":").append(i).append(",\"name\":\"level.start\",\"payload\":{}}");
+        }
+        batch = data.append("]}").toString();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+        server.shutdown();
+    }
+
+    @Test
+    public void testPostGzipCompressed() throws Exception {
+        Map<String, String> contentEncodings = new HashMap<>();
+        contentEncodings.put("/1/batch", RESTClient.CONTENT_ENCODING_GZIP);
+        server.enqueue(new MockResponse().setResponseCode(200));
+
+        int responseCode = post(new RESTClient(10000, contentEncodings), "/1/batch");
+        assertEquals(200, responseCode);
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("gzip", request.getHeader("Content-Encoding"));
+        byte[] body = request.getBody().readByteArray();
+        assertTrue("Compressed body is " + body.length + " bytes", body.length * 5 < batch.length());
+        assertEquals(batch, readAll(new GZIPInputStream(new ByteArrayInputStream(body))));
+    }
+
+    @Test
+    public void testPostDeflateCompressed() throws Exception {
+        Map<String, String> contentEncodings = new HashMap<>();
+        contentEncodings.put("/1/batch", RESTClient.CONTENT_ENCODING_DEFLATE);
+        server.enqueue(new MockResponse().setResponseCode(200));
+
+        post(new RESTClient(10000, contentEncodings), "/1/batch");
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("deflate", request.getHeader("Content-Encoding"));
+        assertEquals(batch, readAll(new InflaterInputStream(new ByteArrayInputStream(request.getBody().readByteArray()))));
+    }
+
+    @Test
+    public void testOtherEndpointsNotCompressed() throws Exception {
+        Map<String, String> contentEncodings = new HashMap<>();
+        contentEncodings.put("/1/batch", RESTClient.CONTENT_ENCODING_GZIP);
+        server.enqueue(new MockResponse().setResponseCode(200));
+
+        post(new RESTClient(10000, contentEncodings), "/talk/game/1/user/abc/trigger");
+
+        RecordedRequest request = server.takeRequest();
+        assertNull(request.getHeader("Content-Encoding"));
+        assertEquals(batch, request.getBody().readUtf8());
+    }
+
+    @Test
+    public void testGetStreamed() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200).setBody(batch));
+        server.enqueue(new MockResponse().setResponseCode(500).setBody("error"));
+
+        final String[] streamedBody = new String[1];
+        final RESTResponse[] bufferedResponse = new RESTResponse[1];
+        IRESTStreamResponseListener listener = new IRESTStreamResponseListener() {
+            @Override
+            public void onResponse(int responseCode, InputStream body, Map<String, List<String>> responseHeaders) throws IOException {
+                try {
+                    streamedBody[0] = readAll(body);
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+            }
+
+            @Override
+            public void onResponse(RESTResponse response) {
+                bufferedResponse[0] = response;
+            }
+
+            @Override
+            public void onException(Exception e) {
+            }
+        };
+
+        RESTClient restClient = new RESTClient(10000);
+        restClient.get(server.url("/api/1/user_resources_and_campaigns").toString(), listener);
+        assertEquals(batch, streamedBody[0]);
+        assertNull(bufferedResponse[0]);
+
+        // Error bodies are still buffered
+        streamedBody[0] = null;
+        restClient.get(server.url("/api/1/user_resources_and_campaigns").toString(), listener);
+        assertNull(streamedBody[0]);
+        assertEquals(500, bufferedResponse[0].responseCode);
+        assertEquals("error", bufferedResponse[0].responseBody);
+    }
+
+    private int post(RESTClient restClient, String path) {
+        final int[] responseCode = new int[1];
+        restClient.post(server.url(path).toString(), batch, new IRESTResponseListener() {
+            @Override
+            public void onResponse(RESTResponse response) {
+                responseCode[0] = response.responseCode;
+            }
+
+            @Override
+            public void onException(Exception e) {
+            }
+        });
+        return responseCode[0];
+    }
+
+    private String readAll(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toString("UTF-8");
+    }
+}
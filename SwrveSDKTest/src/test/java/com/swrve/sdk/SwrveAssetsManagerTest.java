@@ -11,14 +11,21 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPOutputStream;
 
 import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
 import okio.Buffer;
 
 import static org.junit.Assert.assertEquals;
@@ -193,8 +200,338 @@ public class SwrveAssetsManagerTest extends SwrveBaseTest {
         assertCacheFileExists("asset2");
     }
 
+    @Test
+    public void testParallelStreamingDownloads() throws Exception {
+        final int assetCount = 8;
+        final long delayMillis = 200;
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                String name = request.getPath().substring(request.getPath().lastIndexOf('/') + 1);
+                if (name.startsWith("asset")) {
+                    return new MockResponse().setResponseCode(200).setBody("content of " + name).setBodyDelay(delayMillis, TimeUnit.MILLISECONDS);
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        server.start();
+        String cdnPath = server.url("/").toString();
+
+        File sequentialDir = new File(mActivity.getCacheDir(), "sequential");
+        sequentialDir.mkdirs();
+        SwrveAssetsManagerImp sequentialManager = new SwrveAssetsManagerImp(mActivity);
+        sequentialManager.setCdnImages(cdnPath);
+        sequentialManager.setStorageDir(sequentialDir);
+        long start = System.nanoTime();
+        sequentialManager.downloadAssets(createAssetsQueue(assetCount), null);
+        long sequentialTime = System.nanoTime() - start;
+
+        File parallelDir = new File(mActivity.getCacheDir(), "parallel");
+        parallelDir.mkdirs();
+        SwrveAssetsManagerImp parallelManager = new SwrveAssetsManagerImp(mActivity, 4, 0);
+        parallelManager.setCdnImages(cdnPath);
+        parallelManager.setStorageDir(parallelDir);
+        start = System.nanoTime();
+        parallelManager.downloadAssets(createAssetsQueue(assetCount), null);
+        long parallelTime = System.nanoTime() - start;
+
+        SwrveLogger.i("%d assets with %d ms latency: sequential %d ms, 4 downloads at a time %d ms", assetCount, delayMillis,
+                TimeUnit.NANOSECONDS.toMillis(sequentialTime), TimeUnit.NANOSECONDS.toMillis(parallelTime));
+        assertEquals(assetCount, parallelManager.getAssetsOnDisk().size());
+        assertEquals(assetCount + 1, parallelDir.list().length); // the assets and the manifest, no partial files left
+        List<SwrveAssetDownloadMetric> metrics = parallelManager.getDownloadMetrics();
+        assertEquals(assetCount, metrics.size());
+        for (SwrveAssetDownloadMetric metric : metrics) {
+            assertTrue(metric.isSuccess());
+            assertEquals(("content of " + metric.getName()).length(), metric.getBytes());
+            assertTrue(metric.getDurationMillis() >= delayMillis);
+        }
+        assertTrue("Parallel took " + parallelTime + "ns, sequential " + sequentialTime + "ns", parallelTime < sequentialTime);
+    }
+
+    @Test
+    public void testDigestMismatchIsNotStored() throws Exception {
+        server = new MockWebServer();
+        server.enqueue(new MockResponse().setBody("unexpected content"));
+        server.start();
+
+        File storageDir = new File(mActivity.getCacheDir(), "mismatch");
+        storageDir.mkdirs();
+        SwrveAssetsManagerImp assetsManager = new SwrveAssetsManagerImp(mActivity, 4, 0);
+        assetsManager.setCdnImages(server.url("/").toString());
+        assetsManager.setStorageDir(storageDir);
+        Set<SwrveAssetsQueueItem> assetsQueue = new HashSet<>();
+        assetsQueue.add(new SwrveAssetsQueueItem("asset1", SwrveHelper.sha1("expected content".getBytes()), true));
+        assetsManager.downloadAssets(assetsQueue, null);
+
+        assertEquals(0, storageDir.list().length);
+        assertTrue(assetsManager.getAssetsOnDisk().isEmpty());
+        assertEquals(1, assetsManager.getDownloadMetrics().size());
+        assertFalse(assetsManager.getDownloadMetrics().get(0).isSuccess());
+        assertEquals("unexpected content".length(), assetsManager.getDownloadMetrics().get(0).getBytes());
+    }
+
+    @Test
+    public void testResumeInterruptedDownload() throws Exception {
+        final byte[] content = createContent(64 * 1024);
+        final AtomicInteger requests = new AtomicInteger();
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                String range = request.getHeader("Range");
+                if (range != null && "\"v1\"".equals(request.getHeader("If-Range"))) {
+                    int from = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+                    return new MockResponse().setResponseCode(206).setHeader("ETag", "\"v1\"")
+                            .setHeader("Content-Range", "bytes " + from + "-" + (content.length - 1) + "/" + content.length)
+                            .setBody(new Buffer().write(content, from, content.length - from));
+                }
+                MockResponse response = new MockResponse().setResponseCode(200).setHeader("ETag", "\"v1\"").setBody(new Buffer().write(content));
+                if (requests.getAndIncrement() == 0) {
+                    response.setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+                }
+                return response;
+            }
+        });
+        server.start();
+
+        SwrveAssetsManagerImp assetsManager = new SwrveAssetsManagerImp(mActivity);
+        assetsManager.setCdnImages(server.url("/").toString());
+        assetsManager.setStorageDir(mActivity.getCacheDir());
+        SwrveAssetsQueueItem item = new SwrveAssetsQueueItem("asset1", SwrveHelper.sha1(content), true);
+
+        Set<SwrveAssetsQueueItem> assetsQueue = new HashSet<>();
+        assetsQueue.add(item);
+        assetsManager.downloadAssets(assetsQueue, null);
+        assertCacheFileDoesNotExist("asset1");
+        assertCacheFileExists("asset1" + SwrveAssetsManagerImp.PART_SUFFIX);
+        long partLength = new File(mActivity.getCacheDir(), "asset1" + SwrveAssetsManagerImp.PART_SUFFIX).length();
+        assertTrue(partLength < content.length);
+
+        assetsQueue.add(item);
+        assetsManager.downloadAssets(assetsQueue, null);
+        assertCacheFileExists("asset1");
+        assertCacheFileDoesNotExist("asset1" + SwrveAssetsManagerImp.PART_SUFFIX);
+        assertCacheFileDoesNotExist("asset1" + SwrveAssetsManagerImp.PART_INFO_SUFFIX);
+        SwrveAssetDownloadMetric metric = assetsManager.getDownloadMetrics().get(0);
+        assertTrue(metric.isSuccess());
+        assertEquals(partLength, metric.getResumedBytes());
+        assertEquals(content.length - partLength, metric.getBytes());
+
+        server.takeRequest();
+        RecordedRequest resumeRequest = server.takeRequest();
+        assertEquals("bytes=" + partLength + "-", resumeRequest.getHeader("Range"));
+        assertEquals("\"v1\"", resumeRequest.getHeader("If-Range"));
+    }
+
+    @Test
+    public void testRangeIgnoredDownloadsWholeAsset() throws Exception {
+        byte[] content = createContent(1024);
+        server = new MockWebServer();
+        server.enqueue(new MockResponse().setResponseCode(200).setHeader("ETag", "\"v2\"").setBody(new Buffer().write(content)));
+        server.start();
+
+        String digest = SwrveHelper.sha1(content);
+        writeFileToCache("asset1" + SwrveAssetsManagerImp.PART_SUFFIX, "stale partial content");
+        writeFileToCache("asset1" + SwrveAssetsManagerImp.PART_INFO_SUFFIX, digest + " \"v1\"");
+
+        SwrveAssetsManagerImp assetsManager = new SwrveAssetsManagerImp(mActivity);
+        assetsManager.setCdnImages(server.url("/").toString());
+        assetsManager.setStorageDir(mActivity.getCacheDir());
+        Set<SwrveAssetsQueueItem> assetsQueue = new HashSet<>();
+        assetsQueue.add(new SwrveAssetsQueueItem("asset1", digest, true));
+        assetsManager.downloadAssets(assetsQueue, null);
+
+        assertEquals("bytes=21-", server.takeRequest().getHeader("Range"));
+        assertCacheFileExists("asset1");
+        assertEquals(content.length, new File(mActivity.getCacheDir(), "asset1").length());
+        assertCacheFileDoesNotExist("asset1" + SwrveAssetsManagerImp.PART_SUFFIX);
+        assertCacheFileDoesNotExist("asset1" + SwrveAssetsManagerImp.PART_INFO_SUFFIX);
+        assertEquals(0, assetsManager.getDownloadMetrics().get(0).getResumedBytes());
+        assertEquals(content.length, assetsManager.getDownloadMetrics().get(0).getBytes());
+    }
+
+    @Test
+    public void testEvictsUnusedAssetsLeastRecentlyUsedFirst() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                String name = request.getPath().substring(request.getPath().lastIndexOf('/') + 1);
+                return new MockResponse().setResponseCode(200).setBody(new Buffer().write(createAssetContent(name)));
+            }
+        });
+        server.start();
+
+        File storageDir = new File(mActivity.getCacheDir(), "evict");
+        storageDir.mkdirs();
+        SwrveAssetsManagerImp assetsManager = new SwrveAssetsManagerImp(mActivity, 1, 2500);
+        assetsManager.setCdnImages(server.url("/").toString());
+        assetsManager.setStorageDir(storageDir);
+
+        // asset0 is used by a loaded campaign so it is never evicted
+        Map<Integer, Set<SwrveAssetsQueueItem>> campaignAssets = new HashMap<>();
+        campaignAssets.put(1, createSizedAssetsQueue("asset0"));
+        assetsManager.setCampaignAssets(campaignAssets);
+        assetsManager.downloadAssets(createSizedAssetsQueue("asset0", "asset1"), null);
+        Thread.sleep(5);
+        assetsManager.downloadAssets(createSizedAssetsQueue("asset2"), null);
+        assertTrue(new File(storageDir, "asset0").exists());
+        assertFalse(new File(storageDir, "asset1").exists());
+        assertTrue(new File(storageDir, "asset2").exists());
+
+        Thread.sleep(5);
+        assetsManager.downloadAssets(createSizedAssetsQueue("asset3"), null);
+        assertTrue(new File(storageDir, "asset0").exists());
+        assertFalse(new File(storageDir, "asset2").exists());
+        assertTrue(new File(storageDir, "asset3").exists());
+        assertEquals(new HashSet<>(Arrays.asList("asset0", "asset3")), assetsManager.getAssetsOnDisk());
+        assertEquals(2000, assetsManager.manifest.getTotalSize());
+
+        // The manifest is loaded from disk without checking the asset files
+        SwrveAssetManifest manifest = new SwrveAssetManifest(storageDir);
+        assertEquals(assetsManager.manifest.getNames(), manifest.getNames());
+        assertEquals(2000, manifest.getTotalSize());
+    }
+
+    @Test
+    public void testCampaignAssetsReadyFromManifest() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                String name = request.getPath().substring(request.getPath().lastIndexOf('/') + 1);
+                return new MockResponse().setResponseCode(200).setBody(new Buffer().write(createAssetContent(name)));
+            }
+        });
+        server.start();
+
+        File storageDir = new File(mActivity.getCacheDir(), "ready");
+        storageDir.mkdirs();
+        SwrveAssetsManagerImp assetsManager = new SwrveAssetsManagerImp(mActivity);
+        assetsManager.setCdnImages(server.url("/").toString());
+        assetsManager.setStorageDir(storageDir);
+        Map<Integer, Set<SwrveAssetsQueueItem>> campaignAssets = new HashMap<>();
+        campaignAssets.put(1, createSizedAssetsQueue("asset0", "asset1"));
+        campaignAssets.put(2, createSizedAssetsQueue("asset1", "asset2"));
+        campaignAssets.put(3, new HashSet<SwrveAssetsQueueItem>());
+        assetsManager.setCampaignAssets(campaignAssets);
+        assertFalse(assetsManager.areCampaignAssetsReady(1));
+        assertFalse(assetsManager.areCampaignAssetsReady(2));
+        assertTrue(assetsManager.areCampaignAssetsReady(3));
+        assertFalse(assetsManager.areCampaignAssetsReady(4));
+        assertTrue(assetsManager.isCampaignTracked(1));
+        assertTrue(assetsManager.isCampaignTracked(3));
+        assertFalse(assetsManager.isCampaignTracked(4));
+
+        assetsManager.downloadAssets(createSizedAssetsQueue("asset0", "asset1"), null);
+        assertTrue(assetsManager.areCampaignAssetsReady(1));
+        assertFalse(assetsManager.areCampaignAssetsReady(2));
+        assetsManager.downloadAssets(createSizedAssetsQueue("asset2"), null);
+        assertTrue(assetsManager.areCampaignAssetsReady(2));
+        assertEquals(3, server.getRequestCount());
+
+        // A new manager checks the manifest against one listing of the storage dir, so an asset
+        // removed by the system is downloaded again
+        assertTrue(new File(storageDir, "asset2").delete());
+        SwrveAssetsManagerImp restartedManager = new SwrveAssetsManagerImp(mActivity);
+        restartedManager.setCdnImages(server.url("/").toString());
+        restartedManager.setStorageDir(storageDir);
+        restartedManager.setCampaignAssets(campaignAssets);
+        assertTrue(restartedManager.areCampaignAssetsReady(1));
+        assertFalse(restartedManager.areCampaignAssetsReady(2));
+        restartedManager.downloadAssets(createSizedAssetsQueue("asset0", "asset1", "asset2"), null);
+        assertEquals(4, server.getRequestCount());
+        assertTrue(restartedManager.areCampaignAssetsReady(2));
+        assertTrue(new File(storageDir, "asset2").exists());
+        assertEquals(new HashSet<>(Arrays.asList("asset0", "asset1", "asset2")), restartedManager.getAssetsOnDisk());
+    }
+
+    @Test
+    public void testRemovesOrphanFiles() throws Exception {
+        server = new MockWebServer();
+        server.start();
+
+        File storageDir = new File(mActivity.getCacheDir(), "orphans");
+        storageDir.mkdirs();
+        String usedAsset = SwrveHelper.sha1("used asset".getBytes());
+        String unusedAsset = SwrveHelper.sha1("unused asset".getBytes());
+        String usedPartial = SwrveHelper.sha1("used partial".getBytes());
+        String unusedPartial = SwrveHelper.sha1("unused partial".getBytes());
+        // Stored before the manifest existed
+        writeFile(storageDir, usedAsset, "used asset");
+        writeFile(storageDir, unusedAsset, "unused asset");
+        writeFile(storageDir, usedPartial + SwrveAssetsManagerImp.PART_SUFFIX, "used");
+        writeFile(storageDir, usedPartial + SwrveAssetsManagerImp.PART_INFO_SUFFIX, usedPartial + " \"v1\"");
+        writeFile(storageDir, unusedPartial + SwrveAssetsManagerImp.PART_SUFFIX, "unused");
+        writeFile(storageDir, unusedPartial + SwrveAssetsManagerImp.PART_INFO_SUFFIX, unusedPartial + " \"v1\"");
+        writeFile(storageDir, "other_file", "not an asset");
+
+        SwrveAssetsManagerImp assetsManager = new SwrveAssetsManagerImp(mActivity, 1, 2500);
+        assetsManager.setCdnImages(server.url("/").toString());
+        assetsManager.setStorageDir(storageDir);
+        Map<Integer, Set<SwrveAssetsQueueItem>> campaignAssets = new HashMap<>();
+        Set<SwrveAssetsQueueItem> assets = new HashSet<>();
+        assets.add(new SwrveAssetsQueueItem(usedAsset, usedAsset, true));
+        assets.add(new SwrveAssetsQueueItem(usedPartial, usedPartial, true));
+        campaignAssets.put(1, assets);
+        assetsManager.setCampaignAssets(campaignAssets);
+
+        Set<SwrveAssetsQueueItem> assetsQueue = new HashSet<>();
+        assetsQueue.add(new SwrveAssetsQueueItem(usedAsset, usedAsset, true));
+        assetsManager.downloadAssets(assetsQueue, null);
+
+        assertEquals(0, server.getRequestCount());
+        assertTrue(new File(storageDir, usedAsset).exists());
+        assertTrue(assetsManager.manifest.contains(usedAsset));
+        assertFalse(new File(storageDir, unusedAsset).exists());
+        assertTrue(new File(storageDir, usedPartial + SwrveAssetsManagerImp.PART_SUFFIX).exists());
+        assertTrue(new File(storageDir, usedPartial + SwrveAssetsManagerImp.PART_INFO_SUFFIX).exists());
+        assertFalse(new File(storageDir, unusedPartial + SwrveAssetsManagerImp.PART_SUFFIX).exists());
+        assertFalse(new File(storageDir, unusedPartial + SwrveAssetsManagerImp.PART_INFO_SUFFIX).exists());
+        assertTrue(new File(storageDir, "other_file").exists());
+    }
+
+    private Set<SwrveAssetsQueueItem> createSizedAssetsQueue(String... names) {
+        Set<SwrveAssetsQueueItem> assetsQueue = new HashSet<>();
+        for (String name : names) {
+            assetsQueue.add(new SwrveAssetsQueueItem(name, SwrveHelper.sha1(createAssetContent(name)), true));
+        }
+        return assetsQueue;
+    }
+
+    // 1000 bytes that differ per asset
+    private byte[] createAssetContent(String name) {
+        byte[] content = createContent(1000);
+        byte[] nameBytes = name.getBytes();
+        System.arraycopy(nameBytes, 0, content, 0, nameBytes.length);
+        return content;
+    }
+
+    private byte[] createContent(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        return content;
+    }
+
+    private Set<SwrveAssetsQueueItem> createAssetsQueue(int assetCount) {
+        Set<SwrveAssetsQueueItem> assetsQueue = new HashSet<>();
+        for (int i = 0; i < assetCount; i++) {
+            String name = "asset" + i;
+            assetsQueue.add(new SwrveAssetsQueueItem(name, SwrveHelper.sha1(("content of " + name).getBytes()), true));
+        }
+        return assetsQueue;
+    }
+
     private void writeFileToCache(String filename, String text) throws Exception {
-        File file = new File(mActivity.getCacheDir(), filename);
+        writeFile(mActivity.getCacheDir(), filename, text);
+    }
+
+    private void writeFile(File dir, String filename, String text) throws Exception {
+        File file = new File(dir, filename);
         FileWriter fileWriter = new FileWriter(file, false);
         fileWriter.write(text);
         fileWriter.close();
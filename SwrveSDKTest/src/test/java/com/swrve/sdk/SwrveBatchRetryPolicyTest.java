@@ -0,0 +1,180 @@
+package com.swrve.sdk;
+
+import com.swrve.sdk.localstorage.MemoryCachedLocalStorage;
+import com.swrve.sdk.localstorage.MemoryLocalStorage;
+import com.swrve.sdk.rest.RESTResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SwrveBatchRetryPolicyTest extends SwrveBaseTest {
+
+    private MemoryCachedLocalStorage storage;
+    private long now;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        storage = new MemoryCachedLocalStorage(new MemoryLocalStorage(), new MemoryLocalStorage());
+        now = 1000000;
+    }
+
+    @Test
+    public void testBackoffIsJitteredAndCapped() {
+        SwrveBatchRetryPolicy policy = createPolicy(100);
+        for (int failures = 1; failures <= 8; failures++) {
+            policy.onResponse(response(503, null), storage);
+            long delay = policy.getStats(storage).getRetryDelay();
+            long cap = Math.min(2000, 100L << (failures - 1));
+            assertTrue("Delay " + delay + " over " + cap, delay >= 0 && delay <= cap);
+        }
+        assertEquals(8, policy.getStats(storage).getConsecutiveFailures());
+    }
+
+    @Test
+    public void testSendingWaitsForRetryDelay() {
+        SwrveBatchRetryPolicy policy = createPolicy(100);
+        assertTrue(policy.canSend(storage));
+        policy.onResponse(response(500, "30"), storage);
+
+        // Retry-After is longer than the backoff
+        assertEquals(30000, policy.getStats(storage).getRetryDelay());
+        assertFalse(policy.canSend(storage));
+        assertEquals(1, policy.getStats(storage).getSkippedAttempts());
+
+        now += 30000;
+        assertTrue(policy.canSend(storage));
+        policy.onResponse(response(200, null), storage);
+        assertEquals(0, policy.getStats(storage).getConsecutiveFailures());
+        assertEquals(1, policy.getStats(storage).getSuccessfulBatches());
+        assertEquals(1, policy.getStats(storage).getFailedBatches());
+    }
+
+    @Test
+    public void testCircuitBreakerSurvivesRestart() {
+        SwrveBatchRetryPolicy policy = createPolicy(100);
+        for (int i = 0; i < 3; i++) {
+            now += 10000;
+            policy.onResponse(response(503, null), storage);
+        }
+        SwrveEventsUploadStats stats = policy.getStats(storage);
+        assertTrue(stats.isCircuitOpen());
+        assertEquals(1, stats.getCircuitBreakerTrips());
+        assertEquals(60000, stats.getRetryDelay());
+
+        // A new process loads the open breaker from storage
+        SwrveBatchRetryPolicy restartedPolicy = createPolicy(100);
+        now += 1000;
+        assertFalse(restartedPolicy.canSend(storage));
+        assertTrue(restartedPolicy.getStats(storage).isCircuitOpen());
+        assertEquals(3, restartedPolicy.getStats(storage).getFailedBatches());
+
+        // After the cool-off one batch is let through, and its failure opens the breaker again
+        now += 60000;
+        assertTrue(restartedPolicy.canSend(storage));
+        restartedPolicy.onResponse(response(503, null), storage);
+        assertFalse(restartedPolicy.canSend(storage));
+        assertEquals(1, restartedPolicy.getStats(storage).getCircuitBreakerTrips());
+    }
+
+    @Test
+    public void testStatsAreLoadedAfterRestart() {
+        SwrveBatchRetryPolicy policy = createPolicy(100);
+        policy.onResponse(response(200, null), storage);
+        policy.onResponse(response(200, null), storage);
+        for (int i = 0; i < 3; i++) {
+            policy.onResponse(response(503, null), storage);
+        }
+        assertFalse(policy.canSend(storage));
+
+        // The stats are read before anything is sent by the new process
+        SwrveEventsUploadStats stats = createPolicy(100).getStats(storage);
+        assertTrue(stats.isCircuitOpen());
+        assertEquals(2, stats.getSuccessfulBatches());
+        assertEquals(3, stats.getFailedBatches());
+        assertEquals(1, stats.getSkippedAttempts());
+        assertEquals(1, stats.getCircuitBreakerTrips());
+    }
+
+    @Test
+    public void testOnlyOneProbeIsSentAfterCoolOff() {
+        SwrveBatchRetryPolicy policy = createPolicy(100);
+        for (int i = 0; i < 3; i++) {
+            policy.onResponse(response(503, null), storage);
+        }
+        now += 60000;
+        assertTrue(policy.canSend(storage));
+        // Concurrent senders wait for the probe response
+        assertFalse(policy.canSend(storage));
+        assertFalse(policy.canSend(storage));
+        assertEquals(2, policy.getStats(storage).getSkippedAttempts());
+
+        policy.onResponse(response(200, null), storage);
+        assertTrue(policy.canSend(storage));
+        assertTrue(policy.canSend(storage));
+    }
+
+    @Test
+    public void testProbeWithoutResponseTimesOut() {
+        SwrveBatchRetryPolicy policy = createPolicy(100);
+        policy.onResponse(response(503, null), storage);
+        now += 2000;
+        assertTrue(policy.canSend(storage));
+        assertFalse(policy.canSend(storage));
+
+        now += SwrveBatchRetryPolicy.DEFAULT_PROBE_TIMEOUT;
+        assertTrue(policy.canSend(storage));
+    }
+
+    @Test
+    public void testRetryAfterIsCapped() {
+        SwrveBatchRetryPolicy policy = createPolicy(100);
+        policy.onResponse(response(503, "86400"), storage);
+        assertEquals(60000, policy.getStats(storage).getRetryDelay());
+    }
+
+    @Test
+    public void testOutOfRangeSavedStateIsReset() {
+        storage.setAndFlushSharedEntry(SwrveBatchRetryPolicy.RETRY_STATE_CATEGORY, "{\"consecutive_failures\":1,\"next_attempt_time\":" + (now + 24 * 60 * 60 * 1000L) + "}");
+        SwrveBatchRetryPolicy policy = createPolicy(100);
+        assertEquals(0, policy.getStats(storage).getRetryDelay());
+        assertTrue(policy.canSend(storage));
+        // Still a probe since the last attempt failed
+        assertFalse(policy.canSend(storage));
+    }
+
+    @Test
+    public void testClientErrorsDoNotBackOff() {
+        SwrveBatchRetryPolicy policy = createPolicy(100);
+        policy.onResponse(response(400, null), storage);
+        assertTrue(policy.canSend(storage));
+        assertEquals(0, policy.getStats(storage).getFailedBatches());
+    }
+
+    private SwrveBatchRetryPolicy createPolicy(long baseDelay) {
+        return new SwrveBatchRetryPolicy(baseDelay, 2000, 3, 60000, new Random(42)) {
+            @Override
+            protected long currentTime() {
+                return now;
+            }
+        };
+    }
+
+    private RESTResponse response(int responseCode, String retryAfter) {
+        Map<String, List<String>> headers = new HashMap<>();
+        if (retryAfter != null) {
+            headers.put("retry-after", Arrays.asList(retryAfter));
+        }
+        return new RESTResponse(responseCode, "", headers);
+    }
+}
@@ -0,0 +1,182 @@
+package com.swrve.sdk;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SwrveCacheSnapshotTest extends SwrveBaseTest {
+
+    private Swrve swrve;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        swrve = (Swrve) SwrveSDK.createInstance(mActivity, 1, "apiKey");
+        SwrveTestUtils.disableAssetsManager(swrve);
+        swrve.init(mActivity);
+        file = new File(mActivity.getCacheDir(), "snapshot_test.bin");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+        swrve.shutdown();
+        SwrveTestUtils.removeSwrveSDKSingletonInstance();
+    }
+
+    @Test
+    public void testJSONRoundTrip() throws Exception {
+        JSONObject json = new JSONObject().put("int", 1).put("long", 2364568900000L).put("double", 1.5)
+                .put("string", "Message é \"1\"").put("true", true).put("false", false).put("null", JSONObject.NULL)
+                .put("array", new JSONArray().put(1).put("two").put(new JSONObject().put("three", new JSONArray())))
+                .put("object", new JSONObject().put("nested", new JSONObject()));
+
+        new SwrveCacheSnapshot(file, "key").writeJSONObject(json);
+        JSONObject read = new SwrveCacheSnapshot(file, "key").readJSONObject();
+        assertEquals(json.toString(), read.toString());
+        assertEquals(Long.valueOf(2364568900000L), read.get("long"));
+        assertEquals(JSONObject.NULL, read.get("null"));
+    }
+
+    @Test
+    public void testResourcesRoundTrip() throws Exception {
+        Map<String, SwrveResource> resources = new HashMap<>();
+        for (int i = 0; i < 3; i++) {
+            Map<String, String> attributes = new HashMap<>();
+            attributes.put("uid", "resource" + i);
+            attributes.put("text", "value " + i);
+            resources.put("resource" + i, new SwrveResource(attributes));
+        }
+
+        new SwrveCacheSnapshot(file, "key").writeResources(resources);
+        Map<String, SwrveResource> read = new SwrveCacheSnapshot(file, "key").readResources();
+        assertEquals(3, read.size());
+        assertEquals("value 2", read.get("resource2").getAttributeAsString("text", null));
+        assertEquals(resources.get("resource1").getAttributeKeys(), read.get("resource1").getAttributeKeys());
+    }
+
+    @Test
+    public void testUnusableSnapshots() throws Exception {
+        JSONObject json = new JSONObject().put("campaigns", new JSONArray());
+        assertNull(new SwrveCacheSnapshot(file, "key").readJSONObject());
+
+        new SwrveCacheSnapshot(file, "key", SwrveCacheSnapshot.VERSION - 1).writeJSONObject(json);
+        assertNull(new SwrveCacheSnapshot(file, "key").readJSONObject());
+        assertFalse(file.exists());
+
+        new SwrveCacheSnapshot(file, "key").writeJSONObject(json);
+        assertNull(new SwrveCacheSnapshot(file, "otherKey").readJSONObject());
+        assertFalse(file.exists());
+
+        new SwrveCacheSnapshot(file, "key").writeJSONObject(json);
+        RandomAccessFile tampered = new RandomAccessFile(file, "rw");
+        tampered.seek(tampered.length() - 1);
+        tampered.write(0x7f);
+        tampered.close();
+        assertNull(new SwrveCacheSnapshot(file, "key").readJSONObject());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testInitFromSnapshot() throws Exception {
+        JSONObject json = new JSONObject(SwrveTestUtils.getAssetAsText(mActivity, "campaign_right_away.json"));
+        swrve.getCacheSnapshot(SwrveImp.CAMPAIGN_CATEGORY).writeJSONObject(json);
+        swrve.initCampaigns();
+        assertEquals(1, swrve.campaignsSnapshot.getCampaigns().size());
+        assertEquals(102, swrve.campaignsSnapshot.getCampaigns().get(0).getId());
+
+        Map<String, SwrveResource> resources = new HashMap<>();
+        resources.put("resource1", new SwrveResource(new HashMap<String, String>()));
+        swrve.getCacheSnapshot(SwrveImp.RESOURCES_CACHE_CATEGORY).writeResources(resources);
+        swrve.initResources();
+        assertNotNull(swrve.getResourceManager().getResource("resource1"));
+    }
+
+    @Test
+    public void testABTestDetailsFromSnapshot() throws Exception {
+        JSONObject json = new JSONObject(SwrveTestUtils.getAssetAsText(mActivity, "ab_test_information.json")).getJSONObject("campaigns");
+        swrve.getCacheSnapshot(SwrveImp.CAMPAIGN_CATEGORY).writeJSONObject(json);
+
+        swrve.initABTestDetails();
+        assertEquals(2, swrve.getResourceManager().getABTestDetails().size());
+        assertEquals("AB test Name 1", swrve.getResourceManager().getABTestDetails().get(0).getName());
+    }
+
+    @Test
+    public void testABTestDetailsReuseDecodedCampaigns() throws Exception {
+        swrve.config.setABTestDetailsEnabled(true);
+        JSONObject json = new JSONObject(SwrveTestUtils.getAssetAsText(mActivity, "ab_test_information.json")).getJSONObject("campaigns");
+        SwrveCacheSnapshot snapshot = swrve.getCacheSnapshot(SwrveImp.CAMPAIGN_CATEGORY);
+        snapshot.writeJSONObject(json);
+
+        swrve.initCampaigns();
+        // The snapshot is not read again
+        snapshot.delete();
+        swrve.initABTestDetails();
+        assertEquals(2, swrve.getResourceManager().getABTestDetails().size());
+        assertNull(swrve.cachedCampaignsJson);
+    }
+
+    @Test
+    public void testStartupBenchmark() throws Exception {
+        SwrveLogger.setLogLevel(Log.WARN);
+        JSONObject json = new JSONObject(SwrveTestUtils.getAssetAsText(mActivity, "campaign_right_away.json"));
+        JSONObject campaignData = json.getJSONArray("campaigns").getJSONObject(0);
+        JSONArray campaigns = new JSONArray();
+        int campaignCount = 500;
+        for (int i = 0; i < campaignCount; i++) {
+            campaigns.put(new JSONObject(campaignData.toString()).put("id", i));
+        }
+        json.put("campaigns", campaigns);
+        swrve.cachedLocalStorage.setAndFlushSecureSharedEntryForUser(swrve.getUserId(), SwrveImp.CAMPAIGN_CATEGORY, json.toString(), swrve.getUniqueKey());
+        SwrveCacheSnapshot snapshot = swrve.getCacheSnapshot(SwrveImp.CAMPAIGN_CATEGORY);
+        snapshot.writeJSONObject(json);
+
+        // Warm up both paths
+        snapshot.readJSONObject();
+        new JSONObject(swrve.cachedLocalStorage.getSecureCacheEntryForUser(swrve.getUserId(), SwrveImp.CAMPAIGN_CATEGORY, swrve.getUniqueKey()));
+
+        long start = System.nanoTime();
+        JSONObject fromJSON = new JSONObject(swrve.cachedLocalStorage.getSecureCacheEntryForUser(swrve.getUserId(), SwrveImp.CAMPAIGN_CATEGORY, swrve.getUniqueKey()));
+        long jsonTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        JSONObject fromSnapshot = snapshot.readJSONObject();
+        long snapshotTime = System.nanoTime() - start;
+
+        // Timings are only logged, comparing them would be flaky on a loaded machine
+        SwrveLogger.w("%d campaigns: JSON cache read in %d ms, snapshot read in %d ms", campaignCount, jsonTime / 1000000, snapshotTime / 1000000);
+        assertEquals(fromJSON.toString(), fromSnapshot.toString());
+
+        // Complete startup of the campaigns and AB test details, from the snapshot and then from the JSON cache
+        swrve.config.setABTestDetailsEnabled(true);
+        start = System.nanoTime();
+        swrve.initCampaigns();
+        swrve.initABTestDetails();
+        long snapshotInitTime = System.nanoTime() - start;
+        assertEquals(campaignCount, swrve.campaignsSnapshot.getCampaigns().size());
+
+        snapshot.delete();
+        start = System.nanoTime();
+        swrve.initCampaigns();
+        swrve.initABTestDetails();
+        long jsonInitTime = System.nanoTime() - start;
+        assertEquals(campaignCount, swrve.campaignsSnapshot.getCampaigns().size());
+        SwrveLogger.w("%d campaigns: init from JSON cache %d ms, init from snapshot %d ms", campaignCount, jsonInitTime / 1000000, snapshotInitTime / 1000000);
+    }
+}
@@ -0,0 +1,98 @@
+package com.swrve.sdk;
+
+import android.util.Log;
+
+import com.swrve.sdk.messaging.SwrveBaseCampaign;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SwrveCampaignDisplayerTest extends SwrveBaseTest {
+
+    private SwrveCampaignDisplayer campaignDisplayer;
+    private Map<String, String> payload;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        campaignDisplayer = new SwrveCampaignDisplayer(null);
+        payload = new HashMap<>();
+        payload.put("artist", "prince");
+    }
+
+    @Test
+    public void testReasonsReportedForQA() throws Exception {
+        SwrveLogger.setLogLevel(Log.WARN);
+        SwrveBaseCampaign campaign = createCampaign(1, "music.played", "madonna");
+        Map<Integer, SwrveCampaignDisplayer.Result> results = new HashMap<>();
+
+        assertFalse(campaignDisplayer.canTrigger(campaign, "music.played", payload, results));
+        assertEquals(SwrveCampaignDisplayer.DisplayResult.NO_MATCH, results.get(1).resultCode);
+        assertTrue(results.get(1).resultText.contains("does not match eventName[music.played]"));
+
+        payload.put("artist", "Madonna");
+        assertTrue(campaignDisplayer.canTrigger(campaign, "music.played", payload, results));
+        assertEquals(SwrveCampaignDisplayer.DisplayResult.MATCH, results.get(1).resultCode);
+        assertTrue(results.get(1).resultText.contains("matches eventName[music.played]"));
+    }
+
+    @Test
+    public void testTriggerEvaluationAllocationBenchmark() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+
+        List<SwrveBaseCampaign> campaigns = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            campaigns.add(createCampaign(i, "music.played", "artist" + i));
+        }
+        int iterations = 20;
+        long threadId = Thread.currentThread().getId();
+
+        // With info logging the reasons are rendered even without a QA user
+        SwrveLogger.setLogLevel(Log.INFO);
+        long start = threadBean.getThreadAllocatedBytes(threadId);
+        evaluate(campaigns, iterations);
+        long renderedBytes = (threadBean.getThreadAllocatedBytes(threadId) - start) / (iterations * campaigns.size());
+
+        SwrveLogger.setLogLevel(Log.WARN);
+        evaluate(campaigns, iterations); // warm up
+        start = threadBean.getThreadAllocatedBytes(threadId);
+        evaluate(campaigns, iterations);
+        long lazyBytes = (threadBean.getThreadAllocatedBytes(threadId) - start) / (iterations * campaigns.size());
+
+        SwrveLogger.w("Bytes allocated per campaign evaluation: rendered reasons %d, QA and info logging off %d", renderedBytes, lazyBytes);
+        assertTrue("QA off allocated " + lazyBytes + " bytes per campaign, rendered " + renderedBytes, lazyBytes * 10 < renderedBytes);
+    }
+
+    private void evaluate(List<SwrveBaseCampaign> campaigns, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            for (SwrveBaseCampaign campaign : campaigns) {
+                assertFalse(campaignDisplayer.canTrigger(campaign, "music.played", payload, null));
+            }
+        }
+    }
+
+    private SwrveBaseCampaign createCampaign(int id, String eventName, String artist) throws Exception {
+        JSONObject conditions = new JSONObject();
+        conditions.put("op", "eq");
+        conditions.put("key", "artist");
+        conditions.put("value", artist);
+        JSONArray triggers = new JSONArray();
+        triggers.put(new JSONObject().put("event_name", eventName).put("conditions", conditions));
+        return SwrveTestUtils.createCampaignWithTriggers(campaignDisplayer, id, triggers);
+    }
+}
@@ -0,0 +1,133 @@
+package com.swrve.sdk;
+
+import android.util.Log;
+
+import com.swrve.sdk.config.SwrveConfig;
+import com.swrve.sdk.messaging.SwrveBaseCampaign;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SwrveCampaignLoadingTest extends SwrveBaseTest {
+
+    private static final int PARALLELISM = 4;
+
+    private Swrve swrve;
+    private JSONObject campaignData;
+    private ExecutorService parallelExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        swrve = (Swrve) SwrveSDK.createInstance(mActivity, 1, "apiKey");
+        SwrveTestUtils.disableAssetsManager(swrve);
+        swrve.init(mActivity);
+        campaignData = new JSONObject(SwrveTestUtils.getAssetAsText(mActivity, "campaign_right_away.json")).getJSONArray("campaigns").getJSONObject(0);
+        parallelExecutor = Executors.newFixedThreadPool(PARALLELISM);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+        parallelExecutor.shutdownNow();
+        swrve.shutdown();
+        SwrveTestUtils.removeSwrveSDKSingletonInstance();
+    }
+
+    @Test
+    public void testParallelismConfig() throws Exception {
+        assertNull(swrve.campaignLoadingExecutor);
+
+        SwrveTestUtils.removeSwrveSDKSingletonInstance();
+        SwrveConfig config = new SwrveConfig();
+        config.setCampaignLoadingParallelism(0);
+        assertEquals(1, config.getCampaignLoadingParallelism());
+        config.setCampaignLoadingParallelism(PARALLELISM);
+        Swrve parallelSwrve = (Swrve) SwrveSDK.createInstance(mActivity, 1, "apiKey", config);
+        assertNotNull(parallelSwrve.campaignLoadingExecutor);
+        parallelSwrve.shutdown();
+        assertTrue(parallelSwrve.campaignLoadingExecutor.isShutdown());
+    }
+
+    @Test
+    public void testParallelLoadingKeepsOrder() throws Exception {
+        JSONObject json = createCampaignsJSON(0, 50);
+        swrve.loadCampaignsFromJSON(json, swrve.campaignsState);
+        SwrveCampaignsSnapshot sequential = swrve.campaignsSnapshot;
+
+        swrve.initCampaigns();
+        swrve.campaignLoadingExecutor = parallelExecutor;
+        swrve.loadCampaignsFromJSON(json, swrve.campaignsState);
+        SwrveCampaignsSnapshot parallel = swrve.campaignsSnapshot;
+
+        List<SwrveBaseCampaign> campaigns = parallel.getCampaigns();
+        assertEquals(50, campaigns.size());
+        for (int i = 0; i < campaigns.size(); i++) {
+            assertEquals(i, campaigns.get(i).getId());
+            assertEquals(sequential.getCampaignAssets(i), parallel.getCampaignAssets(i));
+        }
+        assertEquals(sequential.getCampaignsForEvent("Swrve.currency_given").size(), parallel.getCampaignsForEvent("Swrve.currency_given").size());
+    }
+
+    @Test
+    public void testParallelLoadingFailure() throws Exception {
+        swrve.campaignLoadingExecutor = parallelExecutor;
+        swrve.loadCampaignsFromJSON(createCampaignsJSON(0, 10), swrve.campaignsState);
+
+        // A campaign that fails to parse keeps the previous campaigns, as when loading sequentially
+        JSONObject json = createCampaignsJSON(100, 10);
+        json.getJSONArray("campaigns").getJSONObject(5).remove("rules");
+        swrve.loadCampaignsFromJSON(json, swrve.campaignsState);
+        assertEquals(10, swrve.campaignsSnapshot.getCampaigns().size());
+        assertEquals(0, swrve.campaignsSnapshot.getCampaigns().get(0).getId());
+    }
+
+    @Test
+    public void testParallelLoadingBenchmark() throws Exception {
+        SwrveLogger.setLogLevel(Log.WARN);
+        int campaignCount = 500;
+
+        swrve.loadCampaignsFromJSON(createCampaignsJSON(10000, campaignCount), swrve.campaignsState); // warm up
+        JSONObject json = createCampaignsJSON(0, campaignCount);
+        long start = System.nanoTime();
+        swrve.loadCampaignsFromJSON(json, swrve.campaignsState);
+        long sequentialTime = System.nanoTime() - start;
+
+        swrve.campaignLoadingExecutor = parallelExecutor;
+        swrve.loadCampaignsFromJSON(createCampaignsJSON(20000, campaignCount), swrve.campaignsState); // warm up
+        json = createCampaignsJSON(campaignCount, campaignCount);
+        start = System.nanoTime();
+        swrve.loadCampaignsFromJSON(json, swrve.campaignsState);
+        long parallelTime = System.nanoTime() - start;
+
+        // Timings are only logged, comparing them would be flaky on a loaded machine
+        SwrveLogger.w("%d campaigns: sequential %d ms, %d threads %d ms", campaignCount, sequentialTime / 1000000, PARALLELISM, parallelTime / 1000000);
+        List<SwrveBaseCampaign> campaigns = swrve.campaignsSnapshot.getCampaigns();
+        assertEquals(campaignCount, campaigns.size());
+        for (int i = 0; i < campaignCount; i++) {
+            assertEquals(campaignCount + i, campaigns.get(i).getId());
+        }
+    }
+
+    private JSONObject createCampaignsJSON(int firstId, int campaignCount) throws Exception {
+        JSONObject json = new JSONObject(SwrveTestUtils.getAssetAsText(mActivity, "campaign_right_away.json"));
+        JSONArray campaigns = new JSONArray();
+        for (int i = 0; i < campaignCount; i++) {
+            campaigns.put(new JSONObject(campaignData.toString()).put("id", firstId + i));
+        }
+        json.put("campaigns", campaigns);
+        return json;
+    }
+}
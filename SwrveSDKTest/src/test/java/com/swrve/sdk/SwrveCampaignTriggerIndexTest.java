@@ -0,0 +1,96 @@
+package com.swrve.sdk;
+
+import com.swrve.sdk.messaging.SwrveBaseCampaign;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SwrveCampaignTriggerIndexTest extends SwrveBaseTest {
+
+    private SwrveCampaignDisplayer campaignDisplayer;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        campaignDisplayer = new SwrveCampaignDisplayer(null);
+    }
+
+    @Test
+    public void testCampaignsForEventName() throws Exception {
+        List<SwrveBaseCampaign> campaigns = new ArrayList<>();
+        campaigns.add(createCampaign(1, "level.start", "Level.Start"));
+        campaigns.add(createCampaign(2, "purchase"));
+        campaigns.add(createCampaign(3, "LEVEL.START"));
+        campaigns.add(createCampaign(4));
+
+        SwrveCampaignTriggerIndex index = new SwrveCampaignTriggerIndex(campaigns);
+        assertEquals(2, index.getEventNameCount());
+
+        List<SwrveBaseCampaign> levelStart = index.getCampaigns("level.START");
+        assertEquals(2, levelStart.size());
+        assertSame(campaigns.get(0), levelStart.get(0));
+        assertSame(campaigns.get(2), levelStart.get(1));
+        assertEquals(1, index.getCampaigns("purchase").size());
+        assertTrue(index.getCampaigns("level.end").isEmpty());
+        assertTrue(index.getCampaigns(null).isEmpty());
+    }
+
+    @Test
+    public void testIndexBenchmark() throws Exception {
+        Map<String, String> payload = new HashMap<>();
+        for (int campaignCount : new int[]{10, 100, 500, 2000}) {
+            List<SwrveBaseCampaign> campaigns = new ArrayList<>();
+            for (int i = 0; i < campaignCount; i++) {
+                campaigns.add(createCampaign(i, "event" + i, "event" + (i + 1)));
+            }
+            SwrveCampaignTriggerIndex index = new SwrveCampaignTriggerIndex(campaigns);
+            int iterations = 20;
+
+            long start = System.nanoTime();
+            int scanMatches = 0;
+            for (int i = 0; i < iterations; i++) {
+                for (SwrveBaseCampaign campaign : campaigns) {
+                    if (campaignDisplayer.canTrigger(campaign, "event5", payload, null)) {
+                        scanMatches++;
+                    }
+                }
+            }
+            long scanTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int indexMatches = 0;
+            for (int i = 0; i < iterations; i++) {
+                for (SwrveBaseCampaign campaign : index.getCampaigns("event5")) {
+                    if (campaignDisplayer.canTrigger(campaign, "event5", payload, null)) {
+                        indexMatches++;
+                    }
+                }
+            }
+            long indexTime = System.nanoTime() - start;
+
+            // Timings are only logged, comparing them would be flaky on a loaded machine
+            SwrveLogger.i("%d campaigns: scan %d us, index %d us per event", campaignCount, scanTime / iterations / 1000, indexTime / iterations / 1000);
+            assertEquals(scanMatches, indexMatches);
+            assertEquals(2 * iterations, indexMatches);
+        }
+    }
+
+    private SwrveBaseCampaign createCampaign(int id, String... eventNames) throws Exception {
+        JSONArray triggers = new JSONArray();
+        for (String eventName : eventNames) {
+            triggers.put(new JSONObject().put("event_name", eventName).put("conditions", new JSONObject()));
+        }
+        return SwrveTestUtils.createCampaignWithTriggers(campaignDisplayer, id, triggers);
+    }
+}
@@ -0,0 +1,190 @@
+package com.swrve.sdk;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SwrveCampaignsAndResourcesReaderTest extends SwrveBaseTest {
+
+    @Test
+    public void testReadSections() throws Exception {
+        JSONObject response = createResponse(2, 3, 1);
+        response.put("unknown", new JSONArray().put(1).put(new JSONObject().put("a", "b")));
+
+        SwrveCampaignsAndResourcesReader reader = read(response.toString(), true);
+        assertEquals(Integer.valueOf(60000), reader.getFlushFrequency());
+        assertEquals(Integer.valueOf(5000), reader.getFlushRefreshDelay());
+        assertEquals(response.getJSONObject("campaigns").toString(), reader.getCampaigns().toString());
+        assertEquals(response.getJSONObject("campaigns").toString(), new JSONObject(reader.getCampaignsCacheContent()).toString());
+        assertEquals(response.getJSONObject("location_campaigns").toString(), new JSONObject(reader.getLocationCampaignsCacheContent()).toString());
+        assertEquals(response.getJSONArray("user_resources").toString(), new JSONArray(reader.getResourcesCacheContent()).toString());
+
+        assertEquals(3, reader.getResources().size());
+        SwrveResource resource = reader.getResources().get("resource1");
+        assertEquals("value1", resource.getAttributeAsString("text", null));
+        assertEquals(1, resource.getAttributeAsInt("number", 0));
+        assertEquals(1.5f, resource.getAttributeAsFloat("decimal", 0), 0);
+        assertTrue(resource.getAttributeAsBoolean("enabled", false));
+    }
+
+    @Test
+    public void testMissingSections() throws Exception {
+        SwrveCampaignsAndResourcesReader reader = read("{\"campaigns\":null,\"flush_frequency\":100}", false);
+        assertEquals(Integer.valueOf(100), reader.getFlushFrequency());
+        assertNull(reader.getFlushRefreshDelay());
+        assertNull(reader.getCampaigns());
+        assertNull(reader.getLocationCampaignsCacheContent());
+        assertNull(reader.getResources());
+
+        reader = read(createResponse(1, 0, 0).toString(), false);
+        assertEquals(1, reader.getCampaigns().getJSONArray("campaigns").length());
+        assertNull(reader.getCampaignsCacheContent());
+    }
+
+    @Test
+    public void testInvalidResponse() throws Exception {
+        for (String invalid : new String[]{"{\"campaigns\":", "{\"campaigns\":[]}", "[]", "{\"user_resources\":[1]}", "{campaigns:{}}"}) {
+            try {
+                read(invalid, true);
+                fail("Expected invalid response " + invalid);
+            } catch (JSONException e) {
+                // expected
+            } catch (EOFException e) {
+                // expected for truncated responses
+            }
+        }
+    }
+
+    @Test
+    public void testPeakHeapBenchmark() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+
+        // Synthetic response of around 5 MB
+        byte[] body = createResponse(5000, 15000, 5000).toString().getBytes("UTF-8");
+        assertTrue("Response is " + body.length + " bytes", body.length > 4 * 1024 * 1024);
+        long threadId = Thread.currentThread().getId();
+        readWithJSONObject(body);
+        readStreamed(body); // warm up
+
+        resetPeakHeapUsage();
+        long start = threadBean.getThreadAllocatedBytes(threadId);
+        readWithJSONObject(body);
+        long treeBytes = threadBean.getThreadAllocatedBytes(threadId) - start;
+        long treePeak = getPeakHeapUsage();
+
+        resetPeakHeapUsage();
+        start = threadBean.getThreadAllocatedBytes(threadId);
+        readStreamed(body);
+        long streamedBytes = threadBean.getThreadAllocatedBytes(threadId) - start;
+        long streamedPeak = getPeakHeapUsage();
+
+        SwrveLogger.i("%d byte response: JSONObject allocated %d KB with peak heap %d KB, streamed allocated %d KB with peak heap %d KB",
+                body.length, treeBytes / 1024, treePeak / 1024, streamedBytes / 1024, streamedPeak / 1024);
+        assertTrue("Streamed allocated " + streamedBytes + " bytes, JSONObject " + treeBytes, streamedBytes < treeBytes);
+    }
+
+    // What the refresh did before the response was streamed
+    private void readWithJSONObject(byte[] body) throws Exception {
+        String responseBody = SwrveHelper.readStringFromInputStream(new ByteArrayInputStream(body));
+        JSONObject responseJson = new JSONObject(responseBody);
+        JSONObject campaigns = responseJson.getJSONObject("campaigns");
+        String campaignsCacheContent = campaigns.toString();
+        String locationCampaignsCacheContent = responseJson.getJSONObject("location_campaigns").toString();
+        JSONArray resourcesJson = responseJson.getJSONArray("user_resources");
+        Map<String, SwrveResource> resources = new HashMap<>();
+        for (int i = 0; i < resourcesJson.length(); i++) {
+            JSONObject resourceJson = resourcesJson.getJSONObject(i);
+            resources.put(resourceJson.getString("uid"), new SwrveResource(SwrveHelper.JSONToMap(resourceJson)));
+        }
+        String resourcesCacheContent = resourcesJson.toString();
+        assertTrue(campaignsCacheContent.length() + locationCampaignsCacheContent.length() + resourcesCacheContent.length() > 0);
+        assertEquals(15000, resources.size());
+    }
+
+    private void readStreamed(byte[] body) throws Exception {
+        InputStream in = new ByteArrayInputStream(body);
+        SwrveCampaignsAndResourcesReader reader = new SwrveCampaignsAndResourcesReader(true);
+        reader.read(new InputStreamReader(in, "UTF-8"));
+        assertEquals(15000, reader.getResources().size());
+    }
+
+    private void resetPeakHeapUsage() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    // Approximate, pools peak at different times and young pools include garbage
+    private long getPeakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private SwrveCampaignsAndResourcesReader read(String response, boolean cacheCampaigns) throws Exception {
+        SwrveCampaignsAndResourcesReader reader = new SwrveCampaignsAndResourcesReader(cacheCampaigns);
+        reader.read(new StringReader(response));
+        return reader;
+    }
+
+    private JSONObject createResponse(int campaignCount, int resourceCount, int locationCampaignCount) throws Exception {
+        JSONArray campaigns = new JSONArray();
+        for (int i = 0; i < campaignCount; i++) {
+            JSONObject conditions = new JSONObject().put("op", "eq").put("key", "artist").put("value", "artist " + i);
+            JSONArray triggers = new JSONArray().put(new JSONObject().put("event_name", "music.played").put("conditions", conditions));
+            JSONObject image = new JSONObject().put("x", new JSONObject().put("type", "number").put("value", 0))
+                    .put("image", new JSONObject().put("type", "asset").put("value", "8d4f969706e6bf2aa344d6690496ecfdefc89f1" + (i % 10)));
+            JSONObject format = new JSONObject().put("name", "Portrait " + i).put("orientation", "portrait").put("scale", 1.5)
+                    .put("images", new JSONArray().put(image)).put("buttons", new JSONArray()).put("language", "*");
+            JSONObject message = new JSONObject().put("id", i).put("name", "Message é \"" + i + "\"").put("priority", 9999)
+                    .put("template", new JSONObject().put("formats", new JSONArray().put(format)));
+            campaigns.put(new JSONObject().put("id", i).put("start_date", 1362671700000L).put("end_date", 2364568900000L)
+                    .put("rules", new JSONObject().put("display_order", "random").put("dismiss_after_views", 3))
+                    .put("triggers", triggers).put("messages", new JSONArray().put(message)).put("subject", JSONObject.NULL));
+        }
+        JSONObject campaignsJson = new JSONObject().put("version", 6).put("cdn_root", "https://content-cdn.swrve.com/messaging/message_image/")
+                .put("game_data", new JSONObject().put("150", new JSONObject().put("app_store_url", "https://www.someurl.com")))
+                .put("rules", new JSONObject().put("delay_first_message", 0)).put("campaigns", campaigns);
+
+        JSONArray resources = new JSONArray();
+        for (int i = 0; i < resourceCount; i++) {
+            resources.put(new JSONObject().put("uid", "resource" + i).put("name", "Resource " + i).put("text", "value" + i)
+                    .put("number", i).put("decimal", 1.5).put("enabled", "true"));
+        }
+
+        JSONObject locationCampaigns = new JSONObject();
+        for (int i = 0; i < locationCampaignCount; i++) {
+            locationCampaigns.put(String.valueOf(i), new JSONObject().put("version", 1).put("message", new JSONObject().put("id", i).put("body", "Location message " + i)));
+        }
+
+        return new JSONObject().put("flush_frequency", 60000).put("flush_refresh_delay", 5000)
+                .put("campaigns", campaignsJson).put("location_campaigns", locationCampaigns).put("user_resources", resources);
+    }
+}
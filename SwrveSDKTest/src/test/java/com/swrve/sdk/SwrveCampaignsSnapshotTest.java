@@ -0,0 +1,134 @@
+package com.swrve.sdk;
+
+import com.swrve.sdk.messaging.SwrveBaseCampaign;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SwrveCampaignsSnapshotTest extends SwrveBaseTest {
+
+    private Swrve swrveSpy;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        Swrve swrveReal = (Swrve) SwrveSDK.createInstance(mActivity, 1, "apiKey");
+        swrveSpy = Mockito.spy(swrveReal);
+        SwrveTestUtils.setSDKInstance(swrveSpy);
+        SwrveTestUtils.disableAssetsManager(swrveSpy);
+        Mockito.doReturn(true).when(swrveSpy).restClientExecutorExecute(Mockito.any(Runnable.class)); // disable rest
+        swrveSpy.init(mActivity);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+        swrveSpy.shutdown();
+        SwrveTestUtils.removeSwrveSDKSingletonInstance();
+    }
+
+    @Test
+    public void testReloadPublishesNewSnapshot() throws Exception {
+        SwrveTestUtils.loadCampaignsFromFile(mActivity, swrveSpy, "campaign_right_away.json", "1111111111111111111111111");
+        SwrveCampaignsSnapshot loaded = swrveSpy.campaignsSnapshot;
+        List<SwrveBaseCampaign> campaigns = loaded.getCampaigns();
+        assertEquals(1, campaigns.size());
+        assertEquals(1, loaded.getCampaignsForEvent("swrve.buy_in").size());
+        assertEquals("https://www.someurl.com", swrveSpy.getAppStoreURLForApp(150));
+        try {
+            campaigns.clear();
+            fail("Published campaigns must not be modified");
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+
+        // Readers holding the previous snapshot keep a consistent view while campaigns reload
+        swrveSpy.loadCampaignsFromJSON(new JSONObject(), swrveSpy.campaignsState);
+        assertNotSame(loaded, swrveSpy.campaignsSnapshot);
+        assertTrue(swrveSpy.campaignsSnapshot.getCampaigns().isEmpty());
+        assertTrue(swrveSpy.campaignsSnapshot.getCampaignsForEvent("swrve.buy_in").isEmpty());
+        assertEquals("https://www.someurl.com", swrveSpy.getAppStoreURLForApp(150));
+        assertEquals(1, campaigns.size());
+        assertSame(campaigns.get(0), loaded.getCampaignsForEvent("swrve.buy_in").get(0));
+    }
+
+    @Test
+    public void testReloadReusesUnchangedCampaigns() throws Exception {
+        JSONObject json = new JSONObject(SwrveTestUtils.getAssetAsText(mActivity, "campaign_right_away.json"));
+        JSONObject campaignData = json.getJSONArray("campaigns").getJSONObject(0);
+        JSONObject otherCampaignData = new JSONObject(campaignData.toString()).put("id", 103);
+        json.getJSONArray("campaigns").put(otherCampaignData);
+        swrveSpy.loadCampaignsFromJSON(json, swrveSpy.campaignsState);
+        List<SwrveBaseCampaign> loaded = swrveSpy.campaignsSnapshot.getCampaigns();
+        assertEquals(2, loaded.size());
+        loaded.get(0).incrementImpressions();
+
+        swrveSpy.loadCampaignsFromJSON(new JSONObject(json.toString()), swrveSpy.campaignsState);
+        List<SwrveBaseCampaign> reloaded = swrveSpy.campaignsSnapshot.getCampaigns();
+        assertNotSame(loaded, reloaded);
+        assertSame(loaded.get(0), reloaded.get(0));
+        assertSame(loaded.get(1), reloaded.get(1));
+        assertEquals(1, reloaded.get(0).getImpressions());
+        assertFalse(swrveSpy.campaignsSnapshot.getCampaignAssets(102).isEmpty());
+
+        // Changed campaigns are parsed again but keep their state, removed campaigns are dropped
+        campaignData.put("subject", "changed");
+        JSONArray changedCampaigns = new JSONArray();
+        changedCampaigns.put(campaignData);
+        json.put("campaigns", changedCampaigns);
+        swrveSpy.loadCampaignsFromJSON(json, swrveSpy.campaignsState);
+        reloaded = swrveSpy.campaignsSnapshot.getCampaigns();
+        assertEquals(1, reloaded.size());
+        assertNotSame(loaded.get(0), reloaded.get(0));
+        assertEquals("changed", reloaded.get(0).getSubject());
+        assertEquals(1, reloaded.get(0).getImpressions());
+    }
+
+    @Test
+    public void testReloadBenchmark() throws Exception {
+        JSONObject campaignData = new JSONObject(SwrveTestUtils.getAssetAsText(mActivity, "campaign_right_away.json")).getJSONArray("campaigns").getJSONObject(0);
+        int campaignCount = 200;
+        swrveSpy.loadCampaignsFromJSON(createCampaignsJSON(campaignData, 0, campaignCount), swrveSpy.campaignsState); // warm up
+
+        JSONObject json = createCampaignsJSON(campaignData, campaignCount, campaignCount);
+        long start = System.nanoTime();
+        swrveSpy.loadCampaignsFromJSON(json, swrveSpy.campaignsState);
+        long parseTime = System.nanoTime() - start;
+
+        List<SwrveBaseCampaign> parsed = swrveSpy.campaignsSnapshot.getCampaigns();
+        start = System.nanoTime();
+        swrveSpy.loadCampaignsFromJSON(json, swrveSpy.campaignsState);
+        long reuseTime = System.nanoTime() - start;
+
+        // Timings are only logged, the reload is checked by reusing every campaign instance
+        SwrveLogger.i("%d campaigns: all parsed %d ms, all unchanged %d ms", campaignCount, parseTime / 1000000, reuseTime / 1000000);
+        List<SwrveBaseCampaign> reused = swrveSpy.campaignsSnapshot.getCampaigns();
+        assertEquals(campaignCount, reused.size());
+        for (int i = 0; i < campaignCount; i++) {
+            assertSame(parsed.get(i), reused.get(i));
+        }
+    }
+
+    private JSONObject createCampaignsJSON(JSONObject campaignData, int firstId, int campaignCount) throws Exception {
+        JSONObject json = new JSONObject(SwrveTestUtils.getAssetAsText(mActivity, "campaign_right_away.json"));
+        JSONArray campaigns = new JSONArray();
+        for (int i = 0; i < campaignCount; i++) {
+            campaigns.put(new JSONObject(campaignData.toString()).put("id", firstId + i));
+        }
+        json.put("campaigns", campaigns);
+        return json;
+    }
+}
@@ -25,6 +25,16 @@ public class SwrveConfigTest extends SwrveBaseTest {
         assertEquals("en-GB", config.getLanguage());
     }
 
+    @Test
+    public void testEventsSpillThresholdIsAtMostMaxEventsInMemory() {
+        SwrveConfig config = new SwrveConfig();
+        config.setEventsSpillThreshold(5000);
+        config.setMaxEventsInMemory(1000);
+        assertEquals(1000, config.getEventsSpillThreshold());
+        config.setMaxEventsInMemory(8000);
+        assertEquals(5000, config.getEventsSpillThreshold());
+    }
+
     @Test
     public void testDefaultConfig() throws Exception {
         SwrveConfig config = new SwrveConfig();
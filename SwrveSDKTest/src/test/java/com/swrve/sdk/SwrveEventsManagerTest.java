@@ -1,9 +1,14 @@
 package com.swrve.sdk;
 
+import com.swrve.sdk.config.SwrveConfig;
+import com.swrve.sdk.localstorage.ILocalStorage;
+import com.swrve.sdk.localstorage.IMemoryLocalStorage;
 import com.swrve.sdk.localstorage.MemoryCachedLocalStorage;
+import com.swrve.sdk.localstorage.MemoryLocalStorage;
 import com.swrve.sdk.localstorage.SQLiteLocalStorage;
 import com.swrve.sdk.rest.IRESTClient;
 import com.swrve.sdk.rest.IRESTResponseListener;
+import com.swrve.sdk.rest.RESTClient;
 import com.swrve.sdk.rest.RESTResponse;
 
 import org.junit.After;
@@ -12,18 +17,33 @@ import org.junit.Test;
 import org.robolectric.RuntimeEnvironment;
 
 import java.io.UnsupportedEncodingException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class SwrveEventsManagerTest extends SwrveBaseTest {
 
     private Swrve swrve = null;
     private MemoryCachedLocalStorage memoryCachedLocalStorage = null;
     private SQLiteLocalStorage sqLiteLocalStorage = null;
+    private MockWebServer server = null;
 
     @Before
     public void setUp() throws Exception {
@@ -41,6 +61,7 @@ public class SwrveEventsManagerTest extends SwrveBaseTest {
 
         if (sqLiteLocalStorage != null) sqLiteLocalStorage.close();
         if (memoryCachedLocalStorage != null) memoryCachedLocalStorage.close();
+        if (server != null) server.shutdown();
         SwrveTestUtils.removeSwrveSDKSingletonInstance();
     }
 
@@ -100,6 +121,167 @@ public class SwrveEventsManagerTest extends SwrveBaseTest {
         assertEquals(0, sqLiteLocalStorage.getFirstNEvents(10).size());
     }
 
+    @Test
+    public void testLeasedEventsAreNotSelectedAgain() throws Exception {
+        MemoryCachedLocalStorage cachedLocalStorage = new MemoryCachedLocalStorage(new MemoryLocalStorage(), sqLiteLocalStorage);
+        cachedLocalStorage.addEvent("{\"seqnum\": 1}");
+
+        LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> firstBatch = cachedLocalStorage.leaseCombinedFirstNEvents(10);
+        assertEquals(1, firstBatch.get(cachedLocalStorage.getCacheStorage()).size());
+
+        cachedLocalStorage.addEvent("{\"seqnum\": 2}");
+        LinkedHashMap<ILocalStorage, LinkedHashMap<Long, String>> secondBatch = cachedLocalStorage.leaseCombinedFirstNEvents(10);
+        assertEquals(1, secondBatch.get(cachedLocalStorage.getCacheStorage()).size());
+        assertEquals("{\"seqnum\": 2}", secondBatch.get(cachedLocalStorage.getCacheStorage()).values().iterator().next());
+        assertTrue(cachedLocalStorage.leaseCombinedFirstNEvents(10).isEmpty());
+
+        // Flushing keeps the events being sent in memory so they can be acknowledged
+        cachedLocalStorage.releaseEvents(secondBatch);
+        cachedLocalStorage.flush();
+        assertEquals(1, sqLiteLocalStorage.getFirstNEvents(10).size());
+        assertEquals(1, cachedLocalStorage.getCacheStorage().getFirstNEvents(10).size());
+
+        cachedLocalStorage.acknowledgeEvents(firstBatch);
+        assertEquals(0, cachedLocalStorage.getCacheStorage().getFirstNEvents(10).size());
+        assertEquals(1, cachedLocalStorage.getCombinedFirstNEvents(10).size());
+        sqLiteLocalStorage.reset();
+    }
+
+    @Test
+    public void testAddEventNotBlockedByStalledPost() throws Exception {
+        final CountDownLatch requestReceived = new CountDownLatch(1);
+        final CountDownLatch releaseResponse = new CountDownLatch(1);
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                requestReceived.countDown();
+                releaseResponse.await(20, TimeUnit.SECONDS);
+                return new MockResponse().setResponseCode(200);
+            }
+        });
+        server.start();
+
+        SwrveConfig config = new SwrveConfig();
+        config.setEventsUrl(new URL("http://" + server.getHostName() + ":" + server.getPort()));
+        config.setHttpTimeout(30000);
+        final MemoryCachedLocalStorage cachedLocalStorage = new MemoryCachedLocalStorage(new MemoryLocalStorage(), null);
+        cachedLocalStorage.addEvent("{\"type\":\"event\",\"seqnum\":1}");
+
+        final SwrveEventsManager swrveEventsManager = new SwrveEventsManagerImp(config, new RESTClient(config.getHttpTimeout()), "userId", "appVersion", "sessionToken", (short) 1);
+        Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                swrveEventsManager.sendStoredEvents(cachedLocalStorage);
+            }
+        });
+        sender.start();
+        assertTrue(requestReceived.await(10, TimeUnit.SECONDS));
+
+        // The POST is stalled on the server, adding events must not wait for it
+        long start = System.nanoTime();
+        for (int i = 2; i <= 101; i++) {
+            cachedLocalStorage.addEvent("{\"type\":\"event\",\"seqnum\":" + i + "}");
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("addEvent was blocked for " + elapsedMillis + "ms by the batch request", elapsedMillis < 1000);
+
+        releaseResponse.countDown();
+        sender.join(10000);
+        assertEquals(1, server.getRequestCount());
+        // Only the batch that was in flight was removed
+        assertEquals(100, cachedLocalStorage.getCombinedFirstNEvents(1000).get(cachedLocalStorage.getCacheStorage()).size());
+    }
+
+    @Test
+    public void testSendAllStoredEventsDrainsQueue() throws Exception {
+        MemoryCachedLocalStorage cachedLocalStorage = new MemoryCachedLocalStorage(new MemoryLocalStorage(), null);
+        for (int i = 1; i <= 120; i++) {
+            cachedLocalStorage.addEvent("{\"type\":\"event\",\"seqnum\":" + i + "}");
+        }
+        List<String> postedBatches = new ArrayList<>();
+        SwrveConfig config = new SwrveConfig();
+        config.setMaxEventsPerFlush(50);
+        SwrveEventsManager swrveEventsManager = new SwrveEventsManagerImp(config, createRecordingRestClient(200, postedBatches), "userId", "appVersion", "sessionToken", (short) 1);
+
+        assertEquals(120, swrveEventsManager.sendAllStoredEvents(cachedLocalStorage));
+        assertEquals(3, postedBatches.size());
+        assertTrue(cachedLocalStorage.getCombinedFirstNEvents(1000).isEmpty());
+        // Batches are taken in queue order
+        assertTrue(postedBatches.get(0).contains("\"seqnum\":1}"));
+        assertTrue(postedBatches.get(2).contains("\"seqnum\":120}"));
+    }
+
+    @Test
+    public void testSendAllStoredEventsStopsOnServerError() throws Exception {
+        MemoryCachedLocalStorage cachedLocalStorage = new MemoryCachedLocalStorage(new MemoryLocalStorage(), null);
+        for (int i = 1; i <= 120; i++) {
+            cachedLocalStorage.addEvent("{\"type\":\"event\",\"seqnum\":" + i + "}");
+        }
+        List<String> postedBatches = new ArrayList<>();
+        SwrveConfig config = new SwrveConfig();
+        config.setMaxEventsPerFlush(50);
+        SwrveEventsManager swrveEventsManager = new SwrveEventsManagerImp(config, createRecordingRestClient(503, postedBatches), "userId", "appVersion", "sessionToken", (short) 1);
+
+        swrveEventsManager.sendAllStoredEvents(cachedLocalStorage);
+        assertEquals(1, postedBatches.size());
+        assertEquals(120, cachedLocalStorage.getCombinedFirstNEvents(1000).get(cachedLocalStorage.getCacheStorage()).size());
+    }
+
+    @Test
+    public void testSendAllStoredEventsPipelined() throws Exception {
+        MemoryCachedLocalStorage cachedLocalStorage = new MemoryCachedLocalStorage(new MemoryLocalStorage(), sqLiteLocalStorage);
+        for (int i = 1; i <= 200; i++) {
+            cachedLocalStorage.addEvent("{\"type\":\"event\",\"seqnum\":" + i + "}");
+        }
+        cachedLocalStorage.flush();
+        List<String> postedBatches = new ArrayList<>();
+        SwrveConfig config = new SwrveConfig();
+        config.setMaxEventsPerFlush(50);
+        config.setMaxBatchesInFlight(3);
+        ExecutorService batchExecutor = Executors.newFixedThreadPool(3);
+        SwrveEventsManager swrveEventsManager = new SwrveEventsManagerImp(config, createRecordingRestClient(200, postedBatches), "userId", "appVersion", "sessionToken", (short) 1, null, batchExecutor);
+
+        assertEquals(200, swrveEventsManager.sendAllStoredEvents(cachedLocalStorage));
+        assertEquals(4, postedBatches.size());
+        assertEquals(0, sqLiteLocalStorage.getFirstNEvents(1000).size());
+        batchExecutor.shutdown();
+
+        // Every event was sent exactly once
+        int seqnumCount = 0;
+        for (String batch : postedBatches) {
+            seqnumCount += batch.split("\"seqnum\"", -1).length - 1;
+        }
+        assertEquals(200, seqnumCount);
+    }
+
+    @Test
+    public void testSendAllStoredEventsStopsWhenSendsAreNotAllowed() throws Exception {
+        MemoryCachedLocalStorage cachedLocalStorage = new MemoryCachedLocalStorage(new MemoryLocalStorage(), null);
+        for (int i = 1; i <= 200; i++) {
+            cachedLocalStorage.addEvent("{\"type\":\"event\",\"seqnum\":" + i + "}");
+        }
+        List<String> postedBatches = new ArrayList<>();
+        SwrveConfig config = new SwrveConfig();
+        config.setMaxEventsPerFlush(50);
+        config.setMaxBatchesInFlight(3);
+        // Another sender opens the circuit breaker after the first two batches have started
+        final AtomicInteger allowedBatches = new AtomicInteger(2);
+        SwrveBatchRetryPolicy retryPolicy = new SwrveBatchRetryPolicy(1000, 1000, 1, 1000, new Random()) {
+            @Override
+            protected synchronized boolean canSend(IMemoryLocalStorage storage) {
+                return allowedBatches.getAndDecrement() > 0;
+            }
+        };
+        ExecutorService batchExecutor = Executors.newFixedThreadPool(3);
+        SwrveEventsManager swrveEventsManager = new SwrveEventsManagerImp(config, createRecordingRestClient(200, postedBatches), "userId", "appVersion", "sessionToken", (short) 1, retryPolicy, batchExecutor);
+
+        assertEquals(100, swrveEventsManager.sendAllStoredEvents(cachedLocalStorage));
+        assertEquals(2, postedBatches.size());
+        assertEquals(100, cachedLocalStorage.getCombinedFirstNEvents(1000).get(cachedLocalStorage.getCacheStorage()).size());
+        batchExecutor.shutdown();
+    }
+
     private void storeAndSendEvents(int responseCode, ArrayList<String> events) throws Exception {
         IRESTClient restClient = createFakeRestClient(responseCode);
         short deviceId = 1;
@@ -114,6 +296,30 @@ public class SwrveEventsManagerTest extends SwrveBaseTest {
         swrveEventsManager.sendStoredEvents(memoryCachedLocalStorage);
     }
 
+    private IRESTClient createRecordingRestClient(final int responseCode, final List<String> postedBodies) {
+        return new IRESTClient() {
+            @Override
+            public void get(String endpoint, IRESTResponseListener callback) {
+                // unused
+            }
+            @Override
+            public void get(String endpoint, Map<String, String> params, IRESTResponseListener callback) throws UnsupportedEncodingException {
+                // unused
+            }
+            @Override
+            public void post(String endpoint, String encodedBody, IRESTResponseListener callback) {
+                synchronized (postedBodies) {
+                    postedBodies.add(encodedBody);
+                }
+                callback.onResponse(new RESTResponse(responseCode, String.valueOf(responseCode), new HashMap<String, List<String>>()));
+            }
+            @Override
+            public void post(String endpoint, String encodedBody, IRESTResponseListener callback, String contentType) {
+                post(endpoint, encodedBody, callback);
+            }
+        };
+    }
+
     private IRESTClient createFakeRestClient(final int responseCode) {
         return new IRESTClient() {
             @Override
@@ -21,6 +21,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.robolectric.Robolectric;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.Shadows;
@@ -28,13 +30,20 @@ import org.robolectric.shadows.ShadowView;
 import org.robolectric.android.controller.ActivityController;
 import org.robolectric.util.Pair;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class SwrveInAppMessageActivityTest extends SwrveBaseTest {
@@ -96,6 +105,90 @@ public class SwrveInAppMessageActivityTest extends SwrveBaseTest {
         view.destroy();
     }
 
+    @Test
+    public void testAsyncTriggerEvaluation() throws Exception {
+        swrveSpy.config.setAsyncTriggerEvaluationEnabled(true);
+        SwrveTestUtils.loadCampaignsFromFile(mActivity, swrveSpy, "campaign_right_away.json", "1111111111111111111111111");
+        final List<Thread> evaluationThreads = recordEvaluationThreads();
+
+        // Hold the trigger executor so the event is queued behind this task
+        final CountDownLatch executorBlocked = new CountDownLatch(1);
+        swrveSpy.triggerExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    executorBlocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        // Trigger IAM, the message is only shown once the evaluation has been posted to the UI thread
+        swrveSpy.currencyGiven("gold", 20);
+        Robolectric.flushForegroundThreadScheduler();
+        assertNull(mShadowActivity.peekNextStartedActivity());
+        assertTrue(evaluationThreads.isEmpty());
+
+        executorBlocked.countDown();
+        drainTriggerExecutor();
+        Robolectric.flushForegroundThreadScheduler();
+
+        Intent intent = mShadowActivity.peekNextStartedActivity();
+        assertNotNull(intent);
+        assertEquals(SwrveInAppMessageActivity.class.getName(), intent.getComponent().getClassName());
+        assertEquals(1, evaluationThreads.size());
+        assertNotSame(Thread.currentThread(), evaluationThreads.get(0));
+    }
+
+    @Test
+    public void testSyncTriggerEvaluation() throws Exception {
+        assertFalse(swrveSpy.config.isAsyncTriggerEvaluationEnabled());
+        SwrveTestUtils.loadCampaignsFromFile(mActivity, swrveSpy, "campaign_right_away.json", "1111111111111111111111111");
+        final List<Thread> evaluationThreads = recordEvaluationThreads();
+
+        // Trigger IAM, the message is shown before the event call returns
+        swrveSpy.currencyGiven("gold", 20);
+
+        Intent intent = mShadowActivity.peekNextStartedActivity();
+        assertNotNull(intent);
+        assertEquals(SwrveInAppMessageActivity.class.getName(), intent.getComponent().getClassName());
+        assertEquals(1, evaluationThreads.size());
+        assertSame(Thread.currentThread(), evaluationThreads.get(0));
+    }
+
+    @Test
+    public void testTrackedCampaignsSkipAssetChecks() throws Exception {
+        // Tracked but still downloading, the single message cannot be ready
+        ((SwrveAssetsManagerImp) swrveSpy.swrveAssetsManager).assetsOnDisk = new HashSet<>();
+        SwrveTestUtils.loadCampaignsFromFile(mActivity, swrveSpy, "campaign_right_away.json");
+        assertNull(swrveSpy.getMessageForEvent("Swrve.currency_given", new HashMap<String, String>(), SwrveOrientation.Both));
+
+        SwrveTestUtils.loadCampaignsFromFile(mActivity, swrveSpy, "campaign_right_away.json", "1111111111111111111111111");
+        assertNotNull(swrveSpy.getMessageForEvent("Swrve.currency_given", new HashMap<String, String>(), SwrveOrientation.Both));
+        Mockito.verify(swrveSpy, Mockito.never()).getAssetsOnDisk();
+    }
+
+    private List<Thread> recordEvaluationThreads() {
+        final List<Thread> evaluationThreads = Collections.synchronizedList(new ArrayList<Thread>());
+        Mockito.doAnswer(new Answer<SwrveMessage>() {
+            @Override
+            public SwrveMessage answer(InvocationOnMock invocation) throws Throwable {
+                evaluationThreads.add(Thread.currentThread());
+                return (SwrveMessage) invocation.callRealMethod();
+            }
+        }).when(swrveSpy).getMessageForEvent(Mockito.anyString(), Mockito.anyMap(), Mockito.any(SwrveOrientation.class));
+        return evaluationThreads;
+    }
+
+    private void drainTriggerExecutor() throws Exception {
+        swrveSpy.triggerExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+    }
+
     @Test
     public void testBuildLayoutColor() throws Exception {
         swrveSpy.config.setDefaultBackgroundColor(Color.BLUE);
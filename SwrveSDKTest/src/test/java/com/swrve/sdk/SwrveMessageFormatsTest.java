@@ -0,0 +1,139 @@
+package com.swrve.sdk;
+
+import android.util.Log;
+
+import com.swrve.sdk.messaging.SwrveBaseCampaign;
+import com.swrve.sdk.messaging.SwrveInAppCampaign;
+import com.swrve.sdk.messaging.SwrveMessage;
+import com.swrve.sdk.messaging.SwrveMessageFormat;
+import com.swrve.sdk.messaging.SwrveOrientation;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SwrveMessageFormatsTest extends SwrveBaseTest {
+
+    private Swrve swrve;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        swrve = (Swrve) SwrveSDK.createInstance(mActivity, 1, "apiKey");
+        SwrveTestUtils.disableAssetsManager(swrve);
+        swrve.init(mActivity);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+        swrve.shutdown();
+        SwrveTestUtils.removeSwrveSDKSingletonInstance();
+    }
+
+    @Test
+    public void testFormatsParsedOnFirstUse() throws Exception {
+        SwrveTestUtils.loadCampaignsFromFile(mActivity, swrve, "campaign_right_away.json", "1111111111111111111111111");
+        SwrveMessage message = ((SwrveInAppCampaign) swrve.campaignsSnapshot.getCampaigns().get(0)).getMessages().get(0);
+        assertNull(getParsedFormats(message));
+
+        // Selecting the message does not need the formats
+        assertEquals(165, message.getId());
+        assertTrue(message.supportsOrientation(SwrveOrientation.Landscape));
+        assertFalse(message.supportsOrientation(SwrveOrientation.Portrait));
+        Set<String> assetsOnDisk = new HashSet<>();
+        assertFalse(message.areAssetsReady(assetsOnDisk));
+        assetsOnDisk.add("1111111111111111111111111");
+        assertTrue(message.areAssetsReady(assetsOnDisk));
+        assertTrue(swrve.campaignsSnapshot.getCampaignAssets(102).size() > 0);
+        assertNull(getParsedFormats(message));
+
+        SwrveMessageFormat format = message.getFormat(SwrveOrientation.Landscape);
+        assertNotNull(format);
+        assertSame(message, format.getMessage());
+        assertEquals(3, format.getButtons().size());
+        assertEquals(1, format.getImages().size());
+        assertSame(message.getFormats(), getParsedFormats(message));
+        assertTrue(message.supportsOrientation(SwrveOrientation.Landscape));
+        assertTrue(message.areAssetsReady(assetsOnDisk));
+    }
+
+    @Test
+    public void testInvalidFormatsAreEmpty() throws Exception {
+        JSONObject json = new JSONObject(SwrveTestUtils.getAssetAsText(mActivity, "campaign_right_away.json"));
+        JSONObject formatData = json.getJSONArray("campaigns").getJSONObject(0).getJSONArray("messages").getJSONObject(0)
+                .getJSONObject("template").getJSONArray("formats").getJSONObject(0);
+        formatData.remove("size");
+        swrve.loadCampaignsFromJSON(json, swrve.campaignsState);
+
+        SwrveMessage message = ((SwrveInAppCampaign) swrve.campaignsSnapshot.getCampaigns().get(0)).getMessages().get(0);
+        assertTrue(message.supportsOrientation(SwrveOrientation.Landscape));
+        assertTrue(message.getFormats().isEmpty());
+        assertNull(message.getFormat(SwrveOrientation.Landscape));
+        assertFalse(message.supportsOrientation(SwrveOrientation.Landscape));
+    }
+
+    @Test
+    public void testLoadAllocationBenchmark() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+        SwrveLogger.setLogLevel(Log.WARN);
+
+        int campaignCount = 200;
+        swrve.loadCampaignsFromJSON(createCampaignsJSON(10000, campaignCount), swrve.campaignsState); // warm up
+        JSONObject json = createCampaignsJSON(0, campaignCount);
+        long threadId = Thread.currentThread().getId();
+        long start = threadBean.getThreadAllocatedBytes(threadId);
+        swrve.loadCampaignsFromJSON(json, swrve.campaignsState);
+        long loadBytes = threadBean.getThreadAllocatedBytes(threadId) - start;
+
+        // What every load used to cost, before the formats were parsed on first use
+        start = threadBean.getThreadAllocatedBytes(threadId);
+        List<SwrveBaseCampaign> campaigns = swrve.campaignsSnapshot.getCampaigns();
+        for (SwrveBaseCampaign campaign : campaigns) {
+            for (SwrveMessage message : ((SwrveInAppCampaign) campaign).getMessages()) {
+                assertFalse(message.getFormats().isEmpty());
+            }
+        }
+        long formatsBytes = threadBean.getThreadAllocatedBytes(threadId) - start;
+
+        SwrveLogger.w("%d campaigns: load allocated %d KB, parsing all formats allocated another %d KB", campaignCount, loadBytes / 1024, formatsBytes / 1024);
+        assertEquals(campaignCount, campaigns.size());
+        assertTrue(formatsBytes > 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<SwrveMessageFormat> getParsedFormats(SwrveMessage message) throws Exception {
+        Field formats = SwrveMessage.class.getDeclaredField("formats");
+        formats.setAccessible(true);
+        return (List<SwrveMessageFormat>) formats.get(message);
+    }
+
+    private JSONObject createCampaignsJSON(int firstId, int campaignCount) throws Exception {
+        JSONObject json = new JSONObject(SwrveTestUtils.getAssetAsText(mActivity, "campaign_right_away.json"));
+        JSONObject campaignData = json.getJSONArray("campaigns").getJSONObject(0);
+        JSONArray campaigns = new JSONArray();
+        for (int i = 0; i < campaignCount; i++) {
+            campaigns.put(new JSONObject(campaignData.toString()).put("id", firstId + i));
+        }
+        json.put("campaigns", campaigns);
+        return json;
+    }
+}
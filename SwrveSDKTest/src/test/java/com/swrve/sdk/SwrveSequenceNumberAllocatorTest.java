@@ -0,0 +1,87 @@
+package com.swrve.sdk;
+
+import com.swrve.sdk.localstorage.MemoryCachedLocalStorage;
+import com.swrve.sdk.localstorage.MemoryLocalStorage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SwrveSequenceNumberAllocatorTest extends SwrveBaseTest {
+
+    private MemoryCachedLocalStorage storage;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        storage = new MemoryCachedLocalStorage(new MemoryLocalStorage(), new MemoryLocalStorage());
+    }
+
+    @Test
+    public void testOnlyHighWaterMarkIsPersisted() {
+        SwrveSequenceNumberAllocator allocator = new SwrveSequenceNumberAllocator(10);
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(i, allocator.nextSequenceNumber(storage));
+            assertEquals("10", storage.getSharedCacheEntry(SwrveSequenceNumberAllocator.SEQNUM_CATEGORY));
+        }
+        assertEquals(11, allocator.nextSequenceNumber(storage));
+        assertEquals("20", storage.getSharedCacheEntry(SwrveSequenceNumberAllocator.SEQNUM_CATEGORY));
+    }
+
+    @Test
+    public void testMonotonicAcrossRestarts() {
+        SwrveSequenceNumberAllocator allocator = new SwrveSequenceNumberAllocator(10);
+        assertEquals(1, allocator.nextSequenceNumber(storage));
+        assertEquals(2, allocator.nextSequenceNumber(storage));
+
+        // Simulate a process restart, the unused part of the block is skipped
+        SwrveSequenceNumberAllocator restartedAllocator = new SwrveSequenceNumberAllocator(10);
+        assertEquals(11, restartedAllocator.nextSequenceNumber(storage));
+    }
+
+    @Test
+    public void testContinuesFromLegacySeqnum() {
+        storage.setAndFlushSharedEntry(SwrveSequenceNumberAllocator.SEQNUM_CATEGORY, "42");
+        SwrveSequenceNumberAllocator allocator = new SwrveSequenceNumberAllocator(10);
+        assertEquals(43, allocator.nextSequenceNumber(storage));
+        assertEquals("52", storage.getSharedCacheEntry(SwrveSequenceNumberAllocator.SEQNUM_CATEGORY));
+    }
+
+    @Test
+    public void testNextLeasedSequenceNumberNeedsLease() {
+        SwrveSequenceNumberAllocator allocator = new SwrveSequenceNumberAllocator(2);
+        assertEquals(0, allocator.nextLeasedSequenceNumber());
+        assertEquals(1, allocator.nextSequenceNumber(storage));
+        assertEquals(2, allocator.nextLeasedSequenceNumber());
+        assertEquals(0, allocator.nextLeasedSequenceNumber());
+    }
+
+    @Test
+    public void testUniqueAcrossThreads() throws Exception {
+        final SwrveSequenceNumberAllocator allocator = new SwrveSequenceNumberAllocator(7);
+        final Set<Integer> seqnums = Collections.synchronizedSet(new HashSet<Integer>());
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 1000; i++) {
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    seqnums.add(allocator.nextSequenceNumber(storage));
+                }
+            });
+        }
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1000, seqnums.size());
+        assertTrue(seqnums.contains(1));
+        assertTrue(seqnums.contains(1000));
+    }
+}
@@ -10,8 +10,10 @@ import android.view.View;
 
 import com.swrve.sdk.config.SwrveConfig;
 import com.swrve.sdk.config.SwrveConfigBase;
+import com.swrve.sdk.messaging.SwrveBaseCampaign;
 import com.swrve.sdk.messaging.SwrveButton;
 import com.swrve.sdk.messaging.SwrveMessageFormat;
+import com.swrve.sdk.messaging.SwrveOrientation;
 import com.swrve.sdk.messaging.view.SwrveMessageView;
 import com.swrve.sdk.rest.IRESTClient;
 import com.swrve.sdk.rest.IRESTResponseListener;
@@ -19,6 +21,7 @@ import com.swrve.sdk.rest.RESTResponse;
 
 import junit.framework.Assert;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
@@ -97,7 +100,7 @@ public class SwrveTestUtils {
     public static void loadCampaignsFromFile(Context context, Swrve swrve, String campaignFileName, String... assets) throws Exception {
         String json = SwrveTestUtils.getAssetAsText(context, campaignFileName);
         JSONObject jsonObject = new JSONObject(json);
-        swrve.loadCampaignsFromJSON(jsonObject, swrve.campaignsState);
+        // The assets are on disk before the campaigns are loaded, so the campaigns are tracked as ready
         if (assets.length > 0) {
             Set<String> assetsOnDisk = new HashSet<>();
             for(String asset : assets) {
@@ -105,6 +108,7 @@ public class SwrveTestUtils {
             }
             ((SwrveAssetsManagerImp)swrve.swrveAssetsManager).assetsOnDisk = assetsOnDisk;
         }
+        swrve.loadCampaignsFromJSON(jsonObject, swrve.campaignsState);
     }
 
     public static String takeScreenshot(SwrveMessageView view) {
@@ -155,6 +159,16 @@ public class SwrveTestUtils {
                 return set;
             }
 
+            @Override
+            public boolean areCampaignAssetsReady(int campaignId) {
+                return false;
+            }
+
+            @Override
+            public boolean isCampaignTracked(int campaignId) {
+                return false;
+            }
+
             @Override
             public SwrveConfigBase getConfig() {
                 return new SwrveConfig();
@@ -177,6 +191,27 @@ public class SwrveTestUtils {
         };
     }
 
+    public static SwrveBaseCampaign createCampaignWithTriggers(SwrveCampaignDisplayer campaignDisplayer, int id, JSONArray triggers) throws Exception {
+        JSONObject campaignData = new JSONObject();
+        campaignData.put("id", id);
+        campaignData.put("subject", "");
+        campaignData.put("triggers", triggers.toString());
+        campaignData.put("rules", new JSONObject().put("display_order", "random"));
+        campaignData.put("start_date", 0);
+        campaignData.put("end_date", Long.MAX_VALUE);
+        return new SwrveBaseCampaign(getTestSwrveCampaignManager(), campaignDisplayer, campaignData) {
+            @Override
+            public boolean supportsOrientation(SwrveOrientation orientation) {
+                return true;
+            }
+
+            @Override
+            public boolean areAssetsReady(Set<String> assetsOnDisk) {
+                return true;
+            }
+        };
+    }
+
     public static void writeFileToCache(File cache, String filename) {
         File file = new File(cache, filename);
         FileWriter fileWriter = null;
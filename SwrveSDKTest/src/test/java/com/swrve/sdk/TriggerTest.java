@@ -4,6 +4,7 @@ import com.swrve.sdk.messaging.SwrveInAppCampaign;
 import com.swrve.sdk.messaging.model.Arg;
 import com.swrve.sdk.messaging.model.Conditions;
 import com.swrve.sdk.messaging.model.Trigger;
+import com.swrve.sdk.messaging.model.TriggerPredicate;
 
 import org.json.JSONObject;
 import org.junit.After;
@@ -17,8 +18,11 @@ import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class TriggerTest extends SwrveBaseTest {
 
@@ -259,4 +263,89 @@ public class TriggerTest extends SwrveBaseTest {
         assertEquals(1, campaignDisplayResults.size());
         assertEquals(SwrveCampaignDisplayer.DisplayResult.NO_MATCH, campaignDisplayResults.get(campaign.getId()).resultCode);
     }
+
+    @Test
+    public void testCompiledTriggerPredicates() throws Exception {
+        String json = SwrveTestUtils.getAssetAsText(mActivity, "triggers.json");
+        List<Trigger> triggers = Trigger.fromJson(json, 1);
+        assertNotNull(triggers);
+
+        TriggerPredicate andPredicate = triggers.get(0).getPredicate();
+        Map<String, String> payload = new HashMap<>();
+        payload.put("artist", "PRINCE");
+        assertFalse(andPredicate.matches(payload));
+        payload.put("song", "Purple Rain");
+        assertTrue(andPredicate.matches(payload));
+        payload.put("song", "purple rain ");
+        assertFalse(andPredicate.matches(payload));
+        payload.put("song", null);
+        assertFalse(andPredicate.matches(payload));
+        assertFalse(andPredicate.matches(null));
+
+        TriggerPredicate eqPredicate = triggers.get(1).getPredicate();
+        payload.put("artist", "Queen");
+        assertTrue(eqPredicate.matches(payload));
+        payload.put("Artist", "queen");
+        payload.remove("artist");
+        assertFalse(eqPredicate.matches(payload)); // payload keys are case sensitive
+
+        assertSame(TriggerPredicate.ALWAYS, triggers.get(2).getPredicate());
+        assertTrue(triggers.get(2).getPredicate().matches(null));
+    }
+
+    @Test
+    public void testCompiledTriggerPredicatesBenchmark() throws Exception {
+        String json = SwrveTestUtils.getAssetAsText(mActivity, "triggers.json");
+        Conditions conditions = Trigger.fromJson(json, 1).get(0).getConditions();
+        TriggerPredicate predicate = Trigger.fromJson(json, 1).get(0).getPredicate();
+        int iterations = 20000;
+        for (int payloadSize : new int[]{0, 1, 2, 10, 50}) {
+            Map<String, String> payload = new HashMap<>();
+            for (int i = 0; i < payloadSize; i++) {
+                payload.put("key" + i, "value" + i);
+            }
+            if (payloadSize >= 2) {
+                payload.put("artist", "Prince");
+                payload.put("song", "Purple Rain");
+            }
+            boolean expected = interpretConditions(conditions, payload);
+            assertEquals(payloadSize >= 2, expected);
+            // Warm up both paths before measuring
+            for (int i = 0; i < 2000; i++) {
+                interpretConditions(conditions, payload);
+                predicate.matches(payload);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                assertEquals(expected, interpretConditions(conditions, payload));
+            }
+            long interpretedTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                assertEquals(expected, predicate.matches(payload));
+            }
+            long compiledTime = System.nanoTime() - start;
+
+            SwrveLogger.i("Payload of %d keys: interpreted %d ns, compiled %d ns per evaluation", payload.size(), interpretedTime / iterations, compiledTime / iterations);
+        }
+    }
+
+    // How conditions were evaluated before being compiled
+    private boolean interpretConditions(Conditions conditions, Map<String, String> payload) {
+        if (conditions.getOp() == null && conditions.getArgs() == null) {
+            return true;
+        } else if (Conditions.Op.AND.equals(conditions.getOp())) {
+            for (Arg arg : conditions.getArgs()) {
+                if (!(payload != null && payload.containsKey(arg.getKey()) && payload.get(arg.getKey()).equalsIgnoreCase(arg.getValue()))) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (Conditions.Op.EQ.equals(conditions.getOp())) {
+            return payload != null && payload.containsKey(conditions.getKey()) && payload.get(conditions.getKey()).equalsIgnoreCase(conditions.getValue());
+        }
+        return false;
+    }
 }